@@ -0,0 +1,743 @@
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.DirectedGraph;
+
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.graph.util.EdgeType;
+
+import org.apache.commons.collections15.Factory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe ThreeTenGraph that many threads can query and mutate at once.
+ * Every call goes to a private ThreeTenGraph under a StampedLock:
+ *
+ * <ul>
+ * <li>mutations take the write lock, so they run one at a time;</li>
+ * <li>every query that reads the graph's maps and lists takes the read lock,
+ * so any number of queries run in parallel with each other, but never
+ * alongside a mutation;</li>
+ * <li>the vertex and edge counts are copied into volatile fields at the end
+ * of every mutation and read from there without locking.</li>
+ * </ul>
+ *
+ * <p>
+ * A single lock guards the whole graph, since the underlying ThreeTenGraph
+ * keeps graph-wide maps that every mutation updates. Writers therefore do
+ * not scale with the number of threads; batching changes through addEdges,
+ * removeEdges and removeVertices is the way to cut locking cost.
+ *
+ * <p>
+ * All collections returned are copies. The lock is not reentrant, so the
+ * actions passed to the forEach methods must not call back into this graph.
+ *
+ * @author Hammadullah Nasir
+ *
+ * @param <V> for generics
+ * @param <E> for generics
+ */
+class ConcurrentThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent>
+		implements Graph<V, E>, DirectedGraph<V, E> {
+	/**
+	 * The graph all calls are forwarded to.
+	 */
+	private final ThreeTenGraph<V, E> graph;
+	/**
+	 * Guards graph.
+	 */
+	private final StampedLock lock = new StampedLock();
+	/**
+	 * Number of vertices as of the last mutation.
+	 */
+	private volatile int vertexCount;
+	/**
+	 * Number of edges as of the last mutation.
+	 */
+	private volatile int edgeCount;
+
+	/**
+	 * Creates a new, empty concurrent graph.
+	 */
+	public ConcurrentThreeTenGraph() {
+		this(new ThreeTenGraph<V, E>());
+	}
+
+	/**
+	 * Creates a concurrent graph backed by graph. After this call graph must
+	 * only be reached through the new object.
+	 * 
+	 * @param graph the graph to guard
+	 */
+	public ConcurrentThreeTenGraph(ThreeTenGraph<V, E> graph) {
+		if (graph == null) {
+			throw new IllegalArgumentException("graph cannot be null");
+		}
+		this.graph = graph;
+		this.vertexCount = graph.getVertexCount();
+		this.edgeCount = graph.getEdgeCount();
+	}
+
+	/**
+	 * Returns a {@code Factory} that creates an instance of this graph type.
+	 * 
+	 * @param <V> the vertex type for the graph factory
+	 * @param <E> the edge type for the graph factory
+	 * @return factory that creates graph instance
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> Factory<Graph<V, E>> getFactory() {
+		return new Factory<Graph<V, E>>() {
+			public Graph<V, E> create() {
+				return new ConcurrentThreeTenGraph<>();
+			}
+		};
+	}
+
+	/**
+	 * Builds a CSR snapshot of the graph under the read lock.
+	 * 
+	 * @return the CSR snapshot
+	 */
+	public ThreeTenGraphCsr toCsr() {
+		return read(() -> graph.toCsr());
+	}
+
+	/**
+	 * Passes each outgoing edge of vertex to action while holding the read
+	 * lock. action must not call back into this graph.
+	 * 
+	 * @param vertex the vertex whose outgoing edges are visited
+	 * @param action called once per outgoing edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachOutEdge(V vertex, Consumer<? super E> action) {
+		return read(() -> graph.forEachOutEdge(vertex, action));
+	}
+
+	/**
+	 * Passes each incoming edge of vertex to action while holding the read
+	 * lock. action must not call back into this graph.
+	 * 
+	 * @param vertex the vertex whose incoming edges are visited
+	 * @param action called once per incoming edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachInEdge(V vertex, Consumer<? super E> action) {
+		return read(() -> graph.forEachInEdge(vertex, action));
+	}
+
+	/**
+	 * Passes the destination of each outgoing edge of vertex to action while
+	 * holding the read lock. action must not call back into this graph.
+	 * 
+	 * @param vertex the vertex whose successors are visited
+	 * @param action called once per outgoing edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachSuccessor(V vertex, Consumer<? super V> action) {
+		return read(() -> graph.forEachSuccessor(vertex, action));
+	}
+
+	/**
+	 * Passes the source of each incoming edge of vertex to action while holding
+	 * the read lock. action must not call back into this graph.
+	 * 
+	 * @param vertex the vertex whose predecessors are visited
+	 * @param action called once per incoming edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachPredecessor(V vertex, Consumer<? super V> action) {
+		return read(() -> graph.forEachPredecessor(vertex, action));
+	}
+
+	/**
+	 * Passes each edge incident to vertex to action while holding the read
+	 * lock. action must not call back into this graph.
+	 * 
+	 * @param vertex the vertex whose incident edges are visited
+	 * @param action called once per incident edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachIncidentEdge(V vertex, Consumer<? super E> action) {
+		return read(() -> graph.forEachIncidentEdge(vertex, action));
+	}
+
+	/**
+	 * Adds a batch of edges under one write lock. See ThreeTenGraph.addEdges.
+	 * 
+	 * @param triples the edges to add, with their sources and destinations
+	 * @return the number of edges added
+	 */
+	public int addEdges(Collection<? extends ThreeTenGraph.Triple<? extends V, ? extends E>> triples) {
+		return write(() -> graph.addEdges(triples));
+	}
+
+	/**
+	 * Removes a batch of edges under one write lock. See
+	 * ThreeTenGraph.removeEdges.
+	 * 
+	 * @param edges the edges to remove
+	 * @return the number of edges removed
+	 */
+	public int removeEdges(Collection<? extends E> edges) {
+		return write(() -> graph.removeEdges(edges));
+	}
+
+	/**
+	 * Removes a batch of vertices and their edges under one write lock. See
+	 * ThreeTenGraph.removeVertices.
+	 * 
+	 * @param vertices the vertices to remove
+	 * @return the number of vertices removed
+	 */
+	public int removeVertices(Collection<? extends V> vertices) {
+		return write(() -> graph.removeVertices(vertices));
+	}
+
+	/**
+	 * Sets the allocators that removed components give their ids back to. See
+	 * ThreeTenGraph.setIdRecycling.
+	 * 
+	 * @param vertexAllocator the allocator the vertices' ids came from, or null
+	 * @param edgeAllocator   the allocator the edges' ids came from, or null
+	 */
+	public void setIdRecycling(ThreeTenIdAllocator vertexAllocator, ThreeTenIdAllocator edgeAllocator) {
+		write(() -> {
+			graph.setIdRecycling(vertexAllocator, edgeAllocator);
+			return null;
+		});
+	}
+
+	/**
+	 * Adds a listener told about every change. See ThreeTenGraph.addListener.
+	 * Callbacks run while the write lock is held, so they see changes in the
+	 * order they were made.
+	 * 
+	 * @param listener the listener to add
+	 */
+	public void addListener(ThreeTenGraphListener<? super V, ? super E> listener) {
+		write(() -> {
+			graph.addListener(listener);
+			return null;
+		});
+	}
+
+	/**
+	 * Removes a listener added with addListener.
+	 * 
+	 * @param listener the listener to remove
+	 * @return true if the listener was registered
+	 */
+	public boolean removeListener(ThreeTenGraphListener<? super V, ? super E> listener) {
+		return write(() -> graph.removeListener(listener));
+	}
+
+	/**
+	 * Returns a copy of all edges in this graph.
+	 * 
+	 * @return a new collection of all edges
+	 */
+	public Collection<E> getEdges() {
+		return read(() -> graph.getEdges());
+	}
+
+	/**
+	 * Returns a copy of all vertices in this graph.
+	 * 
+	 * @return a new collection of all vertices
+	 */
+	public Collection<V> getVertices() {
+		return read(() -> new ArrayList<>(graph.getVertices()));
+	}
+
+	/**
+	 * Returns the number of edges in this graph, as of the last completed
+	 * mutation. Takes no lock.
+	 * 
+	 * @return the number of edges
+	 */
+	public int getEdgeCount() {
+		return edgeCount;
+	}
+
+	/**
+	 * Returns the number of vertices in this graph, as of the last completed
+	 * mutation. Takes no lock.
+	 * 
+	 * @return the number of vertices
+	 */
+	public int getVertexCount() {
+		return vertexCount;
+	}
+
+	/**
+	 * Returns a copy of the incoming edges of vertex.
+	 * 
+	 * @param vertex the vertex whose incoming edges are returned
+	 * @return the incoming edges
+	 */
+	public Collection<E> getInEdges(V vertex) {
+		return read(() -> graph.getInEdges(vertex));
+	}
+
+	/**
+	 * Returns a copy of the outgoing edges of vertex.
+	 * 
+	 * @param vertex the vertex whose outgoing edges are returned
+	 * @return the outgoing edges
+	 */
+	public Collection<E> getOutEdges(V vertex) {
+		return read(() -> graph.getOutEdges(vertex));
+	}
+
+	/**
+	 * Returns the predecessors of vertex.
+	 * 
+	 * @param vertex the vertex whose predecessors are returned
+	 * @return the predecessors
+	 */
+	public Collection<V> getPredecessors(V vertex) {
+		return read(() -> graph.getPredecessors(vertex));
+	}
+
+	/**
+	 * Returns the successors of vertex.
+	 * 
+	 * @param vertex the vertex whose successors are returned
+	 * @return the successors
+	 */
+	public Collection<V> getSuccessors(V vertex) {
+		return read(() -> graph.getSuccessors(vertex));
+	}
+
+	/**
+	 * Returns the source of directedEdge.
+	 * 
+	 * @param directedEdge the edge to query
+	 * @return the source, or null if the edge is not present
+	 */
+	public V getSource(E directedEdge) {
+		return read(() -> graph.getSource(directedEdge));
+	}
+
+	/**
+	 * Returns the destination of directedEdge.
+	 * 
+	 * @param directedEdge the edge to query
+	 * @return the destination, or null if the edge is not present
+	 */
+	public V getDest(E directedEdge) {
+		return read(() -> graph.getDest(directedEdge));
+	}
+
+	/**
+	 * Returns the endpoints of edge.
+	 * 
+	 * @param edge the edge to query
+	 * @return the endpoints, or null if the edge is not present
+	 */
+	public Pair<V> getEndpoints(E edge) {
+		return read(() -> graph.getEndpoints(edge));
+	}
+
+	/**
+	 * Returns the neighbors of vertex.
+	 * 
+	 * @param vertex the vertex whose neighbors are returned
+	 * @return the neighbors, or null if vertex is not present
+	 */
+	public Collection<V> getNeighbors(V vertex) {
+		return read(() -> graph.getNeighbors(vertex));
+	}
+
+	/**
+	 * Returns the edges incident to vertex.
+	 * 
+	 * @param vertex the vertex whose incident edges are returned
+	 * @return the incident edges, or null if vertex is not present
+	 */
+	public Collection<E> getIncidentEdges(V vertex) {
+		return read(() -> graph.getIncidentEdges(vertex));
+	}
+
+	/**
+	 * Returns the vertices incident to edge.
+	 * 
+	 * @param edge the edge to query
+	 * @return the incident vertices, or null if edge is not present
+	 */
+	public Collection<V> getIncidentVertices(E edge) {
+		return read(() -> graph.getIncidentVertices(edge));
+	}
+
+	/**
+	 * Finds an edge from v1 to v2.
+	 * 
+	 * @param v1 the source vertex
+	 * @param v2 the destination vertex
+	 * @return an edge from v1 to v2, or null if there is none
+	 */
+	public E findEdge(V v1, V v2) {
+		return read(() -> graph.findEdge(v1, v2));
+	}
+
+	/**
+	 * Returns all edges from v1 to v2.
+	 * 
+	 * @param v1 the source vertex
+	 * @param v2 the destination vertex
+	 * @return the edges from v1 to v2, or null if there are none
+	 */
+	public Collection<E> findEdgeSet(V v1, V v2) {
+		return read(() -> graph.findEdgeSet(v1, v2));
+	}
+
+	/**
+	 * Adds vertex to this graph.
+	 * 
+	 * @param vertex the vertex to add
+	 * @return true if the add is successful, false otherwise
+	 */
+	public boolean addVertex(V vertex) {
+		return write(() -> graph.addVertex(vertex));
+	}
+
+	/**
+	 * Adds edge e from v1 to v2.
+	 * 
+	 * @param e  the edge to add
+	 * @param v1 the source vertex
+	 * @param v2 the destination vertex
+	 * @return true if the add is successful, false otherwise
+	 */
+	public boolean addEdge(E e, V v1, V v2) {
+		return write(() -> graph.addEdge(e, v1, v2));
+	}
+
+	/**
+	 * Adds edge e from v1 to v2 with the given type.
+	 * 
+	 * @param e        the edge to add
+	 * @param v1       the source vertex
+	 * @param v2       the destination vertex
+	 * @param edgeType the edge type, which must be directed
+	 * @return true if the add is successful, false otherwise
+	 */
+	public boolean addEdge(E e, V v1, V v2, EdgeType edgeType) {
+		return write(() -> graph.addEdge(e, v1, v2, edgeType));
+	}
+
+	/**
+	 * Adds edge between the two given vertices.
+	 * 
+	 * @param edge     the edge to add
+	 * @param vertices the source and destination
+	 * @return true if the add is successful, false otherwise
+	 */
+	public boolean addEdge(E edge, Collection<? extends V> vertices) {
+		return write(() -> graph.addEdge(edge, vertices));
+	}
+
+	/**
+	 * Adds edge between the two given vertices with the given type.
+	 * 
+	 * @param edge     the edge to add
+	 * @param vertices the source and destination
+	 * @param edgeType the edge type, which must be directed
+	 * @return true if the add is successful, false otherwise
+	 */
+	public boolean addEdge(E edge, Collection<? extends V> vertices, EdgeType edgeType) {
+		return write(() -> graph.addEdge(edge, vertices, edgeType));
+	}
+
+	/**
+	 * Removes vertex and its incident edges.
+	 * 
+	 * @param vertex the vertex to remove
+	 * @return true if the removal is successful, false otherwise
+	 */
+	public boolean removeVertex(V vertex) {
+		return write(() -> graph.removeVertex(vertex));
+	}
+
+	/**
+	 * Removes edge.
+	 * 
+	 * @param edge the edge to remove
+	 * @return true if the removal is successful, false otherwise
+	 */
+	public boolean removeEdge(E edge) {
+		return write(() -> graph.removeEdge(edge));
+	}
+
+	/**
+	 * Returns whether vertex is in this graph.
+	 * 
+	 * @param vertex the vertex to check
+	 * @return true if vertex is in this graph
+	 */
+	public boolean containsVertex(V vertex) {
+		return read(() -> graph.containsVertex(vertex));
+	}
+
+	/**
+	 * Returns whether edge is in this graph.
+	 * 
+	 * @param edge the edge to check
+	 * @return true if edge is in this graph
+	 */
+	public boolean containsEdge(E edge) {
+		return read(() -> graph.containsEdge(edge));
+	}
+
+	/**
+	 * Returns whether vertex is an endpoint of edge.
+	 * 
+	 * @param vertex the vertex to check
+	 * @param edge   the edge to check
+	 * @return true if vertex and edge are incident
+	 */
+	public boolean isIncident(V vertex, E edge) {
+		return read(() -> graph.isIncident(vertex, edge));
+	}
+
+	/**
+	 * Returns whether v1 and v2 share an edge.
+	 * 
+	 * @param v1 the first vertex
+	 * @param v2 the second vertex
+	 * @return true if v1 and v2 are neighbors
+	 */
+	public boolean isNeighbor(V v1, V v2) {
+		return read(() -> graph.isNeighbor(v1, v2));
+	}
+
+	/**
+	 * Returns whether v1 is a predecessor of v2.
+	 * 
+	 * @param v1 the first vertex
+	 * @param v2 the second vertex
+	 * @return true if v1 is a predecessor of v2
+	 */
+	public boolean isPredecessor(V v1, V v2) {
+		return read(() -> graph.isPredecessor(v1, v2));
+	}
+
+	/**
+	 * Returns whether v1 is a successor of v2.
+	 * 
+	 * @param v1 the first vertex
+	 * @param v2 the second vertex
+	 * @return true if v1 is a successor of v2
+	 */
+	public boolean isSuccessor(V v1, V v2) {
+		return read(() -> graph.isSuccessor(v1, v2));
+	}
+
+	/**
+	 * Returns the number of edges incident to vertex.
+	 * 
+	 * @param vertex the vertex to query
+	 * @return the degree
+	 */
+	public int degree(V vertex) {
+		return readInt(() -> graph.degree(vertex));
+	}
+
+	/**
+	 * Returns the number of neighbors of vertex.
+	 * 
+	 * @param vertex the vertex to query
+	 * @return the neighbor count
+	 */
+	public int getNeighborCount(V vertex) {
+		return readInt(() -> graph.getNeighborCount(vertex));
+	}
+
+	/**
+	 * Returns the number of incoming edges of vertex.
+	 * 
+	 * @param vertex the vertex to query
+	 * @return the in-degree
+	 */
+	public int inDegree(V vertex) {
+		return readInt(() -> graph.inDegree(vertex));
+	}
+
+	/**
+	 * Returns the number of outgoing edges of vertex.
+	 * 
+	 * @param vertex the vertex to query
+	 * @return the out-degree
+	 */
+	public int outDegree(V vertex) {
+		return readInt(() -> graph.outDegree(vertex));
+	}
+
+	/**
+	 * Returns the number of predecessors of vertex.
+	 * 
+	 * @param vertex the vertex to query
+	 * @return the predecessor count
+	 */
+	public int getPredecessorCount(V vertex) {
+		return readInt(() -> graph.getPredecessorCount(vertex));
+	}
+
+	/**
+	 * Returns the number of successors of vertex.
+	 * 
+	 * @param vertex the vertex to query
+	 * @return the successor count
+	 */
+	public int getSuccessorCount(V vertex) {
+		return readInt(() -> graph.getSuccessorCount(vertex));
+	}
+
+	/**
+	 * Returns the endpoint of edge that is not vertex.
+	 * 
+	 * @param vertex one endpoint
+	 * @param edge   the edge to query
+	 * @return the other endpoint
+	 */
+	public V getOpposite(V vertex, E edge) {
+		return read(() -> graph.getOpposite(vertex, edge));
+	}
+
+	/**
+	 * Returns whether vertex is the source of edge.
+	 * 
+	 * @param vertex the vertex to check
+	 * @param edge   the edge to check
+	 * @return true if vertex is the source of edge
+	 */
+	public boolean isSource(V vertex, E edge) {
+		return read(() -> graph.isSource(vertex, edge));
+	}
+
+	/**
+	 * Returns whether vertex is the destination of edge.
+	 * 
+	 * @param vertex the vertex to check
+	 * @param edge   the edge to check
+	 * @return true if vertex is the destination of edge
+	 */
+	public boolean isDest(V vertex, E edge) {
+		return read(() -> graph.isDest(vertex, edge));
+	}
+
+	/**
+	 * Returns the number of edges of the given type.
+	 * 
+	 * @param edgeType the edge type
+	 * @return the number of edges of that type
+	 */
+	public int getEdgeCount(EdgeType edgeType) {
+		return edgeType == EdgeType.DIRECTED ? edgeCount : 0;
+	}
+
+	/**
+	 * Returns the edges of the given type.
+	 * 
+	 * @param edgeType the edge type
+	 * @return the edges of that type, or null if the type is not allowed
+	 */
+	public Collection<E> getEdges(EdgeType edgeType) {
+		return read(() -> graph.getEdges(edgeType));
+	}
+
+	/**
+	 * Returns the type of edge.
+	 * 
+	 * @param edge the edge to query
+	 * @return the edge type
+	 */
+	public EdgeType getEdgeType(E edge) {
+		return read(() -> graph.getEdgeType(edge));
+	}
+
+	/**
+	 * Returns the default edge type.
+	 * 
+	 * @return the default edge type
+	 */
+	public EdgeType getDefaultEdgeType() {
+		return EdgeType.DIRECTED;
+	}
+
+	/**
+	 * Returns the number of vertices incident to edge.
+	 * 
+	 * @param edge the edge to query
+	 * @return the incident vertex count
+	 */
+	public int getIncidentCount(E edge) {
+		return 2;
+	}
+
+	/**
+	 * Int version of read, to avoid boxing counts and degrees.
+	 * 
+	 * @param query the query to run
+	 * @return the query result
+	 */
+	private int readInt(IntSupplier query) {
+		long stamp = lock.readLock();
+
+		try {
+			return query.getAsInt();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Runs a query under the read lock.
+	 * 
+	 * @param <T>   the result type
+	 * @param query the query to run
+	 * @return the query result
+	 */
+	private <T> T read(Supplier<T> query) {
+		long stamp = lock.readLock();
+
+		try {
+			return query.get();
+		} finally {
+			lock.unlockRead(stamp);
+		}
+	}
+
+	/**
+	 * Runs a mutation under the write lock, then publishes the new counts.
+	 * 
+	 * @param <T>    the result type
+	 * @param change the mutation to run
+	 * @return the mutation result
+	 */
+	private <T> T write(Supplier<T> change) {
+		long stamp = lock.writeLock();
+
+		try {
+			return change.get();
+		} finally {
+			vertexCount = graph.getVertexCount();
+			edgeCount = graph.getEdgeCount();
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	/**
+	 * Describes the graph under the read lock.
+	 * 
+	 * @return string representation
+	 */
+	public String toString() {
+		return read(() -> graph.toString());
+	}
+}
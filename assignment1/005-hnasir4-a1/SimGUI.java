@@ -1,11 +1,6 @@
-import edu.uci.ics.jung.graph.Graph;
 import edu.uci.ics.jung.graph.util.EdgeType;
 
-import edu.uci.ics.jung.algorithms.layout.Layout;
-import edu.uci.ics.jung.algorithms.layout.KKLayout;
-
 import edu.uci.ics.jung.algorithms.generators.random.ErdosRenyiGenerator;
-import edu.uci.ics.jung.algorithms.generators.random.ErdosRenyiGeneratorDirected;
 
 import edu.uci.ics.jung.visualization.RenderContext;
 import edu.uci.ics.jung.visualization.VisualizationViewer;
@@ -14,20 +9,13 @@ import edu.uci.ics.jung.visualization.control.EditingModalGraphMouse;
 import edu.uci.ics.jung.visualization.renderers.Renderer.VertexLabel.Position;
 
 import org.apache.commons.collections15.Factory;
-import org.apache.commons.collections15.Transformer;
 
 import java.util.*;
 
 import java.awt.GridLayout;
-import java.awt.Paint;
-import java.awt.Shape;
-import java.awt.Stroke;
-import java.awt.BasicStroke;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 
-import java.awt.geom.Ellipse2D;
-
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
 
@@ -52,13 +40,18 @@ class SimGUI {
 	/**
 	 * The graph currently being displayed.
 	 */
-	private Graph<ThreeTenNode, ThreeTenEdge> graph = null;
+	private ThreeTenGraph<ThreeTenNode, ThreeTenEdge> graph = null;
 
 	/**
 	 * The panel containing the graph display.
 	 */
 	private VisualizationViewer<ThreeTenNode, ThreeTenEdge> visServer = null;
 
+	/**
+	 * Draws the graph and keeps its layout up to date.
+	 */
+	private ThreeTenRenderPipeline<ThreeTenNode, ThreeTenEdge> pipeline = null;
+
 	/**
 	 * Editing model for mouse.
 	 */
@@ -151,68 +144,20 @@ class SimGUI {
 		if (visServer != null)
 			frame.remove(visServer);
 
-		// Layout (ISOMLayout also looks good)
-		Layout<ThreeTenNode, ThreeTenEdge> layout = new KKLayout<>(graph);
-		layout.setSize(new Dimension(600, 600));
-		visServer = new VisualizationViewer<ThreeTenNode, ThreeTenEdge>(layout);
-		visServer.setPreferredSize(new Dimension(600, 600));
+		// Layout (only re-lays out around the vertices an edit touches)
+		if (pipeline != null)
+			pipeline.stop();
+		ThreeTenForceLayout<ThreeTenNode, ThreeTenEdge> layout = new ThreeTenForceLayout<>(graph);
+		pipeline = new ThreeTenRenderPipeline<>(layout, new Dimension(600, 600));
+		visServer = pipeline.getViewer();
 
+		// shapes, strokes, colors and labels are set up by the pipeline
 		visServer.getRenderer().getVertexLabelRenderer().setPosition(Position.CNTR);
 		RenderContext<ThreeTenNode, ThreeTenEdge> context = visServer.getRenderContext();
 
-		// label edges with toString()
-		context.setEdgeLabelTransformer(new Transformer<ThreeTenEdge, String>() {
-			public String transform(ThreeTenEdge e) {
-				return e.toString();
-			}
-		});
-
-		// color arrows with edge color
-		context.setArrowFillPaintTransformer(new Transformer<ThreeTenEdge, Paint>() {
-			public Paint transform(ThreeTenEdge e) {
-				return e.getColor();
-			}
-		});
-
-		// color lines with edge color
-		context.setEdgeDrawPaintTransformer(new Transformer<ThreeTenEdge, Paint>() {
-			public Paint transform(ThreeTenEdge e) {
-				return e.getColor();
-			}
-		});
-
-		// set edge line stroke to bolder
-		context.setEdgeStrokeTransformer(new Transformer<ThreeTenEdge, Stroke>() {
-			public Stroke transform(ThreeTenEdge e) {
-				return new BasicStroke(2);
-			}
-		});
-
 		// move edge labels off the lines
 		context.setLabelOffset(-5);
 
-		// make nodes bigger
-		context.setVertexShapeTransformer(new Transformer<ThreeTenNode, Shape>() {
-			public Shape transform(ThreeTenNode v) {
-				int s = 30;
-				return new Ellipse2D.Double(-s / 2.0, -s / 2.0, s, s);
-			}
-		});
-
-		// label vertices with toString()
-		context.setVertexLabelTransformer(new Transformer<ThreeTenNode, String>() {
-			public String transform(ThreeTenNode v) {
-				return v.toString();
-			}
-		});
-
-		// color vertices with node color
-		context.setVertexFillPaintTransformer(new Transformer<ThreeTenNode, Paint>() {
-			public Paint transform(ThreeTenNode v) {
-				return v.getColor();
-			}
-		});
-
 		// Add user interactions
 		gm = new EditingModalGraphMouse<>(context, ThreeTenNode.getFactory(), ThreeTenEdge.getFactory());
 		gm.setMode(ModalGraphMouse.Mode.EDITING);
@@ -241,6 +186,9 @@ class SimGUI {
 		});
 		buttonPanel.add(reset);
 
+		// frame time
+		buttonPanel.add(pipeline.getStatusLabel());
+
 		frame.add(buttonPanel, 1);
 		frame.revalidate();
 	}
@@ -249,17 +197,15 @@ class SimGUI {
 	 * Generates a new graph for the algorithm.
 	 */
 	public void genGraph() {
-		ThreeTenNode.nodeCount = 0;
-		ThreeTenEdge.edgeCount = 0;
+		ThreeTenNode.IDS.reset();
+		ThreeTenEdge.IDS.reset();
 
 		Factory<ThreeTenNode> nodeFactory = ThreeTenNode.getFactory();
 		Factory<ThreeTenEdge> edgeFactory = ThreeTenEdge.getFactory();
 
-		ErdosRenyiGeneratorDirected<ThreeTenNode, ThreeTenEdge> gen = new ErdosRenyiGeneratorDirected<>(
-				ThreeTenGraph.<ThreeTenNode, ThreeTenEdge>getFactory(), nodeFactory, edgeFactory, this.numNodes,
-				this.prob);
-		gen.setSeed(this.rand.nextInt());
-		graph = gen.create();
+		ThreeTenGraphGenerator.EdgeList edges = new ThreeTenGraphGenerator().erdosRenyi(this.numNodes, this.prob,
+				this.rand.nextInt());
+		graph = edges.load(new ThreeTenGraphLoader<>(nodeFactory, edgeFactory)).getGraph();
 	}
 
 	/**
@@ -0,0 +1,615 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ranks the vertices of a ThreeTenGraph. Every measure runs on a CSR snapshot
+ * (see ThreeTenGraph.toCsr()) and only touches primitive arrays.
+ *
+ * <ul>
+ * <li>PageRank, by power iteration. Each iteration pulls rank along the
+ * incoming edges of every vertex, in chunks on a ForkJoinPool, into a second
+ * double[] buffer, and the two buffers are swapped after each iteration.
+ * Rank of vertices with no outgoing edges is spread over all vertices. The
+ * iteration stops once the ranks change by less than a tolerance (L1
+ * distance) or after a maximum number of iterations.</li>
+ * <li>In-degree weighted rank: the same iteration, but a vertex splits its
+ * rank among its successors in proportion to their in-degrees instead of
+ * evenly, so links to popular vertices carry more weight.</li>
+ * <li>Betweenness, estimated with Brandes' algorithm from a random sample of
+ * source vertices and scaled up to the whole graph. Sources are split among
+ * the pool's threads, each with its own work arrays and totals.</li>
+ * </ul>
+ *
+ * @author Hammadullah Nasir
+ */
+final class ThreeTenCentrality {
+	/**
+	 * Number of vertices handled by one rank task.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+	/**
+	 * Default probability of following an edge rather than jumping.
+	 */
+	public static final double DEFAULT_DAMPING = 0.85;
+	/**
+	 * Default L1 change in ranks below which the iteration stops.
+	 */
+	public static final double DEFAULT_TOLERANCE = 1e-9;
+	/**
+	 * Default cap on the number of iterations.
+	 */
+	public static final int DEFAULT_MAX_ITERATIONS = 100;
+
+	/**
+	 * The pool the tasks run on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates an engine that runs on the common ForkJoinPool.
+	 */
+	public ThreeTenCentrality() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates an engine that runs on the given pool.
+	 *
+	 * @param pool the pool to run on
+	 */
+	public ThreeTenCentrality(ForkJoinPool pool) {
+		if (pool == null) {
+			throw new IllegalArgumentException("pool cannot be null");
+		}
+		this.pool = pool;
+	}
+
+	/**
+	 * Computes the PageRank of every vertex of graph with the default
+	 * settings. The graph is snapshotted first, so it must not be modified
+	 * during the call.
+	 *
+	 * @param <V>   the vertex type
+	 * @param <E>   the edge type
+	 * @param graph the graph to rank
+	 * @return the rank of every vertex, keyed by vertex id
+	 */
+	public <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> Scores pageRank(
+			ThreeTenGraph<V, E> graph) {
+		return pageRank(graph.toCsr(), DEFAULT_DAMPING, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+	}
+
+	/**
+	 * Computes the PageRank of every vertex of a CSR snapshot. The ranks sum
+	 * to 1.
+	 *
+	 * @param csr           the snapshot to rank
+	 * @param damping       probability of following an edge, from 0 to 1
+	 * @param tolerance     L1 change in ranks that counts as converged
+	 * @param maxIterations the most iterations to run
+	 * @return the rank of every vertex, keyed by vertex id
+	 */
+	public Scores pageRank(ThreeTenGraphCsr csr, double damping, double tolerance, int maxIterations) {
+		int n = csr.vertexCount();
+		int[] offsets = csr.offsets();
+		double[] share = new double[n];
+
+		// an even split: each successor gets 1 / outDegree of the rank
+		for (int slot = 0; slot < n; slot++) {
+			int out = offsets[slot + 1] - offsets[slot];
+			share[slot] = out == 0 ? 0 : 1.0 / out;
+		}
+		return iterate(csr, share, null, damping, tolerance, maxIterations);
+	}
+
+	/**
+	 * Computes the in-degree weighted rank of every vertex of graph with the
+	 * default settings. The graph is snapshotted first, so it must not be
+	 * modified during the call.
+	 *
+	 * @param <V>   the vertex type
+	 * @param <E>   the edge type
+	 * @param graph the graph to rank
+	 * @return the rank of every vertex, keyed by vertex id
+	 */
+	public <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> Scores inDegreeRank(
+			ThreeTenGraph<V, E> graph) {
+		return inDegreeRank(graph.toCsr(), DEFAULT_DAMPING, DEFAULT_TOLERANCE, DEFAULT_MAX_ITERATIONS);
+	}
+
+	/**
+	 * Computes the in-degree weighted rank of every vertex of a CSR snapshot:
+	 * PageRank where vertex u gives successor v the fraction inDegree(v) /
+	 * (sum of the in-degrees of u's successors) of its rank. The ranks sum to
+	 * 1.
+	 *
+	 * @param csr           the snapshot to rank
+	 * @param damping       probability of following an edge, from 0 to 1
+	 * @param tolerance     L1 change in ranks that counts as converged
+	 * @param maxIterations the most iterations to run
+	 * @return the rank of every vertex, keyed by vertex id
+	 */
+	public Scores inDegreeRank(ThreeTenGraphCsr csr, double damping, double tolerance, int maxIterations) {
+		int n = csr.vertexCount();
+		int[] offsets = csr.offsets();
+		int[] targets = csr.targets();
+		int[] inOffsets = csr.inOffsets();
+		double[] weight = new double[n];
+		double[] share = new double[n];
+
+		for (int slot = 0; slot < n; slot++) {
+			weight[slot] = inOffsets[slot + 1] - inOffsets[slot];
+		}
+		for (int slot = 0; slot < n; slot++) {
+			// every successor has in-degree at least 1, so total > 0 here
+			double total = 0;
+			for (int i = offsets[slot]; i < offsets[slot + 1]; i++) {
+				total += weight[targets[i]];
+			}
+			share[slot] = total == 0 ? 0 : 1.0 / total;
+		}
+		return iterate(csr, share, weight, damping, tolerance, maxIterations);
+	}
+
+	/**
+	 * Estimates the betweenness of every vertex of graph from samples source
+	 * vertices. The graph is snapshotted first, so it must not be modified
+	 * during the call.
+	 *
+	 * @param <V>     the vertex type
+	 * @param <E>     the edge type
+	 * @param graph   the graph to rank
+	 * @param samples the number of source vertices to sample
+	 * @param seed    the random seed for picking sources
+	 * @return the estimated betweenness of every vertex, keyed by vertex id
+	 */
+	public <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> Scores betweenness(
+			ThreeTenGraph<V, E> graph, int samples, long seed) {
+		return betweenness(graph.toCsr(), samples, seed);
+	}
+
+	/**
+	 * Estimates the betweenness of every vertex of a CSR snapshot: the number
+	 * of shortest directed paths between other vertices that pass through it,
+	 * with paths of equal length shared evenly. Brandes' algorithm is run from
+	 * samples distinct random sources and the totals are scaled by
+	 * vertexCount / samples. With samples at least the vertex count, every
+	 * vertex is a source and the result is exact.
+	 *
+	 * @param csr     the snapshot to rank
+	 * @param samples the number of source vertices to sample
+	 * @param seed    the random seed for picking sources
+	 * @return the estimated betweenness of every vertex, keyed by vertex id
+	 */
+	public Scores betweenness(ThreeTenGraphCsr csr, int samples, long seed) {
+		if (samples < 1) {
+			throw new IllegalArgumentException("need at least one sample");
+		}
+		int n = csr.vertexCount();
+		int k = Math.min(samples, n);
+
+		// the first k entries of a partial Fisher-Yates shuffle
+		int[] sources = new int[n];
+		for (int slot = 0; slot < n; slot++) {
+			sources[slot] = slot;
+		}
+		SplittableRandom random = new SplittableRandom(seed);
+		for (int i = 0; i < k; i++) {
+			int j = i + random.nextInt(n - i);
+			int t = sources[i];
+			sources[i] = sources[j];
+			sources[j] = t;
+		}
+
+		int groups = Math.max(1, Math.min(k, pool.getParallelism()));
+		double[][] totals = new double[groups][];
+		ArrayList<RecursiveAction> tasks = new ArrayList<>();
+		for (int g = 0; g < groups; g++) {
+			final int group = g;
+			tasks.add(new RecursiveAction() {
+				protected void compute() {
+					totals[group] = brandes(csr, sources, group, groups, k);
+				}
+			});
+		}
+		pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+
+		double scale = k == 0 ? 0 : (double) n / k;
+		double[] score = new double[n];
+		for (double[] total : totals) {
+			for (int slot = 0; slot < n; slot++) {
+				score[slot] += total[slot];
+			}
+		}
+		for (int slot = 0; slot < n; slot++) {
+			score[slot] *= scale;
+		}
+		return new Scores(csr, score, 1, true);
+	}
+
+	/**
+	 * Runs the rank iteration shared by PageRank and the in-degree weighted
+	 * rank. Vertex v's next rank is (1 - damping) / n, plus damping times
+	 * weight[v] times the sum of rank[u] * share[u] over its predecessors u,
+	 * plus damping times its even part of the rank of vertices with no
+	 * successors.
+	 *
+	 * @param csr           the snapshot to rank
+	 * @param share         per-unit-weight fraction of its rank each vertex
+	 *                      gives away along each outgoing edge
+	 * @param weight        weight of each vertex as a successor, or null for
+	 *                      all 1
+	 * @param damping       probability of following an edge
+	 * @param tolerance     L1 change in ranks that counts as converged
+	 * @param maxIterations the most iterations to run
+	 * @return the ranks, keyed by vertex id
+	 */
+	private Scores iterate(ThreeTenGraphCsr csr, double[] share, double[] weight, double damping, double tolerance,
+			int maxIterations) {
+		if (!(damping >= 0 && damping <= 1) || maxIterations < 0) {
+			throw new IllegalArgumentException("need 0 <= damping <= 1 and maxIterations >= 0");
+		}
+		int n = csr.vertexCount();
+		if (n == 0) {
+			return new Scores(csr, new double[0], 0, true);
+		}
+
+		int[] offsets = csr.offsets();
+		int[] inOffsets = csr.inOffsets();
+		int[] sources = csr.sources();
+		int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		double[] partial = new double[chunks];
+
+		double[] rank = new double[n];
+		double[] next = new double[n];
+		double[] outgoing = new double[n];
+		Arrays.fill(rank, 1.0 / n);
+
+		int iterations = 0;
+		boolean converged = false;
+		while (iterations < maxIterations && !converged) {
+			double[] current = rank;
+
+			// what each vertex sends along each edge, and the rank with nowhere to go
+			forEachChunk(n, (chunk, lo, hi) -> {
+				double dangling = 0;
+				for (int u = lo; u < hi; u++) {
+					outgoing[u] = current[u] * share[u];
+					if (offsets[u + 1] == offsets[u]) {
+						dangling += current[u];
+					}
+				}
+				partial[chunk] = dangling;
+			});
+			double base = (1 - damping) / n + damping * sum(partial) / n;
+
+			double[] result = next;
+			forEachChunk(n, (chunk, lo, hi) -> {
+				double change = 0;
+				for (int v = lo; v < hi; v++) {
+					double in = 0;
+					for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+						in += outgoing[sources[i]];
+					}
+					double r = base + damping * (weight == null ? in : weight[v] * in);
+					change += Math.abs(r - current[v]);
+					result[v] = r;
+				}
+				partial[chunk] = change;
+			});
+
+			next = rank;
+			rank = result;
+			iterations += 1;
+			converged = sum(partial) < tolerance;
+		}
+
+		return new Scores(csr, rank, iterations, converged);
+	}
+
+	/**
+	 * Runs Brandes' algorithm from every count-th sampled source starting at
+	 * first, and returns the summed dependencies of each slot.
+	 *
+	 * @param csr     the snapshot
+	 * @param sources the sampled source slots in their first k entries
+	 * @param first   the first position in sources to use
+	 * @param step    the distance between positions used
+	 * @param k       the number of sampled sources
+	 * @return the dependency totals, indexed by slot
+	 */
+	private static double[] brandes(ThreeTenGraphCsr csr, int[] sources, int first, int step, int k) {
+		int n = csr.vertexCount();
+		int[] offsets = csr.offsets();
+		int[] targets = csr.targets();
+		int[] inOffsets = csr.inOffsets();
+		int[] preds = csr.sources();
+
+		double[] total = new double[n];
+		double[] sigma = new double[n];
+		double[] delta = new double[n];
+		int[] dist = new int[n];
+		int[] order = new int[n];
+		Arrays.fill(dist, -1);
+
+		for (int p = first; p < k; p += step) {
+			int s = sources[p];
+
+			// BFS; order doubles as the queue and, read backwards, the stack
+			int head = 0;
+			int tail = 0;
+			order[tail++] = s;
+			dist[s] = 0;
+			sigma[s] = 1;
+			while (head < tail) {
+				int u = order[head++];
+				for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+					int v = targets[i];
+					if (dist[v] == -1) {
+						dist[v] = dist[u] + 1;
+						order[tail++] = v;
+					}
+					if (dist[v] == dist[u] + 1) {
+						sigma[v] += sigma[u];
+					}
+				}
+			}
+
+			for (int j = tail - 1; j > 0; j--) {
+				int w = order[j];
+				double coefficient = (1 + delta[w]) / sigma[w];
+				for (int i = inOffsets[w]; i < inOffsets[w + 1]; i++) {
+					int v = preds[i];
+					if (dist[v] != -1 && dist[v] == dist[w] - 1) {
+						delta[v] += sigma[v] * coefficient;
+					}
+				}
+				total[w] += delta[w];
+			}
+
+			// only the reached slots were touched
+			for (int j = 0; j < tail; j++) {
+				int v = order[j];
+				dist[v] = -1;
+				sigma[v] = 0;
+				delta[v] = 0;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Adds up values in a fixed order, so results do not depend on which
+	 * thread finished first.
+	 *
+	 * @param values the values
+	 * @return their sum
+	 */
+	private static double sum(double[] values) {
+		double sum = 0;
+		for (double value : values) {
+			sum += value;
+		}
+		return sum;
+	}
+
+	/**
+	 * Runs body on each chunk of CHUNK_SIZE slots out of [0, n) on the pool,
+	 * and returns once every chunk is done.
+	 *
+	 * @param n    the number of slots
+	 * @param body the work for one chunk
+	 */
+	private void forEachChunk(int n, Chunk body) {
+		int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		if (chunks <= 1) {
+			body.run(0, 0, n);
+			return;
+		}
+
+		ArrayList<RecursiveAction> tasks = new ArrayList<>();
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			final int number = chunk;
+			tasks.add(new RecursiveAction() {
+				protected void compute() {
+					body.run(number, number * CHUNK_SIZE, Math.min(n, (number + 1) * CHUNK_SIZE));
+				}
+			});
+		}
+
+		pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Work on one chunk of slots.
+	 */
+	private interface Chunk {
+		/**
+		 * Handles slots lo to hi - 1.
+		 *
+		 * @param chunk the chunk number
+		 * @param lo    the first slot
+		 * @param hi    one past the last slot
+		 */
+		void run(int chunk, int lo, int hi);
+	}
+
+	/**
+	 * A score for every vertex of a snapshot.
+	 */
+	static final class Scores {
+		/**
+		 * The snapshot the scores are for.
+		 */
+		private final ThreeTenGraphCsr csr;
+		/**
+		 * Score of each slot.
+		 */
+		private final double[] score;
+		/**
+		 * Number of iterations run.
+		 */
+		private final int iterations;
+		/**
+		 * Whether the iteration met its tolerance.
+		 */
+		private final boolean converged;
+
+		/**
+		 * Creates a result from slot-indexed scores.
+		 *
+		 * @param csr        the snapshot the scores are for
+		 * @param score      score of each slot
+		 * @param iterations number of iterations run
+		 * @param converged  whether the iteration met its tolerance
+		 */
+		Scores(ThreeTenGraphCsr csr, double[] score, int iterations, boolean converged) {
+			this.csr = csr;
+			this.score = score;
+			this.iterations = iterations;
+			this.converged = converged;
+		}
+
+		/**
+		 * Returns the score of the vertex with id.
+		 *
+		 * @param id the vertex id
+		 * @return the score, or NaN if the vertex is unknown
+		 */
+		public double score(int id) {
+			int slot = csr.slotOf(id);
+			return slot == -1 ? Double.NaN : score[slot];
+		}
+
+		/**
+		 * Returns the ids of the count highest scoring vertices, best first.
+		 * Ties go to the lower slot.
+		 *
+		 * @param count the number of vertices wanted
+		 * @return up to count vertex ids
+		 */
+		public int[] top(int count) {
+			int n = score.length;
+			int k = Math.max(0, Math.min(count, n));
+
+			// a min-heap of the best k slots seen so far
+			int[] heap = new int[k];
+			int size = 0;
+			for (int slot = 0; slot < n && k > 0; slot++) {
+				if (size < k) {
+					heap[size] = slot;
+					siftUp(heap, size++);
+				} else if (better(slot, heap[0])) {
+					heap[0] = slot;
+					siftDown(heap, size);
+				}
+			}
+
+			int[] ids = new int[size];
+			for (int i = size - 1; i >= 0; i--) {
+				ids[i] = csr.vertexId(heap[0]);
+				heap[0] = heap[i];
+				siftDown(heap, i);
+			}
+			return ids;
+		}
+
+		/**
+		 * Returns the number of iterations run; 1 for betweenness.
+		 *
+		 * @return the iteration count
+		 */
+		public int iterations() {
+			return iterations;
+		}
+
+		/**
+		 * Returns whether the iteration stopped because the ranks converged
+		 * rather than because it ran out of iterations.
+		 *
+		 * @return true if converged
+		 */
+		public boolean converged() {
+			return converged;
+		}
+
+		/**
+		 * Returns the score array, indexed by slot. The array is not copied.
+		 *
+		 * @return the scores
+		 */
+		double[] scores() {
+			return score;
+		}
+
+		/**
+		 * Returns whether slot a ranks above slot b.
+		 *
+		 * @param a a slot
+		 * @param b another slot
+		 * @return true if a has the higher score, or the same score and the
+		 *         lower slot
+		 */
+		private boolean better(int a, int b) {
+			return score[a] > score[b] || score[a] == score[b] && a < b;
+		}
+
+		/**
+		 * Moves heap[i] up to its place in the min-heap.
+		 *
+		 * @param heap the heap
+		 * @param i    the position to fix
+		 */
+		private void siftUp(int[] heap, int i) {
+			while (i > 0) {
+				int parent = (i - 1) / 2;
+				if (!better(heap[parent], heap[i])) {
+					return;
+				}
+				int t = heap[parent];
+				heap[parent] = heap[i];
+				heap[i] = t;
+				i = parent;
+			}
+		}
+
+		/**
+		 * Moves heap[0] down to its place in the min-heap of the first size
+		 * entries.
+		 *
+		 * @param heap the heap
+		 * @param size the number of entries in the heap
+		 */
+		private void siftDown(int[] heap, int size) {
+			int i = 0;
+			while (true) {
+				int worst = i;
+				int left = 2 * i + 1;
+				if (left < size && better(heap[worst], heap[left])) {
+					worst = left;
+				}
+				if (left + 1 < size && better(heap[worst], heap[left + 1])) {
+					worst = left + 1;
+				}
+				if (worst == i) {
+					return;
+				}
+				int t = heap[worst];
+				heap[worst] = heap[i];
+				heap[i] = t;
+				i = worst;
+			}
+		}
+	}
+}
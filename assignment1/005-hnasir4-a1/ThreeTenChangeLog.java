@@ -0,0 +1,541 @@
+import org.apache.commons.collections15.Transformer;
+
+import java.awt.Color;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+
+/**
+ * Append-only log of the changes made to a ThreeTenGraph, for crash recovery
+ * without a full snapshot on every change. Register it with
+ * ThreeTenGraph.addListener and every vertex and edge added or removed is
+ * written as a small binary record.
+ *
+ * <p>
+ * Records are collected in a buffer and written and forced to disk together
+ * once groupSize of them have built up, or when commit() is called (group
+ * commit). A crash loses at most the records since the last commit. A torn
+ * record at the end of the file is ignored on replay and cut off when the log
+ * is reopened.
+ *
+ * <p>
+ * checkpoint() saves a ThreeTenGraphSnapshot and cuts the log back to its
+ * header, and recover() rebuilds a graph from that snapshot plus whatever was
+ * logged after it. Replay skips records that are already reflected in the
+ * graph, so a crash between saving the snapshot and emptying the log does no
+ * harm. A file shorter than the header, left by a crash before a new log's
+ * header reached the disk, reads as an empty log.
+ *
+ * <p>
+ * Layout, all big endian: the int MAGIC and an int VERSION, then records of a
+ * one-byte kind followed by ints: ADD_VERTEX id, color, text; ADD_EDGE id,
+ * source id, destination id, color, text; REMOVE_EDGE id; REMOVE_VERTEX id.
+ * Colors are ARGB ints and text is an int byte length (-1 for no text)
+ * followed by UTF-8 bytes, both as they were when the component was added.
+ *
+ * @author Hammadullah Nasir
+ */
+final class ThreeTenChangeLog implements ThreeTenGraphListener<ThreeTenGraphComponent, ThreeTenGraphComponent>,
+		Closeable {
+	/**
+	 * First int of a change log file ("TTCL").
+	 */
+	public static final int MAGIC = 0x5454434C;
+	/**
+	 * Log format version written and accepted by this class.
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * Records per group commit when no group size is given.
+	 */
+	public static final int DEFAULT_GROUP_SIZE = 256;
+
+	/**
+	 * Record kind for an added vertex.
+	 */
+	private static final byte ADD_VERTEX = 1;
+	/**
+	 * Record kind for an added edge.
+	 */
+	private static final byte ADD_EDGE = 2;
+	/**
+	 * Record kind for a removed edge.
+	 */
+	private static final byte REMOVE_EDGE = 3;
+	/**
+	 * Record kind for a removed vertex.
+	 */
+	private static final byte REMOVE_VERTEX = 4;
+
+	/**
+	 * Size of the header (magic, version) in bytes.
+	 */
+	private static final int HEADER_BYTES = 8;
+	/**
+	 * Initial size of the record buffer in bytes.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The open log file, positioned at its end.
+	 */
+	private final FileChannel channel;
+	/**
+	 * Records commit after this many are pending.
+	 */
+	private final int groupSize;
+	/**
+	 * Records not yet written to the file.
+	 */
+	private ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+	/**
+	 * Number of records in buf.
+	 */
+	private int pending = 0;
+
+	/**
+	 * Opens a log with the default group size. See
+	 * ThreeTenChangeLog(Path, int).
+	 *
+	 * @param file the log file
+	 * @throws IOException if the file cannot be opened or is not a change log
+	 */
+	public ThreeTenChangeLog(Path file) throws IOException {
+		this(file, DEFAULT_GROUP_SIZE);
+	}
+
+	/**
+	 * Opens a log for appending, creating it if needed. An existing log is
+	 * kept, minus any torn record at its end.
+	 *
+	 * @param file      the log file
+	 * @param groupSize number of records written and forced to disk together
+	 * @throws IOException if the file cannot be opened or is not a change log
+	 */
+	public ThreeTenChangeLog(Path file, int groupSize) throws IOException {
+		if (groupSize < 1) {
+			throw new IllegalArgumentException("groupSize must be positive");
+		}
+		this.groupSize = groupSize;
+
+		long end = Files.exists(file) ? validEnd(file) : 0;
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		if (end == 0) {
+			writeHeader();
+		} else {
+			channel.truncate(end);
+			channel.position(end);
+		}
+	}
+
+	/**
+	 * Logs an added vertex.
+	 *
+	 * @param vertex the new vertex
+	 * @throws UncheckedIOException if a group commit fails
+	 */
+	public void vertexAdded(ThreeTenGraphComponent vertex) {
+		byte[] text = encode(vertex.getText());
+		reserve(13 + (text == null ? 0 : text.length));
+		buf.put(ADD_VERTEX).putInt(vertex.getId()).putInt(vertex.getColor().getRGB());
+		putText(text);
+		added();
+	}
+
+	/**
+	 * Logs an added edge.
+	 *
+	 * @param edge   the new edge
+	 * @param source its source vertex
+	 * @param dest   its destination vertex
+	 * @throws UncheckedIOException if a group commit fails
+	 */
+	public void edgeAdded(ThreeTenGraphComponent edge, ThreeTenGraphComponent source, ThreeTenGraphComponent dest) {
+		byte[] text = encode(edge.getText());
+		reserve(21 + (text == null ? 0 : text.length));
+		buf.put(ADD_EDGE).putInt(edge.getId()).putInt(source.getId()).putInt(dest.getId())
+				.putInt(edge.getColor().getRGB());
+		putText(text);
+		added();
+	}
+
+	/**
+	 * Logs a removed edge.
+	 *
+	 * @param edge the removed edge
+	 * @throws UncheckedIOException if a group commit fails
+	 */
+	public void edgeRemoved(ThreeTenGraphComponent edge) {
+		reserve(5);
+		buf.put(REMOVE_EDGE).putInt(edge.getId());
+		added();
+	}
+
+	/**
+	 * Logs a removed vertex.
+	 *
+	 * @param vertex the removed vertex
+	 * @throws UncheckedIOException if a group commit fails
+	 */
+	public void vertexRemoved(ThreeTenGraphComponent vertex) {
+		reserve(5);
+		buf.put(REMOVE_VERTEX).putInt(vertex.getId());
+		added();
+	}
+
+	/**
+	 * Writes every pending record and forces the file to disk.
+	 *
+	 * @throws IOException if the write fails
+	 */
+	public void commit() throws IOException {
+		if (pending == 0) {
+			return;
+		}
+
+		buf.flip();
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+		buf.clear();
+		channel.force(false);
+		pending = 0;
+	}
+
+	/**
+	 * Saves graph as a snapshot and empties the log down to its header. The
+	 * snapshot is written to a temporary file first and moved into place, so
+	 * snapshot always holds a complete graph. graph must be the graph this log
+	 * is listening to, and must not change during the call.
+	 *
+	 * @param <V>      the vertex type
+	 * @param <E>      the edge type
+	 * @param graph    the graph to save
+	 * @param snapshot the snapshot file
+	 * @throws IOException if the snapshot or log cannot be written
+	 */
+	public <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> void checkpoint(
+			ThreeTenGraph<V, E> graph, Path snapshot) throws IOException {
+		commit();
+
+		Path temp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+		ThreeTenGraphSnapshot.write(graph, temp);
+		Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		// the header never changes, so keeping it leaves a valid log at
+		// every point
+		channel.truncate(HEADER_BYTES);
+		channel.position(HEADER_BYTES);
+		channel.force(true);
+	}
+
+	/**
+	 * Commits any pending records and closes the file.
+	 *
+	 * @throws IOException if the final commit fails
+	 */
+	public void close() throws IOException {
+		try {
+			commit();
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Rebuilds a graph from a snapshot and the log written since it. Either
+	 * file may be missing.
+	 *
+	 * @param <V>         the vertex type
+	 * @param <E>         the edge type
+	 * @param snapshot    the snapshot file
+	 * @param log         the log file
+	 * @param vertexMaker creates a vertex with the given id
+	 * @param edgeMaker   creates an edge with the given id
+	 * @return the recovered graph
+	 * @throws IOException if a file cannot be read or is corrupt
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> ThreeTenGraph<V, E> recover(
+			Path snapshot, Path log, Transformer<Integer, V> vertexMaker, Transformer<Integer, E> edgeMaker)
+			throws IOException {
+		ThreeTenGraph<V, E> graph;
+
+		if (Files.exists(snapshot)) {
+			graph = ThreeTenGraphSnapshot.read(snapshot, vertexMaker, edgeMaker);
+		} else {
+			graph = new ThreeTenGraph<>();
+		}
+		if (Files.exists(log)) {
+			replay(log, graph, vertexMaker, edgeMaker);
+		}
+		return graph;
+	}
+
+	/**
+	 * Applies the records of a log to graph, in order, stopping at a torn
+	 * final record. Records that are already reflected in graph (a vertex or
+	 * edge that is already there, or already gone) and edges whose endpoints
+	 * are gone are skipped.
+	 *
+	 * @param <V>         the vertex type
+	 * @param <E>         the edge type
+	 * @param log         the log file
+	 * @param graph       the graph to change
+	 * @param vertexMaker creates a vertex with the given id
+	 * @param edgeMaker   creates an edge with the given id
+	 * @return the number of records applied
+	 * @throws IOException if the log cannot be read or is corrupt
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> int replay(Path log,
+			ThreeTenGraph<V, E> graph, Transformer<Integer, V> vertexMaker, Transformer<Integer, E> edgeMaker)
+			throws IOException {
+		HashMap<Integer, V> vertices = new HashMap<>();
+		HashMap<Integer, E> edges = new HashMap<>();
+		for (V vertex : graph.getVertices()) {
+			vertices.put(vertex.getId(), vertex);
+		}
+		for (E edge : graph.getEdges()) {
+			edges.put(edge.getId(), edge);
+		}
+
+		ByteBuffer records = map(log);
+		int applied = 0;
+		while (complete(records)) {
+			byte kind = records.get();
+			int id = records.getInt();
+
+			if (kind == ADD_VERTEX) {
+				Color color = new Color(records.getInt(), true);
+				String text = getText(records);
+				if (!vertices.containsKey(id)) {
+					V vertex = vertexMaker.transform(id);
+					vertex.setColor(color);
+					vertex.setText(text);
+					graph.addVertex(vertex);
+					vertices.put(id, vertex);
+					applied += 1;
+				}
+			} else if (kind == ADD_EDGE) {
+				V source = vertices.get(records.getInt());
+				V dest = vertices.get(records.getInt());
+				Color color = new Color(records.getInt(), true);
+				String text = getText(records);
+				if (!edges.containsKey(id) && source != null && dest != null) {
+					E edge = edgeMaker.transform(id);
+					edge.setColor(color);
+					edge.setText(text);
+					graph.addEdge(edge, source, dest);
+					edges.put(id, edge);
+					applied += 1;
+				}
+			} else if (kind == REMOVE_EDGE) {
+				E edge = edges.remove(id);
+				if (edge != null) {
+					graph.removeEdge(edge);
+					applied += 1;
+				}
+			} else {
+				V vertex = vertices.remove(id);
+				if (vertex != null) {
+					for (E edge : graph.getIncidentEdges(vertex)) {
+						edges.remove(edge.getId());
+					}
+					graph.removeVertex(vertex);
+					applied += 1;
+				}
+			}
+		}
+		return applied;
+	}
+
+	/**
+	 * Counts a newly buffered record and commits the group if it is full.
+	 */
+	private void added() {
+		pending += 1;
+		if (pending >= groupSize) {
+			try {
+				commit();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Makes room in the record buffer for a record of the given size.
+	 *
+	 * @param bytes the record size
+	 */
+	private void reserve(int bytes) {
+		if (buf.remaining() >= bytes) {
+			return;
+		}
+
+		ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + bytes));
+		buf.flip();
+		bigger.put(buf);
+		buf = bigger;
+	}
+
+	/**
+	 * Writes the file header at the channel's position and forces it to disk.
+	 *
+	 * @throws IOException if the write fails
+	 */
+	private void writeHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+		header.flip();
+		while (header.hasRemaining()) {
+			channel.write(header);
+		}
+		channel.force(false);
+	}
+
+	/**
+	 * Appends encoded text to the record buffer.
+	 *
+	 * @param text the UTF-8 bytes, or null for no text
+	 */
+	private void putText(byte[] text) {
+		if (text == null) {
+			buf.putInt(-1);
+		} else {
+			buf.putInt(text.length).put(text);
+		}
+	}
+
+	/**
+	 * Encodes component text for a record.
+	 *
+	 * @param text the text, or null
+	 * @return the UTF-8 bytes, or null
+	 */
+	private static byte[] encode(String text) {
+		return text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads text written by putText.
+	 *
+	 * @param records the log, positioned at the text
+	 * @return the text, or null
+	 */
+	private static String getText(ByteBuffer records) {
+		int length = records.getInt();
+		if (length < 0) {
+			return null;
+		}
+
+		byte[] bytes = new byte[length];
+		records.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the length of the part of a log that holds whole records.
+	 *
+	 * @param file the log file
+	 * @return the offset just past the last whole record
+	 * @throws IOException if the file cannot be read or is not a change log
+	 */
+	private static long validEnd(Path file) throws IOException {
+		ByteBuffer records = map(file);
+		while (complete(records)) {
+			records.position(records.position() + recordLength(records));
+		}
+		return records.position();
+	}
+
+	/**
+	 * Maps a log file and checks its header. A file shorter than the header
+	 * holds no records yet and maps to an empty buffer.
+	 *
+	 * @param file the log file
+	 * @return the mapped file, positioned at the first record
+	 * @throws IOException if the file cannot be read or is not a change log
+	 */
+	private static ByteBuffer map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException(file + " is too large to replay; checkpoint more often");
+			}
+
+			if (size < HEADER_BYTES) {
+				return ByteBuffer.allocate(0);
+			}
+
+			MappedByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (records.getInt() != MAGIC) {
+				throw new IOException(file + " is not a change log");
+			}
+			if (records.getInt() != VERSION) {
+				throw new IOException(file + " has an unsupported change log version");
+			}
+			return records;
+		}
+	}
+
+	/**
+	 * Returns whether a whole record starts at the buffer's position.
+	 *
+	 * @param records the log
+	 * @return true if the next record is complete
+	 * @throws IOException if the next record has an unknown kind
+	 */
+	private static boolean complete(ByteBuffer records) throws IOException {
+		int length = recordLength(records);
+		return length > 0 && length <= records.remaining();
+	}
+
+	/**
+	 * Returns the length of the record at the buffer's position, without
+	 * moving it.
+	 *
+	 * @param records the log
+	 * @return the record length in bytes, or 0 if not even the fixed part of
+	 *         a record is there
+	 * @throws IOException if the record has an unknown kind
+	 */
+	private static int recordLength(ByteBuffer records) throws IOException {
+		int at = records.position();
+		if (!records.hasRemaining()) {
+			return 0;
+		}
+
+		int fixed;
+		switch (records.get(at)) {
+		case 0:
+			// space the file system extended but never filled
+			return 0;
+		case ADD_VERTEX:
+			fixed = 13;
+			break;
+		case ADD_EDGE:
+			fixed = 21;
+			break;
+		case REMOVE_EDGE:
+		case REMOVE_VERTEX:
+			return 5;
+		default:
+			throw new IOException("Corrupt change log record at byte " + at);
+		}
+
+		if (records.remaining() < fixed) {
+			return 0;
+		}
+		int text = records.getInt(at + fixed - 4);
+		return fixed + Math.max(text, 0);
+	}
+}
@@ -0,0 +1,550 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Splits a ThreeTenGraph into its weakly or strongly connected components.
+ * Every analysis runs on a CSR snapshot (see ThreeTenGraph.toCsr()) and only
+ * touches primitive arrays, so no neighbor collections are built.
+ *
+ * <p>
+ * Weak components come from a union-find over the edges. Strong components
+ * come either from Tarjan's algorithm, run with an explicit stack so deep
+ * graphs cannot overflow the call stack, or from parallel forward-backward
+ * coloring on a ForkJoinPool for large graphs.
+ *
+ * @author Hammadullah Nasir
+ */
+final class ThreeTenConnectivity {
+	/**
+	 * Number of vertices handled by one coloring task. Graphs no larger than
+	 * this are handed to Tarjan's algorithm instead.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	/**
+	 * The pool the coloring tasks run on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates an engine that runs on the common ForkJoinPool.
+	 */
+	public ThreeTenConnectivity() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates an engine that runs on the given pool.
+	 *
+	 * @param pool the pool to run parallel coloring on
+	 */
+	public ThreeTenConnectivity(ForkJoinPool pool) {
+		if (pool == null) {
+			throw new IllegalArgumentException("pool cannot be null");
+		}
+		this.pool = pool;
+	}
+
+	/**
+	 * Finds the weakly connected components of graph. The graph is
+	 * snapshotted first, so it must not be modified during the call.
+	 *
+	 * @param <V>   the vertex type
+	 * @param <E>   the edge type
+	 * @param graph the graph to split
+	 * @return the component of every vertex, keyed by vertex id
+	 */
+	public <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> Components weak(
+			ThreeTenGraph<V, E> graph) {
+		return weak(graph.toCsr());
+	}
+
+	/**
+	 * Finds the weakly connected components of a CSR snapshot with a
+	 * union-find (union by size, path halving).
+	 *
+	 * @param csr the snapshot to split
+	 * @return the component of every vertex, keyed by vertex id
+	 */
+	public Components weak(ThreeTenGraphCsr csr) {
+		int n = csr.vertexCount();
+		int[] offsets = csr.offsets();
+		int[] targets = csr.targets();
+		int[] parent = new int[n];
+		int[] size = new int[n];
+
+		for (int slot = 0; slot < n; slot++) {
+			parent[slot] = slot;
+			size[slot] = 1;
+		}
+
+		for (int u = 0; u < n; u++) {
+			for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+				int a = find(parent, u);
+				int b = find(parent, targets[i]);
+				if (a == b) {
+					continue;
+				}
+				if (size[a] < size[b]) {
+					int t = a;
+					a = b;
+					b = t;
+				}
+				parent[b] = a;
+				size[a] += size[b];
+			}
+		}
+
+		for (int slot = 0; slot < n; slot++) {
+			parent[slot] = find(parent, slot);
+		}
+		return toComponents(csr, parent);
+	}
+
+	/**
+	 * Finds the strongly connected components of graph with Tarjan's
+	 * algorithm. The graph is snapshotted first, so it must not be modified
+	 * during the call.
+	 *
+	 * @param <V>   the vertex type
+	 * @param <E>   the edge type
+	 * @param graph the graph to split
+	 * @return the component of every vertex, keyed by vertex id
+	 */
+	public <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> Components strong(
+			ThreeTenGraph<V, E> graph) {
+		return strong(graph.toCsr());
+	}
+
+	/**
+	 * Finds the strongly connected components of a CSR snapshot with Tarjan's
+	 * algorithm. The depth-first search keeps its own stack of (slot, next
+	 * edge) frames, so its depth is limited only by memory.
+	 *
+	 * @param csr the snapshot to split
+	 * @return the component of every vertex, keyed by vertex id
+	 */
+	public Components strong(ThreeTenGraphCsr csr) {
+		int n = csr.vertexCount();
+		int[] offsets = csr.offsets();
+		int[] targets = csr.targets();
+
+		int[] index = new int[n];
+		int[] low = new int[n];
+		int[] label = new int[n];
+		Arrays.fill(index, -1);
+
+		// Tarjan's stack of open vertices, and the search's own call stack
+		int[] open = new int[n];
+		int openSize = 0;
+		int[] callSlot = new int[n];
+		int[] callEdge = new int[n];
+		int depth = 0;
+		int counter = 0;
+
+		for (int root = 0; root < n; root++) {
+			if (index[root] != -1) {
+				continue;
+			}
+
+			index[root] = low[root] = counter++;
+			open[openSize++] = root;
+			label[root] = -1;
+			callSlot[0] = root;
+			callEdge[0] = offsets[root];
+			depth = 1;
+
+			while (depth > 0) {
+				int u = callSlot[depth - 1];
+				int i = callEdge[depth - 1];
+
+				if (i < offsets[u + 1]) {
+					callEdge[depth - 1] = i + 1;
+					int v = targets[i];
+					if (index[v] == -1) {
+						index[v] = low[v] = counter++;
+						open[openSize++] = v;
+						label[v] = -1;
+						callSlot[depth] = v;
+						callEdge[depth] = offsets[v];
+						depth += 1;
+					} else if (label[v] == -1) {
+						// still open, so v is on the current path's component stack
+						low[u] = Math.min(low[u], index[v]);
+					}
+					continue;
+				}
+
+				depth -= 1;
+				if (low[u] == index[u]) {
+					int v;
+					do {
+						v = open[--openSize];
+						label[v] = u;
+					} while (v != u);
+				}
+				if (depth > 0) {
+					int caller = callSlot[depth - 1];
+					low[caller] = Math.min(low[caller], low[u]);
+				}
+			}
+		}
+
+		return toComponents(csr, label);
+	}
+
+	/**
+	 * Finds the strongly connected components of graph with parallel
+	 * forward-backward coloring. The graph is snapshotted first, so it must not
+	 * be modified during the call.
+	 *
+	 * @param <V>   the vertex type
+	 * @param <E>   the edge type
+	 * @param graph the graph to split
+	 * @return the component of every vertex, keyed by vertex id
+	 */
+	public <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> Components strongParallel(
+			ThreeTenGraph<V, E> graph) {
+		return strongParallel(graph.toCsr());
+	}
+
+	/**
+	 * Finds the strongly connected components of a CSR snapshot with parallel
+	 * forward-backward coloring. Vertices with no remaining incoming or
+	 * outgoing edges are first trimmed off as single-vertex components. Then,
+	 * until every vertex is labelled, each remaining vertex takes its own slot
+	 * as a color and the largest color is pushed forward along the edges until
+	 * nothing changes; every vertex that kept its own color is a root, and the
+	 * vertices of that color it reaches backwards form its component. Both
+	 * steps run in chunks on the pool. Small graphs use strong(csr).
+	 *
+	 * @param csr the snapshot to split
+	 * @return the component of every vertex, keyed by vertex id
+	 */
+	public Components strongParallel(ThreeTenGraphCsr csr) {
+		int n = csr.vertexCount();
+		if (n <= CHUNK_SIZE) {
+			return strong(csr);
+		}
+
+		int[] label = new int[n];
+		Arrays.fill(label, -1);
+		int[] remaining = trim(csr, label);
+		int[] color = new int[n];
+
+		while (remaining.length > 0) {
+			int[] live = remaining;
+			for (int v : live) {
+				color[v] = v;
+			}
+
+			AtomicBoolean changed = new AtomicBoolean(true);
+			while (changed.get()) {
+				changed.set(false);
+				forEachChunk(live.length, (lo, hi) -> {
+					if (pullColors(csr, live, lo, hi, label, color)) {
+						changed.set(true);
+					}
+				});
+			}
+
+			int[] roots = Arrays.stream(live).filter(v -> color[v] == v).toArray();
+			forEachChunk(roots.length, (lo, hi) -> {
+				for (int r = lo; r < hi; r++) {
+					claimBackward(csr, roots[r], label, color);
+				}
+			});
+
+			remaining = Arrays.stream(live).filter(v -> label[v] == -1).toArray();
+		}
+
+		return toComponents(csr, label);
+	}
+
+	/**
+	 * Labels, as single-vertex components, every vertex left with no
+	 * unlabelled incoming or no unlabelled outgoing neighbor, repeating until
+	 * none is left. Such vertices cannot be on a cycle.
+	 *
+	 * @param csr   the snapshot being split
+	 * @param label the component of each slot, -1 if not yet known
+	 * @return the slots still unlabelled
+	 */
+	private static int[] trim(ThreeTenGraphCsr csr, int[] label) {
+		int n = csr.vertexCount();
+		int[] offsets = csr.offsets();
+		int[] targets = csr.targets();
+		int[] inOffsets = csr.inOffsets();
+		int[] sources = csr.sources();
+		int[] inLeft = new int[n];
+		int[] outLeft = new int[n];
+		int[] queue = new int[n];
+		int head = 0;
+		int tail = 0;
+
+		for (int slot = 0; slot < n; slot++) {
+			inLeft[slot] = csr.inDegree(slot);
+			outLeft[slot] = csr.outDegree(slot);
+			if (inLeft[slot] == 0 || outLeft[slot] == 0) {
+				label[slot] = slot;
+				queue[tail++] = slot;
+			}
+		}
+
+		while (head < tail) {
+			int u = queue[head++];
+			for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+				int v = targets[i];
+				if (label[v] == -1 && --inLeft[v] == 0) {
+					label[v] = v;
+					queue[tail++] = v;
+				}
+			}
+			for (int i = inOffsets[u]; i < inOffsets[u + 1]; i++) {
+				int v = sources[i];
+				if (label[v] == -1 && --outLeft[v] == 0) {
+					label[v] = v;
+					queue[tail++] = v;
+				}
+			}
+		}
+
+		int[] remaining = new int[n - tail];
+		int pos = 0;
+		for (int slot = 0; slot < n; slot++) {
+			if (label[slot] == -1) {
+				remaining[pos++] = slot;
+			}
+		}
+		return remaining;
+	}
+
+	/**
+	 * Raises the color of live[lo] to live[hi - 1] to the largest color among
+	 * their unlabelled predecessors. Each call writes only its own slots, and
+	 * colors only grow, so reading a neighbor's older color just delays
+	 * convergence by a round.
+	 *
+	 * @param csr   the snapshot being split
+	 * @param live  the unlabelled slots
+	 * @param lo    first position in live to update
+	 * @param hi    one past the last position in live to update
+	 * @param label the component of each slot, -1 if not yet known
+	 * @param color the current color of each slot
+	 * @return true if any color changed
+	 */
+	private static boolean pullColors(ThreeTenGraphCsr csr, int[] live, int lo, int hi, int[] label,
+			int[] color) {
+		int[] inOffsets = csr.inOffsets();
+		int[] sources = csr.sources();
+		boolean changed = false;
+
+		for (int p = lo; p < hi; p++) {
+			int v = live[p];
+			int best = color[v];
+			for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+				int u = sources[i];
+				if (label[u] == -1 && color[u] > best) {
+					best = color[u];
+				}
+			}
+			if (best != color[v]) {
+				color[v] = best;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Labels every unlabelled vertex of root's color that reaches root, which
+	 * is exactly root's strongly connected component. Different roots have
+	 * different colors, so concurrent calls never touch the same slot.
+	 *
+	 * @param csr   the snapshot being split
+	 * @param root  a slot whose color is its own slot
+	 * @param label the component of each slot, -1 if not yet known
+	 * @param color the settled color of each slot
+	 */
+	private static void claimBackward(ThreeTenGraphCsr csr, int root, int[] label, int[] color) {
+		int[] inOffsets = csr.inOffsets();
+		int[] sources = csr.sources();
+		int[] stack = new int[16];
+		int size = 0;
+
+		label[root] = root;
+		stack[size++] = root;
+		while (size > 0) {
+			int v = stack[--size];
+			for (int i = inOffsets[v]; i < inOffsets[v + 1]; i++) {
+				int u = sources[i];
+				if (color[u] == root && label[u] == -1) {
+					label[u] = root;
+					if (size == stack.length) {
+						stack = Arrays.copyOf(stack, size * 2);
+					}
+					stack[size++] = u;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs body over [0, count) in chunks of CHUNK_SIZE on the pool, and
+	 * returns once every chunk is done.
+	 *
+	 * @param count the number of positions
+	 * @param body  the work for one chunk
+	 */
+	private void forEachChunk(int count, Chunk body) {
+		if (count <= CHUNK_SIZE) {
+			body.run(0, count);
+			return;
+		}
+
+		ArrayList<RecursiveAction> tasks = new ArrayList<>();
+		for (int lo = 0; lo < count; lo += CHUNK_SIZE) {
+			final int start = lo;
+			tasks.add(new RecursiveAction() {
+				protected void compute() {
+					body.run(start, Math.min(start + CHUNK_SIZE, count));
+				}
+			});
+		}
+
+		pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Finds the root of slot in a union-find forest, halving the path on the
+	 * way.
+	 *
+	 * @param parent the parent of each slot
+	 * @param slot   the slot to look up
+	 * @return the root
+	 */
+	private static int find(int[] parent, int slot) {
+		while (parent[slot] != slot) {
+			parent[slot] = parent[parent[slot]];
+			slot = parent[slot];
+		}
+		return slot;
+	}
+
+	/**
+	 * Converts per-slot representative slots into components numbered from 0
+	 * in order of their first slot, keyed by vertex id.
+	 *
+	 * @param csr  the snapshot that was split
+	 * @param reps the representative slot of each slot's component
+	 * @return the components
+	 */
+	private static Components toComponents(ThreeTenGraphCsr csr, int[] reps) {
+		int n = reps.length;
+		int[] number = new int[n];
+		Arrays.fill(number, -1);
+		int count = 0;
+
+		int[] byId = new int[csr.idBound()];
+		Arrays.fill(byId, -1);
+		int[] sizes = new int[n];
+		for (int slot = 0; slot < n; slot++) {
+			int rep = reps[slot];
+			if (number[rep] == -1) {
+				number[rep] = count++;
+			}
+			byId[csr.vertexId(slot)] = number[rep];
+			sizes[number[rep]] += 1;
+		}
+
+		return new Components(byId, Arrays.copyOf(sizes, count));
+	}
+
+	/**
+	 * Work on one chunk of positions.
+	 */
+	private interface Chunk {
+		/**
+		 * Handles positions lo to hi - 1.
+		 *
+		 * @param lo the first position
+		 * @param hi one past the last position
+		 */
+		void run(int lo, int hi);
+	}
+
+	/**
+	 * A split of a graph's vertices into components numbered from 0, keyed by
+	 * vertex id.
+	 */
+	static final class Components {
+		/**
+		 * Component number of each vertex id, or -1.
+		 */
+		private final int[] component;
+		/**
+		 * Number of vertices in each component.
+		 */
+		private final int[] sizes;
+
+		/**
+		 * Creates a split from id-indexed component numbers.
+		 *
+		 * @param component component number of each vertex id
+		 * @param sizes     vertex count of each component
+		 */
+		Components(int[] component, int[] sizes) {
+			this.component = component;
+			this.sizes = sizes;
+		}
+
+		/**
+		 * Returns the number of components.
+		 *
+		 * @return the component count
+		 */
+		public int count() {
+			return sizes.length;
+		}
+
+		/**
+		 * Returns the component of the vertex with id.
+		 *
+		 * @param id the vertex id
+		 * @return the component number, or -1 if the vertex is unknown
+		 */
+		public int componentOf(int id) {
+			if (id < 0 || id >= component.length) {
+				return -1;
+			}
+			return component[id];
+		}
+
+		/**
+		 * Returns the number of vertices in a component.
+		 *
+		 * @param number the component number
+		 * @return the vertex count
+		 */
+		public int size(int number) {
+			return sizes[number];
+		}
+
+		/**
+		 * Returns the component array, indexed by vertex id. The array is not
+		 * copied.
+		 *
+		 * @return the component numbers
+		 */
+		int[] components() {
+			return component;
+		}
+	}
+}
@@ -14,16 +14,27 @@ import java.awt.Color;
  */
 public final class ThreeTenEdge extends ThreeTenGraphComponent {
 	/**
-	 * The ID for the next edge to be created. This auto-increments with ever
-	 * constructor call to this class.
+	 * Hands out the ID for each edge created. Thread-safe, and recycles ids
+	 * released by a graph (see ThreeTenGraph.setIdRecycling).
 	 */
-	public static int edgeCount = 0;
+	public static final ThreeTenIdAllocator IDS = new ThreeTenIdAllocator();
 
 	/**
 	 * Creates a new ThreeTenNode with default settings.
 	 */
 	public ThreeTenEdge() {
-		super(edgeCount++);
+		super(IDS.allocate());
+		setColor(Color.BLACK);
+	}
+
+	/**
+	 * Creates a ThreeTenEdge with a given ID, for restoring saved graphs. The
+	 * ID is reserved so later edges do not reuse it.
+	 * 
+	 * @param id the ID of the edge
+	 */
+	ThreeTenEdge(int id) {
+		super(IDS.reserve(id));
 		setColor(Color.BLACK);
 	}
 
@@ -0,0 +1,923 @@
+import edu.uci.ics.jung.algorithms.layout.AbstractLayout;
+import edu.uci.ics.jung.algorithms.util.IterativeContext;
+
+import java.awt.Dimension;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Incremental force-directed layout for a ThreeTenGraph. Vertices repel each
+ * other and edges pull their endpoints together, as in Fruchterman-Reingold,
+ * but the repulsion is approximated with a Barnes-Hut quadtree, so a step
+ * costs O(n log n) instead of O(n^2).
+ *
+ * <p>
+ * Each vertex has its own temperature, which caps how far it moves in a step
+ * and cools every step. Only warm vertices are moved, and the layout is done
+ * once all of them have cooled. The layout listens to its graph. When a vertex
+ * or edge is added or removed, only the vertices around the change are warmed
+ * up again, so the rest of the drawing stays where it is and a small change
+ * settles in a few cheap steps. The forces on the warm vertices are computed
+ * in chunks on a ForkJoinPool.
+ *
+ * <p>
+ * The layout needs no display. In SimGUI it is driven by a
+ * ThreeTenRenderPipeline, which repaints only getMovedBounds() after each
+ * step; headless code can call step() until done(). Changes made to the
+ * graph on another thread while a step runs may make that step give up
+ * early; the next step picks them up.
+ *
+ * <p>
+ * A step only reads the graph while it takes its adjacency snapshot, and it
+ * holds getGraphLock() while it does. Code that changes the graph while
+ * another thread steps the layout should hold the same lock for each
+ * change, so the snapshot always sees a whole graph.
+ *
+ * @author Hammadullah Nasir
+ *
+ * @param <V> for generics
+ * @param <E> for generics
+ */
+class ThreeTenForceLayout<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent>
+		extends AbstractLayout<V, E> implements IterativeContext, ThreeTenGraphListener<V, E> {
+	/**
+	 * Number of warm vertices whose forces are computed by one task.
+	 */
+	private static final int CHUNK_SIZE = 512;
+	/**
+	 * Barnes-Hut opening angle: a quadtree cell is treated as one body when its
+	 * size divided by its distance is below this.
+	 */
+	private static final double THETA = 0.8;
+	/**
+	 * Starting temperature of a full layout, as a fraction of the drawing's
+	 * width.
+	 */
+	private static final double FULL_HEAT = 0.1;
+	/**
+	 * Starting temperature of the vertices around a change, as a fraction of
+	 * the drawing's width. Lower than FULL_HEAT so that a change only nudges
+	 * its neighborhood.
+	 */
+	private static final double LOCAL_HEAT = 0.03;
+	/**
+	 * Factor each vertex's temperature is multiplied by per step.
+	 */
+	private static final double COOLING = 0.95;
+	/**
+	 * Temperature, in pixels, below which a vertex counts as settled.
+	 */
+	private static final double MIN_TEMPERATURE = 0.5;
+	/**
+	 * Radius, as a fraction of the drawing's shorter side, of the disc the
+	 * vertices settle into. The pull towards the middle is set so that it
+	 * balances the combined repulsion of all vertices at this radius; without
+	 * it, the repulsion pushes everything against the edges of the drawing.
+	 */
+	private static final double RADIUS = 0.45;
+	/**
+	 * Number of steps a quadtree is reused for while only a few vertices are
+	 * moving.
+	 */
+	private static final int TREE_REUSE = 16;
+
+	/**
+	 * The graph being laid out.
+	 */
+	private final ThreeTenGraph<V, E> threeTenGraph;
+	/**
+	 * The pool the force computation runs on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Held while the graph is read for a snapshot, and by code that changes
+	 * the graph from another thread.
+	 */
+	private final Object graphLock = new Object();
+
+	/**
+	 * Vertices to warm up, by id, reported since the last step.
+	 */
+	private final ConcurrentLinkedQueue<Integer> touched = new ConcurrentLinkedQueue<>();
+	/**
+	 * Edges removed since the last step, by id.
+	 */
+	private final ConcurrentLinkedQueue<Integer> removedEdges = new ConcurrentLinkedQueue<>();
+	/**
+	 * Vertices removed since the last step, by id.
+	 */
+	private final ConcurrentLinkedQueue<Integer> removedVertices = new ConcurrentLinkedQueue<>();
+	/**
+	 * Whether the graph changed since the adjacency snapshot was taken.
+	 */
+	private volatile boolean changed = true;
+	/**
+	 * Called when a change wakes a settled layout, or null.
+	 */
+	private volatile Runnable wakeup = null;
+
+	/**
+	 * Adjacency snapshot of the graph, taken after each change.
+	 */
+	private ThreeTenGraphCsr csr = null;
+	/**
+	 * Vertex in each snapshot slot.
+	 */
+	private ArrayList<V> slotVertex = new ArrayList<>();
+	/**
+	 * Source slot of each edge id in the snapshot, or -1.
+	 */
+	private int[] edgeSource = new int[0];
+	/**
+	 * Destination slot of each edge id in the snapshot, or -1.
+	 */
+	private int[] edgeTarget = new int[0];
+	/**
+	 * Temperature of each vertex id; 0 means settled.
+	 */
+	private double[] temperature = new double[0];
+	/**
+	 * Number of vertices with a non-zero temperature.
+	 */
+	private int warm = 0;
+	/**
+	 * Area covered by the vertices the last step moved and their edges, or
+	 * null.
+	 */
+	private Rectangle2D movedBounds = null;
+	/**
+	 * The x position of each snapshot slot, as of the last step.
+	 */
+	private double[] x = new double[0];
+	/**
+	 * The y position of each snapshot slot, as of the last step.
+	 */
+	private double[] y = new double[0];
+	/**
+	 * Quadtree over the positions, or null if it must be rebuilt.
+	 */
+	private QuadTree tree = null;
+	/**
+	 * Number of steps the current quadtree has been reused for.
+	 */
+	private int treeAge = 0;
+
+	/**
+	 * Creates a layout of graph that runs on the common ForkJoinPool.
+	 *
+	 * @param graph the graph to lay out
+	 */
+	public ThreeTenForceLayout(ThreeTenGraph<V, E> graph) {
+		this(graph, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a layout of graph that runs on the given pool, and starts
+	 * listening to the graph's changes.
+	 *
+	 * @param graph the graph to lay out
+	 * @param pool  the pool to compute forces on
+	 */
+	public ThreeTenForceLayout(ThreeTenGraph<V, E> graph, ForkJoinPool pool) {
+		super(graph);
+		if (pool == null) {
+			throw new IllegalArgumentException("pool cannot be null");
+		}
+		this.threeTenGraph = graph;
+		this.pool = pool;
+		graph.addListener(this);
+	}
+
+	/**
+	 * Returns the lock a step holds while it reads the graph. Hold it while
+	 * changing the graph from a thread other than the one calling step().
+	 *
+	 * @return the lock
+	 */
+	public Object getGraphLock() {
+		return graphLock;
+	}
+
+	/**
+	 * Sets a callback run whenever a graph change gives a settled layout work
+	 * to do again, for example to restart the thread that calls step().
+	 *
+	 * @param wakeup the callback, or null
+	 */
+	public void setWakeup(Runnable wakeup) {
+		this.wakeup = wakeup;
+	}
+
+	/**
+	 * Warms up every vertex, so the whole graph is laid out again.
+	 */
+	public void initialize() {
+		changed = true;
+		refresh();
+		Arrays.fill(temperature, 0);
+		warm = 0;
+		for (V vertex : slotVertex) {
+			heat(vertex.getId(), getSize().width * FULL_HEAT);
+		}
+	}
+
+	/**
+	 * Same as initialize().
+	 */
+	public void reset() {
+		initialize();
+	}
+
+	/**
+	 * Moves every warm vertex once and cools it.
+	 */
+	public void step() {
+		movedBounds = null;
+		try {
+			if (csr == null) {
+				initialize();
+			} else {
+				refresh();
+			}
+		} catch (RuntimeException e) {
+			// the graph was changed without the lock while the snapshot was
+			// taken; nothing was consumed, so the next step retries
+			changed = true;
+			return;
+		}
+
+		int n = csr.vertexCount();
+		if (warm == 0 || n == 0) {
+			return;
+		}
+
+		int[] hot = new int[warm];
+		int count = 0;
+		for (int slot = 0; slot < n && count < hot.length; slot++) {
+			if (temperature[csr.vertexId(slot)] > 0) {
+				hot[count++] = slot;
+			}
+		}
+
+		// while only a few vertices move, the rest of the tree stays accurate
+		if (tree == null || treeAge >= TREE_REUSE || count > n / 8) {
+			for (int slot = 0; slot < n; slot++) {
+				Point2D p = transform(slotVertex.get(slot));
+				x[slot] = p.getX();
+				y[slot] = p.getY();
+			}
+			tree = new QuadTree(x, y);
+			treeAge = 0;
+		} else {
+			for (int i = 0; i < count; i++) {
+				Point2D p = transform(slotVertex.get(hot[i]));
+				x[hot[i]] = p.getX();
+				y[hot[i]] = p.getY();
+			}
+			treeAge += 1;
+		}
+
+		Dimension d = getSize();
+		double k = Math.sqrt((double) d.width * d.height / n);
+		double radius = RADIUS * Math.min(d.width, d.height);
+		double gravity = (double) d.width * d.height / (radius * radius);
+		double[] dx = new double[count];
+		double[] dy = new double[count];
+		forEachChunk(count, (lo, hi) -> forces(hot, lo, hi, k, gravity, dx, dy));
+
+		// min x, min y, max x, max y of everything drawn differently now
+		double[] box = { Double.MAX_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE, -Double.MAX_VALUE };
+		for (int i = 0; i < count; i++) {
+			int slot = hot[i];
+			V vertex = slotVertex.get(slot);
+			int id = vertex.getId();
+			double length = Math.hypot(dx[i], dy[i]);
+
+			if (!isLocked(vertex) && length > 0) {
+				double move = Math.min(length, temperature[id]);
+				double nx = Math.max(0, Math.min(d.width, x[slot] + dx[i] / length * move));
+				double ny = Math.max(0, Math.min(d.height, y[slot] + dy[i] / length * move));
+				setLocation(vertex, nx, ny);
+				include(box, x[slot], y[slot]);
+				include(box, nx, ny);
+				x[slot] = nx;
+				y[slot] = ny;
+				forEachNeighbor(slot, other -> include(box, x[other], y[other]));
+			}
+
+			temperature[id] *= COOLING;
+			if (temperature[id] < MIN_TEMPERATURE) {
+				temperature[id] = 0;
+				warm -= 1;
+			}
+		}
+
+		if (box[0] <= box[2]) {
+			movedBounds = new Rectangle2D.Double(box[0], box[1], box[2] - box[0], box[3] - box[1]);
+		}
+	}
+
+	/**
+	 * Returns the area, in layout coordinates, covered by the old and new
+	 * positions of the vertices the last step moved and by the edges attached
+	 * to them. Only this area needs to be redrawn after the step.
+	 *
+	 * @return the area, or null if the last step moved nothing
+	 */
+	public Rectangle2D getMovedBounds() {
+		return movedBounds;
+	}
+
+	/**
+	 * Returns whether every vertex has settled and no change is waiting.
+	 *
+	 * @return true if there is nothing to move
+	 */
+	public boolean done() {
+		return warm == 0 && !changed;
+	}
+
+	/**
+	 * Runs step() until the layout is done or maxSteps steps have run, for
+	 * laying out without a relaxer thread.
+	 *
+	 * @param maxSteps the most steps to run
+	 * @return the number of steps run
+	 */
+	public int relax(int maxSteps) {
+		int steps = 0;
+
+		while (steps < maxSteps && !done()) {
+			step();
+			steps += 1;
+		}
+		return steps;
+	}
+
+	/**
+	 * Returns the number of vertices still moving.
+	 *
+	 * @return the warm vertex count
+	 */
+	public int getWarmCount() {
+		return warm;
+	}
+
+	/**
+	 * Warms the new vertex.
+	 *
+	 * @param vertex the new vertex
+	 */
+	public void vertexAdded(V vertex) {
+		touched.add(vertex.getId());
+		changed();
+	}
+
+	/**
+	 * Warms both ends of the new edge.
+	 *
+	 * @param edge   the new edge
+	 * @param source its source vertex
+	 * @param dest   its destination vertex
+	 */
+	public void edgeAdded(E edge, V source, V dest) {
+		touched.add(source.getId());
+		touched.add(dest.getId());
+		changed();
+	}
+
+	/**
+	 * Warms both former ends of the removed edge.
+	 *
+	 * @param edge the removed edge
+	 */
+	public void edgeRemoved(E edge) {
+		removedEdges.add(edge.getId());
+		changed();
+	}
+
+	/**
+	 * Warms the former neighbors of the removed vertex.
+	 *
+	 * @param vertex the removed vertex
+	 */
+	public void vertexRemoved(V vertex) {
+		removedVertices.add(vertex.getId());
+		changed();
+	}
+
+	/**
+	 * Notes a graph change and wakes the layout's driver.
+	 */
+	private void changed() {
+		changed = true;
+
+		Runnable r = wakeup;
+		if (r != null) {
+			r.run();
+		}
+	}
+
+	/**
+	 * Brings the adjacency snapshot up to date if the graph changed, and warms
+	 * the vertices around every reported change together with their
+	 * neighbors. Runs under the graph lock, and reads the change queues only
+	 * once the new snapshot is in place, so a snapshot that fails leaves them
+	 * for the next try.
+	 */
+	private void refresh() {
+		synchronized (graphLock) {
+			if (!changed) {
+				return;
+			}
+
+			ArrayList<V> vertices = new ArrayList<>(threeTenGraph.getVertices());
+			ThreeTenGraphCsr next = threeTenGraph.toCsr();
+			if (next.vertexCount() != vertices.size()) {
+				throw new ConcurrentModificationException();
+			}
+			ThreeTenGraphCsr old = csr;
+			int[] oldSource = edgeSource;
+			int[] oldTarget = edgeTarget;
+			adopt(next, vertices);
+			changed = false;
+
+			// removals are resolved against the old snapshot
+			ArrayList<Integer> seeds = new ArrayList<>();
+			for (Integer id = removedEdges.poll(); id != null; id = removedEdges.poll()) {
+				if (id < oldSource.length && oldSource[id] != -1) {
+					seeds.add(old.vertexId(oldSource[id]));
+					seeds.add(old.vertexId(oldTarget[id]));
+				}
+			}
+			for (Integer id = removedVertices.poll(); id != null; id = removedVertices.poll()) {
+				int slot = old == null ? -1 : old.slotOf(id);
+				if (slot != -1) {
+					forEachNeighbor(old, slot, neighbor -> seeds.add(old.vertexId(neighbor)));
+				}
+			}
+			for (Integer id = touched.poll(); id != null; id = touched.poll()) {
+				seeds.add(id);
+			}
+
+			double t = getSize().width * LOCAL_HEAT;
+			for (int id : seeds) {
+				int slot = csr.slotOf(id);
+				if (slot != -1) {
+					heat(id, t);
+					forEachNeighbor(slot, neighbor -> heat(csr.vertexId(neighbor), t));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Switches to a new adjacency snapshot, carrying temperatures over by
+	 * vertex id and dropping those of removed vertices.
+	 *
+	 * @param next     the new snapshot
+	 * @param vertices the vertex in each of its slots
+	 */
+	private void adopt(ThreeTenGraphCsr next, ArrayList<V> vertices) {
+		double[] carried = new double[next.idBound()];
+		warm = 0;
+		for (int slot = 0; slot < next.vertexCount(); slot++) {
+			int id = next.vertexId(slot);
+			if (id < temperature.length && temperature[id] > 0) {
+				carried[id] = temperature[id];
+				warm += 1;
+			}
+		}
+
+		int edgeBound = 0;
+		for (int id : next.edgeIds()) {
+			edgeBound = Math.max(edgeBound, id + 1);
+		}
+		edgeSource = new int[edgeBound];
+		edgeTarget = new int[edgeBound];
+		Arrays.fill(edgeSource, -1);
+		int[] offsets = next.offsets();
+		for (int slot = 0; slot < next.vertexCount(); slot++) {
+			for (int i = offsets[slot]; i < offsets[slot + 1]; i++) {
+				edgeSource[next.edgeIds()[i]] = slot;
+				edgeTarget[next.edgeIds()[i]] = next.targets()[i];
+			}
+		}
+
+		csr = next;
+		slotVertex = vertices;
+		temperature = carried;
+		x = new double[next.vertexCount()];
+		y = new double[next.vertexCount()];
+		tree = null;
+	}
+
+	/**
+	 * Raises the temperature of the vertex with id to at least the given
+	 * value.
+	 *
+	 * @param id          the vertex id, in the current snapshot
+	 * @param temperature the temperature, in pixels
+	 */
+	private void heat(int id, double temperature) {
+		if (this.temperature[id] == 0) {
+			warm += 1;
+		}
+		this.temperature[id] = Math.max(this.temperature[id], Math.max(1, temperature));
+	}
+
+	/**
+	 * Grows box to contain the point (x, y).
+	 *
+	 * @param box min x, min y, max x and max y so far
+	 * @param x   the x position
+	 * @param y   the y position
+	 */
+	private static void include(double[] box, double x, double y) {
+		box[0] = Math.min(box[0], x);
+		box[1] = Math.min(box[1], y);
+		box[2] = Math.max(box[2], x);
+		box[3] = Math.max(box[3], y);
+	}
+
+	/**
+	 * Passes every slot joined to slot by an edge, in either direction, to
+	 * action.
+	 *
+	 * @param slot   the slot
+	 * @param action called once per incident edge
+	 */
+	private void forEachNeighbor(int slot, java.util.function.IntConsumer action) {
+		forEachNeighbor(csr, slot, action);
+	}
+
+	/**
+	 * Passes every slot of snapshot joined to slot by an edge, in either
+	 * direction, to action.
+	 *
+	 * @param snapshot the snapshot to read
+	 * @param slot     the slot
+	 * @param action   called once per incident edge
+	 */
+	private static void forEachNeighbor(ThreeTenGraphCsr snapshot, int slot, java.util.function.IntConsumer action) {
+		int[] offsets = snapshot.offsets();
+		int[] targets = snapshot.targets();
+		int[] inOffsets = snapshot.inOffsets();
+		int[] sources = snapshot.sources();
+
+		for (int i = offsets[slot]; i < offsets[slot + 1]; i++) {
+			action.accept(targets[i]);
+		}
+		for (int i = inOffsets[slot]; i < inOffsets[slot + 1]; i++) {
+			action.accept(sources[i]);
+		}
+	}
+
+	/**
+	 * Computes the displacement of hot[lo] to hot[hi - 1]: Barnes-Hut
+	 * repulsion k^2 / d from every other vertex, attraction d^2 / k along each
+	 * incident edge, and a pull towards the middle that grows with distance.
+	 *
+	 * @param hot     the warm slots
+	 * @param lo      first position in hot
+	 * @param hi      one past the last position in hot
+	 * @param k       the ideal edge length
+	 * @param gravity strength of the pull towards the middle
+	 * @param dx      x displacement of each position in hot, filled in
+	 * @param dy      y displacement of each position in hot, filled in
+	 */
+	private void forces(int[] hot, int lo, int hi, double k, double gravity, double[] dx, double[] dy) {
+		int[] offsets = csr.offsets();
+		int[] targets = csr.targets();
+		int[] inOffsets = csr.inOffsets();
+		int[] sources = csr.sources();
+		double midX = getSize().width / 2.0;
+		double midY = getSize().height / 2.0;
+
+		for (int i = lo; i < hi; i++) {
+			int slot = hot[i];
+			double[] f = tree.repulsion(slot, k * k);
+
+			for (int e = offsets[slot]; e < offsets[slot + 1]; e++) {
+				attract(f, x, y, slot, targets[e], k);
+			}
+			for (int e = inOffsets[slot]; e < inOffsets[slot + 1]; e++) {
+				attract(f, x, y, slot, sources[e], k);
+			}
+
+			dx[i] = f[0] + gravity * (midX - x[slot]);
+			dy[i] = f[1] + gravity * (midY - y[slot]);
+		}
+	}
+
+	/**
+	 * Adds the pull of the edge between slot and other to f.
+	 *
+	 * @param f     the force on slot so far
+	 * @param x     the x position of each slot
+	 * @param y     the y position of each slot
+	 * @param slot  the slot being moved
+	 * @param other the slot at the other end of the edge
+	 * @param k     the ideal edge length
+	 */
+	private static void attract(double[] f, double[] x, double[] y, int slot, int other, double k) {
+		double ex = x[other] - x[slot];
+		double ey = y[other] - y[slot];
+		double d = Math.hypot(ex, ey);
+
+		// (ex / d) * (d^2 / k)
+		f[0] += ex * d / k;
+		f[1] += ey * d / k;
+	}
+
+	/**
+	 * Runs body over [0, count) in chunks of CHUNK_SIZE on the pool, and
+	 * returns once every chunk is done.
+	 *
+	 * @param count the number of positions
+	 * @param body  the work for one chunk
+	 */
+	private void forEachChunk(int count, Chunk body) {
+		if (count <= CHUNK_SIZE) {
+			body.run(0, count);
+			return;
+		}
+
+		ArrayList<RecursiveAction> tasks = new ArrayList<>();
+		for (int lo = 0; lo < count; lo += CHUNK_SIZE) {
+			final int start = lo;
+			tasks.add(new RecursiveAction() {
+				protected void compute() {
+					body.run(start, Math.min(start + CHUNK_SIZE, count));
+				}
+			});
+		}
+
+		pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Work on one chunk of positions.
+	 */
+	private interface Chunk {
+		/**
+		 * Handles positions lo to hi - 1.
+		 *
+		 * @param lo the first position
+		 * @param hi one past the last position
+		 */
+		void run(int lo, int hi);
+	}
+
+	/**
+	 * Barnes-Hut quadtree over a set of points, stored in flat arrays. Each
+	 * cell keeps the total mass and center of mass of the points under it.
+	 * Points closer together than MAX_DEPTH halvings of the bounds share a
+	 * leaf.
+	 */
+	private static final class QuadTree {
+		/**
+		 * Deepest level a cell is split to.
+		 */
+		private static final int MAX_DEPTH = 24;
+
+		/**
+		 * The x position of each point.
+		 */
+		private final double[] px;
+		/**
+		 * The y position of each point.
+		 */
+		private final double[] py;
+
+		/**
+		 * Left edge of each cell.
+		 */
+		private double[] left;
+		/**
+		 * Top edge of each cell.
+		 */
+		private double[] top;
+		/**
+		 * Width (and height) of each cell.
+		 */
+		private double[] width;
+		/**
+		 * Number of points under each cell.
+		 */
+		private int[] mass;
+		/**
+		 * Sum of the x positions under each cell.
+		 */
+		private double[] sumX;
+		/**
+		 * Sum of the y positions under each cell.
+		 */
+		private double[] sumY;
+		/**
+		 * First of the four children of each cell, or -1 for a leaf.
+		 */
+		private int[] child;
+		/**
+		 * The point stored in each leaf, or -1.
+		 */
+		private int[] point;
+		/**
+		 * Number of cells in use.
+		 */
+		private int cells = 0;
+
+		/**
+		 * Builds the tree over the given points.
+		 *
+		 * @param x the x position of each point
+		 * @param y the y position of each point
+		 */
+		QuadTree(double[] x, double[] y) {
+			px = x;
+			py = y;
+			int capacity = Math.max(16, 4 * x.length);
+			left = new double[capacity];
+			top = new double[capacity];
+			width = new double[capacity];
+			mass = new int[capacity];
+			sumX = new double[capacity];
+			sumY = new double[capacity];
+			child = new int[capacity];
+			point = new int[capacity];
+
+			double minX = Double.MAX_VALUE;
+			double minY = Double.MAX_VALUE;
+			double maxX = -Double.MAX_VALUE;
+			double maxY = -Double.MAX_VALUE;
+			for (int i = 0; i < x.length; i++) {
+				minX = Math.min(minX, x[i]);
+				minY = Math.min(minY, y[i]);
+				maxX = Math.max(maxX, x[i]);
+				maxY = Math.max(maxY, y[i]);
+			}
+			newCell(minX, minY, Math.max(1, Math.max(maxX - minX, maxY - minY)) * 1.0001);
+
+			for (int i = 0; i < x.length; i++) {
+				insert(i);
+			}
+		}
+
+		/**
+		 * Adds point i, splitting the leaf it lands in if that leaf already
+		 * holds a point.
+		 *
+		 * @param i the point
+		 */
+		private void insert(int i) {
+			int cell = 0;
+
+			for (int depth = 0;; depth++) {
+				mass[cell] += 1;
+				sumX[cell] += px[i];
+				sumY[cell] += py[i];
+
+				if (child[cell] == -1) {
+					if (mass[cell] == 1) {
+						point[cell] = i;
+						return;
+					}
+					if (depth == MAX_DEPTH) {
+						return;
+					}
+					split(cell);
+				}
+				cell = child[cell] + quadrant(cell, px[i], py[i]);
+			}
+		}
+
+		/**
+		 * Turns a leaf holding one point into a cell with four children, and
+		 * moves the point down into the right child.
+		 *
+		 * @param cell the leaf
+		 */
+		private void split(int cell) {
+			double half = width[cell] / 2;
+			int first = cells;
+
+			newCell(left[cell], top[cell], half);
+			newCell(left[cell] + half, top[cell], half);
+			newCell(left[cell], top[cell] + half, half);
+			newCell(left[cell] + half, top[cell] + half, half);
+			child[cell] = first;
+
+			int p = point[cell];
+			point[cell] = -1;
+			int c = first + quadrant(cell, px[p], py[p]);
+			mass[c] = 1;
+			sumX[c] = px[p];
+			sumY[c] = py[p];
+			point[c] = p;
+		}
+
+		/**
+		 * Returns which child of cell holds (x, y): 0 top left, 1 top right, 2
+		 * bottom left, 3 bottom right.
+		 *
+		 * @param cell the cell
+		 * @param x    the x position
+		 * @param y    the y position
+		 * @return the child offset
+		 */
+		private int quadrant(int cell, double x, double y) {
+			double half = width[cell] / 2;
+			int q = x >= left[cell] + half ? 1 : 0;
+			return y >= top[cell] + half ? q + 2 : q;
+		}
+
+		/**
+		 * Appends an empty leaf.
+		 *
+		 * @param x    its left edge
+		 * @param y    its top edge
+		 * @param size its width and height
+		 */
+		private void newCell(double x, double y, double size) {
+			if (cells == left.length) {
+				int capacity = cells * 2;
+				left = Arrays.copyOf(left, capacity);
+				top = Arrays.copyOf(top, capacity);
+				width = Arrays.copyOf(width, capacity);
+				mass = Arrays.copyOf(mass, capacity);
+				sumX = Arrays.copyOf(sumX, capacity);
+				sumY = Arrays.copyOf(sumY, capacity);
+				child = Arrays.copyOf(child, capacity);
+				point = Arrays.copyOf(point, capacity);
+			}
+
+			left[cells] = x;
+			top[cells] = y;
+			width[cells] = size;
+			mass[cells] = 0;
+			sumX[cells] = 0;
+			sumY[cells] = 0;
+			child[cells] = -1;
+			point[cells] = -1;
+			cells += 1;
+		}
+
+		/**
+		 * Returns the approximate repulsion on point i from every other
+		 * point, each pushing with strength kk / d.
+		 *
+		 * @param i  the point
+		 * @param kk the squared ideal edge length
+		 * @return the force as {x, y}
+		 */
+		double[] repulsion(int i, double kk) {
+			double[] f = new double[2];
+			int[] stack = new int[4 * MAX_DEPTH + 4];
+			int size = 0;
+			stack[size++] = 0;
+
+			while (size > 0) {
+				int cell = stack[--size];
+				int m = mass[cell];
+				if (m == 0 || point[cell] == i && m == 1) {
+					continue;
+				}
+
+				double cx = sumX[cell] / m;
+				double cy = sumY[cell] / m;
+				double ex = px[i] - cx;
+				double ey = py[i] - cy;
+				double d2 = ex * ex + ey * ey;
+
+				if (child[cell] != -1 && width[cell] * width[cell] >= THETA * THETA * d2) {
+					for (int c = 0; c < 4; c++) {
+						stack[size++] = child[cell] + c;
+					}
+					continue;
+				}
+
+				if (d2 == 0) {
+					// on top of the cell's mass: push in a fixed direction
+					ex = i % 2 == 0 ? 1 : -1;
+					ey = 0;
+					d2 = 1;
+				}
+				// (ex / d) * (kk / d) per point
+				f[0] += m * ex * kk / d2;
+				f[1] += m * ey * kk / d2;
+			}
+			return f;
+		}
+	}
+}
@@ -8,9 +8,16 @@ import org.apache.commons.collections15.Factory;
 
 import java.util.Arrays;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.NoSuchElementException;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Class used to represent a graph.
@@ -23,15 +30,6 @@ import java.util.NoSuchElementException;
 class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent>
 		implements Graph<V, E>, DirectedGraph<V, E> {
 
-	/**
-	 * Minimum node id.
-	 */
-	private static final int MIN_NODE_ID = 0;
-	/**
-	 * Max node id.
-	 */
-	private static final int MAX_NODE_ID = 200;
-
 	/**
 	 * Number of edges in the graph.
 	 */
@@ -44,22 +42,90 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	/**
 	 * Array list used to keep the graph's vertices.
 	 */
-	private ArrayList<V> graphV = new ArrayList<>();
+	private ArrayList<V> graphV;
 	/**
 	 * Array list used to keep the graph's edges but as vertexes.
 	 */
-	private ArrayList<LinkedList<V>> graphEV = new ArrayList<>();
+	private ArrayList<LinkedList<V>> graphEV;
 	/**
 	 * Array list used to keep the graph's edges E.
 	 */
-	private ArrayList<LinkedList<E>> graphE = new ArrayList<>();
+	private ArrayList<LinkedList<E>> graphE;
+	/**
+	 * Array list used to keep the sources of each vertex's incoming edges.
+	 */
+	private ArrayList<LinkedList<V>> graphInV;
+	/**
+	 * Array list used to keep each vertex's incoming edges E, parallel to
+	 * graphInV.
+	 */
+	private ArrayList<LinkedList<E>> graphInE;
+	/**
+	 * Map from each vertex to its slot in graphV and the per-vertex lists. Keeps
+	 * vertex lookup constant time instead of scanning graphV.
+	 */
+	private HashMap<V, Integer> vertexIndex;
+	/**
+	 * Map from each edge to its (source, destination) pair. Lets edge queries
+	 * and removals go straight to the two lists that hold the edge.
+	 */
+	private HashMap<E, Pair<V>> edgeEnds;
+	/**
+	 * Degree counters of each vertex, parallel to graphV.
+	 */
+	private ArrayList<Degrees> degrees;
+	/**
+	 * Number of edges between each ordered pair of vertices that has any,
+	 * keyed by pairKey. Tells a mutation whether it connects or disconnects a
+	 * pair, which is what the distinct-neighbor counters need.
+	 */
+	private PairCounts pairCounts;
+	/**
+	 * Allocator that removed vertices give their ids back to, or null.
+	 */
+	private ThreeTenIdAllocator vertexIds = null;
+	/**
+	 * Allocator that removed edges give their ids back to, or null.
+	 */
+	private ThreeTenIdAllocator edgeIds = null;
+	/**
+	 * Told about every change to the graph.
+	 */
+	private ArrayList<ThreeTenGraphListener<? super V, ? super E>> listeners = new ArrayList<>();
+	/**
+	 * Number of vertex additions and edge links and unlinks so far. Each one
+	 * stamps the version of the vertices it touched.
+	 */
+	private long changes = 0;
 
 	/**
 	 * Creates a new graph. Initializing all appropriate instance variables.
 	 */
 	@SuppressWarnings("unchecked")
 	public ThreeTenGraph() {
+		this(0, 0);
+	}
 
+	/**
+	 * Creates a new graph with room for the given number of vertices and edges,
+	 * so bulk loading does not have to grow the internal structures as it goes.
+	 * 
+	 * @param expectedVertices the number of vertices expected
+	 * @param expectedEdges    the number of edges expected
+	 */
+	public ThreeTenGraph(int expectedVertices, int expectedEdges) {
+		expectedVertices = Math.max(expectedVertices, 0);
+		expectedEdges = Math.max(expectedEdges, 0);
+
+		graphV = new ArrayList<>(expectedVertices);
+		graphEV = new ArrayList<>(expectedVertices);
+		graphE = new ArrayList<>(expectedVertices);
+		graphInV = new ArrayList<>(expectedVertices);
+		graphInE = new ArrayList<>(expectedVertices);
+		vertexIndex = new HashMap<>(hashCapacity(expectedVertices));
+		edgeEnds = new HashMap<>(hashCapacity(expectedEdges));
+		degrees = new ArrayList<>(expectedVertices);
+		pairCounts = new PairCounts(expectedEdges);
 	}
 
 	/**
@@ -120,17 +186,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public Collection<E> getInEdges(V vertex) {
 		ArrayList<E> temp = new ArrayList<>();
-		int index = 0;
-		int indexInner = 0;
-
-		for (LinkedList<V> list : graphEV) {
-			if (list.contains(vertex)) {
-				indexInner = list.indexOf(vertex);
-				temp.add(graphE.get(index).get(indexInner));
-			}
-			index += 1;
-		}
-
+		forEachInEdge(vertex, temp::add);
 		return temp;
 	}
 
@@ -144,13 +200,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public Collection<E> getOutEdges(V vertex) {
 		ArrayList<E> temp = new ArrayList<>();
-		int index = 0;
-
-		if (graphV.contains(vertex)) {
-			index = graphV.indexOf(vertex);
-			temp.addAll(graphE.get(index));
-		}
-
+		forEachOutEdge(vertex, temp::add);
 		return temp;
 	}
 
@@ -164,17 +214,10 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return a Collection view of the predecessors of vertex in this graph
 	 */
 	public Collection<V> getPredecessors(V vertex) {
-		ArrayList<V> temp = new ArrayList<>();
-		int index = 0;
-
-		for (LinkedList<V> list : graphEV) {
-			if (list.contains(vertex)) {
-				temp.add(graphV.get(index));
-			}
-			index += 1;
-		}
-
-		return temp;
+		// parallel edges share a source, only report it once
+		LinkedHashSet<V> temp = new LinkedHashSet<>();
+		forEachPredecessor(vertex, temp::add);
+		return new ArrayList<>(temp);
 	}
 
 	/**
@@ -187,14 +230,164 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public Collection<V> getSuccessors(V vertex) {
 		ArrayList<V> temp = new ArrayList<>();
-		int index = 0;
+		forEachSuccessor(vertex, temp::add);
+		return temp;
+	}
+
+	/**
+	 * Passes each outgoing edge of vertex to action, walking the adjacency list
+	 * directly instead of copying it into a new collection. The graph must not
+	 * be modified while the walk is running.
+	 * 
+	 * @param vertex the vertex whose outgoing edges are visited
+	 * @param action called once per outgoing edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachOutEdge(V vertex, Consumer<? super E> action) {
+		int index = indexOf(vertex);
 
-		if (graphV.contains(vertex)) {
-			index = graphV.indexOf(vertex);
-			temp.addAll(graphEV.get(index));
+		if (index == -1) {
+			return false;
 		}
+		for (E edge : graphE.get(index)) {
+			action.accept(edge);
+		}
+		return true;
+	}
 
-		return temp;
+	/**
+	 * Passes each incoming edge of vertex to action, walking the adjacency list
+	 * directly. The graph must not be modified while the walk is running.
+	 * 
+	 * @param vertex the vertex whose incoming edges are visited
+	 * @param action called once per incoming edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachInEdge(V vertex, Consumer<? super E> action) {
+		int index = indexOf(vertex);
+
+		if (index == -1) {
+			return false;
+		}
+		for (E edge : graphInE.get(index)) {
+			action.accept(edge);
+		}
+		return true;
+	}
+
+	/**
+	 * Passes the destination of each outgoing edge of vertex to action. A
+	 * successor reached by several parallel edges is passed once per edge. The
+	 * graph must not be modified while the walk is running.
+	 * 
+	 * @param vertex the vertex whose successors are visited
+	 * @param action called once per outgoing edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachSuccessor(V vertex, Consumer<? super V> action) {
+		int index = indexOf(vertex);
+
+		if (index == -1) {
+			return false;
+		}
+		for (V dest : graphEV.get(index)) {
+			action.accept(dest);
+		}
+		return true;
+	}
+
+	/**
+	 * Passes the source of each incoming edge of vertex to action. A
+	 * predecessor with several parallel edges into vertex is passed once per
+	 * edge. The graph must not be modified while the walk is running.
+	 * 
+	 * @param vertex the vertex whose predecessors are visited
+	 * @param action called once per incoming edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachPredecessor(V vertex, Consumer<? super V> action) {
+		int index = indexOf(vertex);
+
+		if (index == -1) {
+			return false;
+		}
+		for (V source : graphInV.get(index)) {
+			action.accept(source);
+		}
+		return true;
+	}
+
+	/**
+	 * Passes each outgoing edge of vertex to action together with its
+	 * destination, walking the edge and destination lists side by side so no
+	 * endpoint has to be looked up. The graph must not be modified while the
+	 * walk is running.
+	 * 
+	 * @param vertex the vertex whose outgoing edges are visited
+	 * @param action called once per outgoing edge, with the edge and its
+	 *               destination
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	boolean forEachOutPair(V vertex, BiConsumer<? super E, ? super V> action) {
+		int index = indexOf(vertex);
+
+		if (index == -1) {
+			return false;
+		}
+		Iterator<V> dests = graphEV.get(index).iterator();
+		for (E edge : graphE.get(index)) {
+			action.accept(edge, dests.next());
+		}
+		return true;
+	}
+
+	/**
+	 * Passes each incoming edge of vertex to action together with its
+	 * source. The graph must not be modified while the walk is running.
+	 * 
+	 * @param vertex the vertex whose incoming edges are visited
+	 * @param action called once per incoming edge, with the edge and its
+	 *               source
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	boolean forEachInPair(V vertex, BiConsumer<? super E, ? super V> action) {
+		int index = indexOf(vertex);
+
+		if (index == -1) {
+			return false;
+		}
+		Iterator<V> sources = graphInV.get(index).iterator();
+		for (E edge : graphInE.get(index)) {
+			action.accept(edge, sources.next());
+		}
+		return true;
+	}
+
+	/**
+	 * Passes each edge incident to vertex to action: all outgoing edges, then
+	 * all incoming edges that are not self-loops (those were already passed as
+	 * outgoing edges). The graph must not be modified while the walk is
+	 * running.
+	 * 
+	 * @param vertex the vertex whose incident edges are visited
+	 * @param action called once per incident edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachIncidentEdge(V vertex, Consumer<? super E> action) {
+		int index = indexOf(vertex);
+
+		if (index == -1) {
+			return false;
+		}
+		for (E edge : graphE.get(index)) {
+			action.accept(edge);
+		}
+		for (E edge : graphInE.get(index)) {
+			if (!edgeEnds.get(edge).getFirst().equals(vertex)) {
+				action.accept(edge);
+			}
+		}
+		return true;
 	}
 
 	/**
@@ -208,18 +401,12 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 *         or null otherwise
 	 */
 	public V getSource(E directedEdge) {
-		V returnVertex = null;
-		int index = 0;
+		Pair<V> ends = endsOf(directedEdge);
 
-		for (LinkedList<E> list : graphE) {
-			if (list.contains(directedEdge)) {
-				returnVertex = graphV.get(index);
-				break;
-			}
-			index += 1;
+		if (ends == null) {
+			return null;
 		}
-
-		return returnVertex;
+		return ends.getFirst();
 	}
 
 	/**
@@ -233,39 +420,23 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 *         graph, or null otherwise
 	 */
 	public V getDest(E directedEdge) {
-		V returnVertex = null;
-		int index = 0;
-		int indexInner = 0;
+		Pair<V> ends = endsOf(directedEdge);
 
-		for (LinkedList<E> list : graphE) {
-			if (list.contains(directedEdge)) {
-				indexInner = list.indexOf(directedEdge);
-				returnVertex = graphEV.get(index).get(indexInner);
-				break;
-			}
-			index += 1;
+		if (ends == null) {
+			return null;
 		}
-
-		return returnVertex;
+		return ends.getSecond();
 	}
 
 	/**
 	 * Returns the endpoints of edge as a Pair.
 	 * 
 	 * @param edge the edge whose endpoints are to be returned
-	 * @return the endpoints (incident vertices) of edge
+	 * @return the endpoints (incident vertices) of edge, or null if edge is not
+	 *         present
 	 */
 	public Pair<V> getEndpoints(E edge) {
-		ArrayList<V> temp = (ArrayList<V>) getIncidentVertices(edge);
-		V vertex1 = null;
-		V vertex2 = null;
-
-		if (temp.size() == 2) {
-			vertex1 = temp.get(0);
-			vertex2 = temp.get(1);
-		}
-
-		return new Pair<>(vertex1, vertex2);
+		return endsOf(edge);
 	}
 
 	/**
@@ -278,25 +449,14 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 *         vertex is not present
 	 */
 	public Collection<V> getNeighbors(V vertex) {
-		ArrayList<V> temp = new ArrayList<>();
-		int vertexIndex = 0;
-		int index = 0;
+		LinkedHashSet<V> temp = new LinkedHashSet<>();
 
-		if (graphV.contains(vertex) == false) {
+		if (!forEachSuccessor(vertex, temp::add)) {
 			return null;
 		}
+		forEachPredecessor(vertex, temp::add);
 
-		vertexIndex = graphV.indexOf(vertex);
-		temp.addAll(graphEV.get(vertexIndex));
-
-		for (LinkedList<V> list : graphEV) {
-			if (list.contains(vertex) && index != vertexIndex) {
-				temp.add(graphV.get(index));
-			}
-			index += 1;
-		}
-
-		return temp;
+		return new ArrayList<>(temp);
 	}
 
 	/**
@@ -308,27 +468,11 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public Collection<E> getIncidentEdges(V vertex) {
 		ArrayList<E> temp = new ArrayList<>();
-		int index;
-		int index2;
-		int indexInner;
 
-		if (graphV.contains(vertex) == false) {
+		if (!forEachIncidentEdge(vertex, temp::add)) {
 			return null;
 		}
 
-		index = graphV.indexOf(vertex);
-		temp.addAll(graphE.get(index));
-
-		index2 = 0;
-		;
-		for (LinkedList<V> list : graphEV) {
-			if (list.contains(vertex) && index2 != index) {
-				indexInner = list.indexOf(vertex);
-				temp.add(graphE.get(index2).get(indexInner));
-			}
-			index2 += 1;
-		}
-
 		return temp;
 	}
 
@@ -345,24 +489,15 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 *         edge is not present
 	 */
 	public Collection<V> getIncidentVertices(E edge) {
-		ArrayList<V> temp = new ArrayList<>();
-		int index = 0;
-		int indexInner = 0;
-
-		for (LinkedList<E> list : graphE) {
-			if (list.contains(edge)) {
-				temp.add(graphV.get(index));
-				indexInner = list.indexOf(edge);
-				temp.add(graphEV.get(index).get(indexInner));
-				break;
-			}
-			index += 1;
-		}
+		Pair<V> ends = endsOf(edge);
 
-		if (temp.size() == 0) {
+		if (ends == null) {
 			return null;
 		}
 
+		ArrayList<V> temp = new ArrayList<>();
+		temp.add(ends.getFirst());
+		temp.add(ends.getSecond());
 		return temp;
 	}
 
@@ -379,9 +514,8 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 		int indexInner = 0;
 		E returnEdge = null;
 
-		if (graphV.contains(v1) && graphV.contains(v2)) {
-			index1 = graphV.indexOf(v1);
-
+		index1 = indexOf(v1);
+		if (index1 != -1 && indexOf(v2) != -1 && pairCounts.contains(pairKey(v1, v2))) {
 			if (graphEV.get(index1).contains(v2)) {
 				indexInner = graphEV.get(index1).indexOf(v2);
 				returnEdge = graphE.get(index1).get(indexInner);
@@ -405,10 +539,15 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return true if the add is successful, false otherwise
 	 */
 	public boolean addEdge(E e, V v1, V v2) {
-		if (graphV.contains(v1) && graphV.contains(v2)) {
-			graphE.get(graphV.indexOf(v1)).add(e);
-			graphEV.get(graphV.indexOf(v1)).add(v2);
-			numEdges += 1;
+		int index1 = indexOf(v1);
+		int index2 = indexOf(v2);
+
+		if (e == null || edgeEnds.containsKey(e)) {
+			return false;
+		}
+
+		if (index1 != -1 && index2 != -1) {
+			appendEdge(e, index1, index2);
 		} else {
 			throw new IllegalArgumentException("Not in list");
 		}
@@ -426,18 +565,66 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	public boolean addVertex(V vertex) {
 		if (vertex == null) {
 			return false;
-		} else if (graphV.contains(vertex)) {
+		} else if (vertexIndex.containsKey(vertex)) {
 			return false;
 		} else {
-			graphV.add(vertex);
-			graphEV.add(new LinkedList<V>());
-			graphE.add(new LinkedList<E>());
-			numVertices += 1;
+			appendVertex(vertex);
 		}
 
 		return true;
 	}
 
+	/**
+	 * Adds vertex without checking whether it is already in the graph. Used by
+	 * addVertex and by bulk loaders that create their own fresh vertices.
+	 * 
+	 * @param vertex the vertex to add, not null and not already in the graph
+	 * @return the slot the vertex was stored in
+	 */
+	int appendVertex(V vertex) {
+		int slot = graphV.size();
+
+		vertexIndex.put(vertex, slot);
+		graphV.add(vertex);
+		graphEV.add(new LinkedList<V>());
+		graphE.add(new LinkedList<E>());
+		graphInV.add(new LinkedList<V>());
+		graphInE.add(new LinkedList<E>());
+		degrees.add(new Degrees());
+		touch(slot);
+		numVertices += 1;
+		for (ThreeTenGraphListener<? super V, ? super E> listener : listeners) {
+			listener.vertexAdded(vertex);
+		}
+
+		return slot;
+	}
+
+	/**
+	 * Adds edge e from the vertex in sourceSlot to the vertex in destSlot
+	 * without looking either vertex up or checking whether e is already in the
+	 * graph. Used by addEdge and by bulk loaders that track slots themselves.
+	 * 
+	 * @param e          the edge to add, not null and not already in the graph
+	 * @param sourceSlot the slot of the source vertex
+	 * @param destSlot   the slot of the destination vertex
+	 */
+	void appendEdge(E e, int sourceSlot, int destSlot) {
+		V source = graphV.get(sourceSlot);
+		V dest = graphV.get(destSlot);
+
+		edgeEnds.put(e, new Pair<>(source, dest));
+		graphE.get(sourceSlot).add(e);
+		graphEV.get(sourceSlot).add(dest);
+		graphInE.get(destSlot).add(e);
+		graphInV.get(destSlot).add(source);
+		link(sourceSlot, destSlot);
+		numEdges += 1;
+		for (ThreeTenGraphListener<? super V, ? super E> listener : listeners) {
+			listener.edgeAdded(e, source, dest);
+		}
+	}
+
 	/**
 	 * Removes edge from this graph. Fails if edge is null, or is otherwise not an
 	 * element of this graph.
@@ -446,28 +633,24 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return true if the removal is successful, false otherwise
 	 */
 	public boolean removeEdge(E edge) {
-		boolean isIn = false;
-		int index = 0;
-		int indexInner = 0;
+		Pair<V> ends = endsOf(edge);
 
-		if (edge == null) {
-			return false;
-		}
-		for (LinkedList<E> list : graphE) {
-			if (list.contains(edge)) {
-				isIn = true;
-				indexInner = list.indexOf(edge);
-				list.remove(edge);
-				graphEV.get(index).remove(indexInner);
-				break;
-			}
-			index += 1;
-		}
-		if (isIn == false) {
+		if (ends == null) {
 			return false;
 		}
 
+		int sourceIndex = indexOf(ends.getFirst());
+		int destIndex = indexOf(ends.getSecond());
+		removeFrom(graphE.get(sourceIndex), graphEV.get(sourceIndex), edge);
+		removeFrom(graphInE.get(destIndex), graphInV.get(destIndex), edge);
+		unlink(sourceIndex, destIndex);
+		edgeEnds.remove(edge);
+		releaseId(edgeIds, edge);
+
 		numEdges -= 1;
+		for (ThreeTenGraphListener<? super V, ? super E> listener : listeners) {
+			listener.edgeRemoved(edge);
+		}
 		return true;
 	}
 
@@ -479,40 +662,184 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 */
 	public boolean removeVertex(V vertex) {
 		int index = 0;
-		int indexInner = 0;
 		int edgesRemoved = 0;
-		ArrayList<E> temp = null;
 
 		if (vertex == null) {
 			return false;
-		} else if (graphV.contains(vertex) == false) {
+		}
+
+		index = indexOf(vertex);
+		if (index == -1) {
 			return false;
-		} else {
-			temp = (ArrayList<E>) getIncidentEdges(vertex);
-			index = graphV.indexOf(vertex);
-			graphV.remove(vertex);
-			numVertices -= 1;
-
-			edgesRemoved = graphE.get(index).size();
-			graphE.remove(index);
-			graphEV.remove(index);
-
-			index = 0;
-			for (LinkedList<V> list : graphEV) {
-				if (list.contains(vertex)) {
-					indexInner = list.indexOf(vertex);
-					list.remove(vertex);
-					graphE.get(index).remove(indexInner);
-					edgesRemoved += 1;
-				}
-				index += 1;
+		}
+
+		// unhook outgoing edges from their destinations' incoming lists
+		Iterator<V> dests = graphEV.get(index).iterator();
+		for (E edge : graphE.get(index)) {
+			V dest = dests.next();
+			int destIndex = indexOf(dest);
+			edgeEnds.remove(edge);
+			releaseId(edgeIds, edge);
+			if (destIndex != index) {
+				removeFrom(graphInE.get(destIndex), graphInV.get(destIndex), edge);
 			}
-			numEdges -= edgesRemoved;
+			unlink(index, destIndex);
+			edgesRemoved += 1;
+		}
+
+		// unhook incoming edges from their sources' outgoing lists
+		Iterator<V> sources = graphInV.get(index).iterator();
+		for (E edge : graphInE.get(index)) {
+			V source = sources.next();
+			if (!source.equals(vertex)) {
+				edgeEnds.remove(edge);
+				releaseId(edgeIds, edge);
+				int sourceIndex = indexOf(source);
+				removeFrom(graphE.get(sourceIndex), graphEV.get(sourceIndex), edge);
+				unlink(sourceIndex, index);
+				edgesRemoved += 1;
+			}
+		}
+
+		removeSlot(index);
+		releaseId(vertexIds, vertex);
+		numVertices -= 1;
+		numEdges -= edgesRemoved;
+		for (ThreeTenGraphListener<? super V, ? super E> listener : listeners) {
+			listener.vertexRemoved(vertex);
 		}
 
 		return true;
 	}
 
+	/**
+	 * Adds a batch of edges. Every endpoint is checked before anything is
+	 * added, so a batch with a missing vertex changes nothing. Null edges and
+	 * edges already in the graph (or earlier in the batch) are skipped.
+	 * 
+	 * @param triples the edges to add, with their sources and destinations
+	 * @return the number of edges added
+	 * @throws IllegalArgumentException if any source or destination is not in
+	 *                                  this graph
+	 */
+	public int addEdges(Collection<? extends Triple<? extends V, ? extends E>> triples) {
+		int[] sourceSlots = new int[triples.size()];
+		int[] destSlots = new int[triples.size()];
+		int i = 0;
+		int added = 0;
+
+		for (Triple<? extends V, ? extends E> t : triples) {
+			sourceSlots[i] = indexOf(t.getSource());
+			destSlots[i] = indexOf(t.getDest());
+			if (sourceSlots[i] == -1 || destSlots[i] == -1) {
+				throw new IllegalArgumentException("Not in list");
+			}
+			i += 1;
+		}
+
+		i = 0;
+		for (Triple<? extends V, ? extends E> t : triples) {
+			E edge = t.getEdge();
+			if (edge != null && !edgeEnds.containsKey(edge)) {
+				appendEdge(edge, sourceSlots[i], destSlots[i]);
+				added += 1;
+			}
+			i += 1;
+		}
+
+		return added;
+	}
+
+	/**
+	 * Removes a batch of edges. Each adjacency list touched by the batch is
+	 * swept once, however many of the batch's edges it holds. Edges not in the
+	 * graph are ignored.
+	 * 
+	 * @param edges the edges to remove
+	 * @return the number of edges removed
+	 */
+	public int removeEdges(Collection<? extends E> edges) {
+		HashSet<E> doomed = new HashSet<>();
+		HashSet<Integer> outSlots = new HashSet<>();
+		HashSet<Integer> inSlots = new HashSet<>();
+
+		for (E edge : edges) {
+			Pair<V> ends = endsOf(edge);
+			if (ends != null && doomed.add(edge)) {
+				outSlots.add(indexOf(ends.getFirst()));
+				inSlots.add(indexOf(ends.getSecond()));
+			}
+		}
+
+		sweepEdges(doomed, outSlots, inSlots);
+		for (ThreeTenGraphListener<? super V, ? super E> listener : listeners) {
+			doomed.forEach(listener::edgeRemoved);
+		}
+		return doomed.size();
+	}
+
+	/**
+	 * Removes a batch of vertices and every edge incident to them. Only the
+	 * adjacency lists of surviving vertices that share an edge with the batch
+	 * are swept, each once. Vertices not in the graph are ignored.
+	 * 
+	 * @param vertices the vertices to remove
+	 * @return the number of vertices removed
+	 */
+	public int removeVertices(Collection<? extends V> vertices) {
+		HashSet<V> doomedV = new HashSet<>();
+		ArrayList<Integer> slots = new ArrayList<>();
+
+		for (V vertex : vertices) {
+			int index = indexOf(vertex);
+			if (index != -1 && doomedV.add(vertex)) {
+				slots.add(index);
+			}
+		}
+		if (slots.isEmpty()) {
+			return 0;
+		}
+
+		HashSet<E> doomedE = new HashSet<>();
+		HashSet<Integer> outSlots = new HashSet<>();
+		HashSet<Integer> inSlots = new HashSet<>();
+		for (int slot : slots) {
+			Iterator<V> dests = graphEV.get(slot).iterator();
+			for (E edge : graphE.get(slot)) {
+				V dest = dests.next();
+				doomedE.add(edge);
+				if (!doomedV.contains(dest)) {
+					inSlots.add(indexOf(dest));
+				}
+			}
+
+			Iterator<V> sources = graphInV.get(slot).iterator();
+			for (E edge : graphInE.get(slot)) {
+				V source = sources.next();
+				doomedE.add(edge);
+				if (!doomedV.contains(source)) {
+					outSlots.add(indexOf(source));
+				}
+			}
+		}
+		sweepEdges(doomedE, outSlots, inSlots);
+
+		// highest first, so the slot moved into each hole is never doomed
+		slots.sort(Collections.reverseOrder());
+		for (int slot : slots) {
+			removeSlot(slot);
+		}
+		for (V vertex : doomedV) {
+			releaseId(vertexIds, vertex);
+		}
+		numVertices -= doomedV.size();
+		for (ThreeTenGraphListener<? super V, ? super E> listener : listeners) {
+			doomedV.forEach(listener::vertexRemoved);
+		}
+
+		return doomedV.size();
+	}
+
 	/**
 	 * Returns true if this graph's vertex collection contains vertex. Equivalent to
 	 * getVertices().contains(vertex).
@@ -521,7 +848,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return true iff this graph contains a vertex vertex
 	 */
 	public boolean containsVertex(V vertex) {
-		return getVertices().contains(vertex);
+		return vertex != null && vertexIndex.containsKey(vertex);
 	}
 
 	/**
@@ -532,7 +859,7 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return true iff this graph contains an edge edge
 	 */
 	public boolean containsEdge(E edge) {
-		return getEdges().contains(edge);
+		return endsOf(edge) != null;
 	}
 
 	/**
@@ -545,7 +872,12 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return true if vertex and edge are incident to each other
 	 */
 	public boolean isIncident(V vertex, E edge) {
-		return getIncidentEdges(vertex).contains(edge);
+		Pair<V> ends = endsOf(edge);
+
+		if (ends == null || vertex == null) {
+			return false;
+		}
+		return ends.getFirst().equals(vertex) || ends.getSecond().equals(vertex);
 	}
 
 	/**
@@ -586,14 +918,22 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 
 	/**
 	 * Returns the number of edges incident to vertex.
-	 * Equivalent to getIncidentEdges(vertex).size().
+	 * Equivalent to getIncidentEdges(vertex).size(). This and the other count
+	 * queries below read counters kept up to date by every mutation, so they
+	 * take constant time and build no collections.
 	 * 
 	 * @param vertex the vertex whose degree is to be returned
-	 * @return the degree of this node
+	 * @return the degree of this node, or 0 if vertex is not in this graph
 	 * @see Hypergraph#getNeighborCount(Object)
 	 */
 	public int degree(V vertex) {
-		return getIncidentEdges(vertex).size();
+		int index = indexOf(vertex);
+
+		if (index == -1) {
+			return 0;
+		}
+		// a self-loop is in both lists but is one incident edge
+		return graphE.get(index).size() + graphInE.get(index).size() - degrees.get(index).selfLoops;
 	}
 
 	/**
@@ -605,7 +945,8 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return the number of neighboring vertices
 	 */
 	public int getNeighborCount(V vertex) {
-		return getNeighbors(vertex).size();
+		int index = indexOf(vertex);
+		return index == -1 ? 0 : degrees.get(index).neighbors;
 	}
 
 	/**
@@ -616,7 +957,8 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return the number of incoming edges incident to vertex
 	 */
 	public int inDegree(V vertex) {
-		return getInEdges(vertex).size();
+		int index = indexOf(vertex);
+		return index == -1 ? 0 : graphInE.get(index).size();
 	}
 
 	/**
@@ -627,7 +969,8 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return the number of outgoing edges incident to vertex
 	 */
 	public int outDegree(V vertex) {
-		return getOutEdges(vertex).size();
+		int index = indexOf(vertex);
+		return index == -1 ? 0 : graphE.get(index).size();
 	}
 
 	/**
@@ -638,7 +981,8 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return the number of predecessors that vertex has in this graph
 	 */
 	public int getPredecessorCount(V vertex) {
-		return getPredecessors(vertex).size();
+		int index = indexOf(vertex);
+		return index == -1 ? 0 : degrees.get(index).predecessors;
 	}
 
 	/**
@@ -649,7 +993,8 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	 * @return the number of successors that vertex has in this graph
 	 */
 	public int getSuccessorCount(V vertex) {
-		return getSuccessors(vertex).size();
+		int index = indexOf(vertex);
+		return index == -1 ? 0 : graphE.get(index).size();
 	}
 
 	/**
@@ -814,6 +1159,342 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 		return null;
 	}
 
+	/**
+	 * Makes removeVertex and removeEdge give the ids of removed components back
+	 * to the given allocators, so new components reuse them and id-indexed
+	 * arrays stay dense. Components are equal when their ids are, so only
+	 * enable this when removed components are dropped by the caller. Pass null
+	 * to stop recycling.
+	 * 
+	 * @param vertexAllocator the allocator the vertices' ids came from, or null
+	 * @param edgeAllocator   the allocator the edges' ids came from, or null
+	 */
+	public void setIdRecycling(ThreeTenIdAllocator vertexAllocator, ThreeTenIdAllocator edgeAllocator) {
+		vertexIds = vertexAllocator;
+		edgeIds = edgeAllocator;
+	}
+
+	/**
+	 * Adds a listener told about every vertex and edge added or removed from
+	 * now on, including bulk and batch changes. Listeners are called in the
+	 * order they were added.
+	 * 
+	 * @param listener the listener to add
+	 */
+	public void addListener(ThreeTenGraphListener<? super V, ? super E> listener) {
+		if (listener == null) {
+			throw new IllegalArgumentException("listener cannot be null");
+		}
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener added with addListener.
+	 * 
+	 * @param listener the listener to remove
+	 * @return true if the listener was registered
+	 */
+	public boolean removeListener(ThreeTenGraphListener<? super V, ? super E> listener) {
+		return listeners.remove(listener);
+	}
+
+	/**
+	 * Returns the number of changes made to this graph so far. Every version
+	 * handed out by versionOf is at most this.
+	 * 
+	 * @return the change count
+	 */
+	long changeCount() {
+		return changes;
+	}
+
+	/**
+	 * Returns the version of vertex: the change count when it was added or
+	 * last had an incident edge added or removed. Versions only grow, and a
+	 * vertex added after a removal never reuses an old version, even with id
+	 * recycling.
+	 * 
+	 * @param vertex the vertex to look up
+	 * @return the version, or -1 if vertex is not in the graph
+	 */
+	long versionOf(V vertex) {
+		int index = indexOf(vertex);
+		return index == -1 ? -1 : degrees.get(index).version;
+	}
+
+	/**
+	 * Gives the id of a removed component back to allocator, if recycling is
+	 * on.
+	 * 
+	 * @param allocator the allocator to release to, or null
+	 * @param component the removed component
+	 */
+	private static void releaseId(ThreeTenIdAllocator allocator, ThreeTenGraphComponent component) {
+		if (allocator != null) {
+			allocator.release(component.getId());
+		}
+	}
+
+	/**
+	 * Returns the slot of vertex in graphV, graphEV and graphE.
+	 * 
+	 * @param vertex the vertex to look up
+	 * @return the slot of vertex, or -1 if vertex is null or not in the graph
+	 */
+	private int indexOf(V vertex) {
+		if (vertex == null) {
+			return -1;
+		}
+
+		Integer index = vertexIndex.get(vertex);
+		if (index == null) {
+			return -1;
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the (source, destination) pair of edge.
+	 * 
+	 * @param edge the edge to look up
+	 * @return the endpoints of edge, or null if edge is null or not in the graph
+	 */
+	private Pair<V> endsOf(E edge) {
+		if (edge == null) {
+			return null;
+		}
+		return edgeEnds.get(edge);
+	}
+
+	/**
+	 * Returns a HashMap capacity that holds size entries without rehashing.
+	 * 
+	 * @param size the number of entries expected
+	 * @return the initial capacity to use
+	 */
+	private static int hashCapacity(int size) {
+		return (int) Math.min(Integer.MAX_VALUE, (long) size * 4 / 3 + 1);
+	}
+
+	/**
+	 * Removes the vertex slot at index by moving the last slot into its place,
+	 * so no other slot has to shift. The edges stored in the slot are dropped
+	 * with it.
+	 * 
+	 * @param index the slot to remove
+	 */
+	private void removeSlot(int index) {
+		int last = graphV.size() - 1;
+
+		vertexIndex.remove(graphV.get(index));
+		if (index != last) {
+			V moved = graphV.get(last);
+			graphV.set(index, moved);
+			graphEV.set(index, graphEV.get(last));
+			graphE.set(index, graphE.get(last));
+			graphInV.set(index, graphInV.get(last));
+			graphInE.set(index, graphInE.get(last));
+			degrees.set(index, degrees.get(last));
+			vertexIndex.put(moved, index);
+		}
+
+		graphV.remove(last);
+		graphEV.remove(last);
+		graphE.remove(last);
+		graphInV.remove(last);
+		graphInE.remove(last);
+		degrees.remove(last);
+	}
+
+	/**
+	 * Records one more edge from the vertex in sourceSlot to the vertex in
+	 * destSlot, updating the degree counters if the pair was not connected
+	 * before.
+	 * 
+	 * @param sourceSlot the slot of the source vertex
+	 * @param destSlot   the slot of the destination vertex
+	 */
+	private void link(int sourceSlot, int destSlot) {
+		V source = graphV.get(sourceSlot);
+		V dest = graphV.get(destSlot);
+
+		touch(sourceSlot);
+		touch(destSlot);
+		if (sourceSlot == destSlot) {
+			degrees.get(sourceSlot).selfLoops += 1;
+		}
+		if (pairCounts.add(pairKey(source, dest), 1) == 1) {
+			degrees.get(destSlot).predecessors += 1;
+			countNeighbors(sourceSlot, destSlot, 1);
+		}
+	}
+
+	/**
+	 * Records one less edge from the vertex in sourceSlot to the vertex in
+	 * destSlot, updating the degree counters if that was the pair's last edge.
+	 * 
+	 * @param sourceSlot the slot of the source vertex
+	 * @param destSlot   the slot of the destination vertex
+	 */
+	private void unlink(int sourceSlot, int destSlot) {
+		V source = graphV.get(sourceSlot);
+		V dest = graphV.get(destSlot);
+
+		touch(sourceSlot);
+		touch(destSlot);
+		if (sourceSlot == destSlot) {
+			degrees.get(sourceSlot).selfLoops -= 1;
+		}
+		if (pairCounts.add(pairKey(source, dest), -1) == 0) {
+			degrees.get(destSlot).predecessors -= 1;
+			countNeighbors(sourceSlot, destSlot, -1);
+		}
+	}
+
+	/**
+	 * Stamps the vertex in slot with a new version, telling caches built on
+	 * its adjacency lists that they changed.
+	 * 
+	 * @param slot the slot of the changed vertex
+	 */
+	private void touch(int slot) {
+		changes += 1;
+		degrees.get(slot).version = changes;
+	}
+
+	/**
+	 * Adds delta to the neighbor counts of two vertices whose edges from
+	 * sourceSlot to destSlot just appeared or disappeared, unless edges the
+	 * other way still keep them neighbors.
+	 * 
+	 * @param sourceSlot the slot of the source vertex
+	 * @param destSlot   the slot of the destination vertex
+	 * @param delta      1 if the pair was just connected, -1 if disconnected
+	 */
+	private void countNeighbors(int sourceSlot, int destSlot, int delta) {
+		if (sourceSlot == destSlot) {
+			degrees.get(sourceSlot).neighbors += delta;
+		} else if (!pairCounts.contains(pairKey(graphV.get(destSlot), graphV.get(sourceSlot)))) {
+			degrees.get(sourceSlot).neighbors += delta;
+			degrees.get(destSlot).neighbors += delta;
+		}
+	}
+
+	/**
+	 * Packs the ids of an ordered pair of vertices into a pairCounts key. The
+	 * packed ids are multiplied by an odd constant, which keeps keys distinct
+	 * but mixes every id bit into the top bits of the key, where PairCounts
+	 * takes its table index from.
+	 * 
+	 * @param source the source vertex
+	 * @param dest   the destination vertex
+	 * @return the key
+	 */
+	private static long pairKey(ThreeTenGraphComponent source, ThreeTenGraphComponent dest) {
+		long packed = ((long) source.getId() << 32) | (dest.getId() & 0xFFFFFFFFL);
+		return packed * 0x9E3779B97F4A7C15L;
+	}
+
+	/**
+	 * Removes edge and the vertex stored alongside it from a pair of parallel
+	 * adjacency lists.
+	 * 
+	 * @param edges    the edge list to remove from
+	 * @param vertices the vertex list kept parallel to edges
+	 * @param edge     the edge to remove
+	 * @return true if edge was found and removed
+	 */
+	private boolean removeFrom(LinkedList<E> edges, LinkedList<V> vertices, E edge) {
+		Iterator<E> edgeIt = edges.iterator();
+		Iterator<V> vertexIt = vertices.iterator();
+
+		while (edgeIt.hasNext()) {
+			vertexIt.next();
+			if (edgeIt.next().equals(edge)) {
+				edgeIt.remove();
+				vertexIt.remove();
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Removes a set of edges from the graph, sweeping each listed outgoing and
+	 * incoming adjacency list once.
+	 * 
+	 * @param doomed   the edges to remove, all in the graph
+	 * @param outSlots slots whose outgoing lists hold doomed edges
+	 * @param inSlots  slots whose incoming lists hold doomed edges
+	 */
+	private void sweepEdges(HashSet<E> doomed, Collection<Integer> outSlots, Collection<Integer> inSlots) {
+		for (int slot : outSlots) {
+			sweep(graphE.get(slot), graphEV.get(slot), doomed);
+		}
+		for (int slot : inSlots) {
+			sweep(graphInE.get(slot), graphInV.get(slot), doomed);
+		}
+		for (E edge : doomed) {
+			Pair<V> ends = edgeEnds.remove(edge);
+			unlink(indexOf(ends.getFirst()), indexOf(ends.getSecond()));
+			releaseId(edgeIds, edge);
+		}
+		numEdges -= doomed.size();
+	}
+
+	/**
+	 * Removes every edge in doomed, and the vertex stored alongside it, from a
+	 * pair of parallel adjacency lists in one pass.
+	 * 
+	 * @param edges    the edge list to sweep
+	 * @param vertices the vertex list kept parallel to edges
+	 * @param doomed   the edges to remove
+	 */
+	private void sweep(LinkedList<E> edges, LinkedList<V> vertices, HashSet<E> doomed) {
+		Iterator<E> edgeIt = edges.iterator();
+		Iterator<V> vertexIt = vertices.iterator();
+
+		while (edgeIt.hasNext()) {
+			vertexIt.next();
+			if (doomed.contains(edgeIt.next())) {
+				edgeIt.remove();
+				vertexIt.remove();
+			}
+		}
+	}
+
+	/**
+	 * Builds a read-only compressed sparse row snapshot of this graph. Vertex
+	 * slots in the snapshot follow the order of getVertices() at the time of
+	 * the call, and vertices and edges are identified by their component ids.
+	 * Later changes to this graph are not reflected in the snapshot.
+	 * 
+	 * @return the CSR snapshot
+	 */
+	public ThreeTenGraphCsr toCsr() {
+		int[] ids = new int[numVertices];
+		int[] offsets = new int[numVertices + 1];
+		int[] targets = new int[numEdges];
+		int[] edgeIdArray = new int[numEdges];
+		int pos = 0;
+
+		for (int slot = 0; slot < numVertices; slot++) {
+			ids[slot] = graphV.get(slot).getId();
+			offsets[slot] = pos;
+
+			Iterator<V> dests = graphEV.get(slot).iterator();
+			for (E edge : graphE.get(slot)) {
+				targets[pos] = vertexIndex.get(dests.next());
+				edgeIdArray[pos] = edge.getId();
+				pos += 1;
+			}
+		}
+		offsets[numVertices] = pos;
+
+		return new ThreeTenGraphCsr(ids, offsets, targets, edgeIdArray);
+	}
+
 	/**
 	 * Used to make a string representation for the graph and testing.
 	 * @return string representation
@@ -868,4 +1549,239 @@ class ThreeTenGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphCom
 	public int getIncidentCount(E edge) {
 		return 2;
 	}
+
+	/**
+	 * Number of edges of each connected ordered pair, keyed by pairKey. An
+	 * open-addressed table of primitive keys and counts with linear probing,
+	 * so counting an edge allocates nothing; a slot whose count is 0 is empty,
+	 * and removal shifts later entries of the run back instead of leaving a
+	 * marker.
+	 */
+	private static final class PairCounts {
+		/**
+		 * Smallest table length.
+		 */
+		private static final int MIN_CAPACITY = 16;
+
+		/**
+		 * Key in each slot.
+		 */
+		private long[] keys;
+		/**
+		 * Count in each slot, 0 if the slot is empty.
+		 */
+		private int[] counts;
+		/**
+		 * Number of occupied slots.
+		 */
+		private int size = 0;
+		/**
+		 * 64 minus the log of the table length; a key's home slot is its top
+		 * bits.
+		 */
+		private int shift;
+
+		/**
+		 * Creates a table that holds expected pairs without growing.
+		 * 
+		 * @param expected the number of pairs expected
+		 */
+		PairCounts(int expected) {
+			int capacity = MIN_CAPACITY;
+			while (capacity < 1 << 30 && capacity * 3L < expected * 4L) {
+				capacity <<= 1;
+			}
+			allocate(capacity);
+		}
+
+		/**
+		 * Returns whether key has a count.
+		 * 
+		 * @param key the pair key
+		 * @return true if the pair has any edges
+		 */
+		boolean contains(long key) {
+			return counts[find(key)] != 0;
+		}
+
+		/**
+		 * Adds delta to the count of key, removing it once the count drops to
+		 * 0.
+		 * 
+		 * @param key   the pair key
+		 * @param delta the change, 1 or -1
+		 * @return the new count
+		 */
+		int add(long key, int delta) {
+			int slot = find(key);
+			int count = counts[slot] + delta;
+
+			if (counts[slot] == 0) {
+				keys[slot] = key;
+				counts[slot] = count;
+				size += 1;
+				if (size * 4L > keys.length * 3L) {
+					grow();
+				}
+			} else if (count == 0) {
+				remove(slot);
+			} else {
+				counts[slot] = count;
+			}
+			return count;
+		}
+
+		/**
+		 * Returns the slot holding key, or the empty slot that ends its run.
+		 * 
+		 * @param key the pair key
+		 * @return the slot
+		 */
+		private int find(long key) {
+			int mask = keys.length - 1;
+			int slot = (int) (key >>> shift);
+
+			while (counts[slot] != 0 && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		/**
+		 * Empties slot, moving back any later entry of the run that could not
+		 * be found past the hole otherwise.
+		 * 
+		 * @param slot the slot to empty
+		 */
+		private void remove(int slot) {
+			int mask = keys.length - 1;
+			int hole = slot;
+
+			for (int next = (hole + 1) & mask; counts[next] != 0; next = (next + 1) & mask) {
+				int home = (int) (keys[next] >>> shift);
+				// move next into the hole unless its home lies after the hole
+				if (((next - home) & mask) >= ((next - hole) & mask)) {
+					keys[hole] = keys[next];
+					counts[hole] = counts[next];
+					hole = next;
+				}
+			}
+			counts[hole] = 0;
+			size -= 1;
+		}
+
+		/**
+		 * Doubles the table and reinserts every entry.
+		 */
+		private void grow() {
+			long[] oldKeys = keys;
+			int[] oldCounts = counts;
+
+			allocate(keys.length * 2);
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldCounts[i] != 0) {
+					int slot = find(oldKeys[i]);
+					keys[slot] = oldKeys[i];
+					counts[slot] = oldCounts[i];
+				}
+			}
+		}
+
+		/**
+		 * Replaces the table with an empty one.
+		 * 
+		 * @param capacity the table length, a power of two
+		 */
+		private void allocate(int capacity) {
+			keys = new long[capacity];
+			counts = new int[capacity];
+			shift = 64 - Integer.numberOfTrailingZeros(capacity);
+		}
+	}
+
+	/**
+	 * Degree counters of one vertex that cannot be read off its adjacency
+	 * lists, kept up to date by link and unlink.
+	 */
+	private static final class Degrees {
+		/**
+		 * Number of self-loops on the vertex.
+		 */
+		private int selfLoops;
+		/**
+		 * Number of distinct sources of the vertex's incoming edges.
+		 */
+		private int predecessors;
+		/**
+		 * Number of distinct vertices the vertex shares an edge with, counting
+		 * itself if it has a self-loop.
+		 */
+		private int neighbors;
+		/**
+		 * Value of changes when the vertex was added or last had an edge
+		 * added or removed.
+		 */
+		private long version;
+	}
+
+	/**
+	 * An edge together with its source and destination, for addEdges.
+	 * 
+	 * @param <V> for generics
+	 * @param <E> for generics
+	 */
+	public static final class Triple<V, E> {
+		/**
+		 * The edge.
+		 */
+		private final E edge;
+		/**
+		 * The source vertex.
+		 */
+		private final V source;
+		/**
+		 * The destination vertex.
+		 */
+		private final V dest;
+
+		/**
+		 * Creates a triple for edge from source to dest.
+		 * 
+		 * @param edge   the edge
+		 * @param source the source vertex
+		 * @param dest   the destination vertex
+		 */
+		public Triple(E edge, V source, V dest) {
+			this.edge = edge;
+			this.source = source;
+			this.dest = dest;
+		}
+
+		/**
+		 * Gets the edge.
+		 * 
+		 * @return the edge
+		 */
+		public E getEdge() {
+			return edge;
+		}
+
+		/**
+		 * Gets the source vertex.
+		 * 
+		 * @return the source
+		 */
+		public V getSource() {
+			return source;
+		}
+
+		/**
+		 * Gets the destination vertex.
+		 * 
+		 * @return the destination
+		 */
+		public V getDest() {
+			return dest;
+		}
+	}
 }
@@ -0,0 +1,333 @@
+import edu.uci.ics.jung.algorithms.generators.random.ErdosRenyiGeneratorDirected;
+
+import org.apache.commons.collections15.Factory;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Micro-benchmarks for the core ThreeTenGraph operations (addVertex, addEdge,
+ * findEdge, getInEdges, getSuccessors, removeEdge, removeVertex) on generated
+ * Erdos-Renyi and power-law graphs of increasing size. Each operation is
+ * warmed up, then timed over several rounds of OPS calls, and the mean cost
+ * per call is printed. The heap is collected before every timed round, so
+ * the garbage left by building the graphs is not collected inside one.
+ *
+ * <p>
+ * Small Erdos-Renyi graphs are built with ErdosRenyiGeneratorDirected, the
+ * same way SimGUI.genGraph does. That generator flips a coin for every vertex
+ * pair, so larger graphs sample the same edge probability with random pairs
+ * instead and go through ThreeTenGraphLoader. Power-law graphs use
+ * preferential attachment.
+ *
+ * <p>
+ * Run with: java ThreeTenGraphBenchmark [maxExponent] [avgDegree] [seed]
+ * (defaults 5, 4 and 310). Sizes run from 10^2 up to 10^maxExponent
+ * vertices.
+ *
+ * @author Hammadullah Nasir
+ */
+class ThreeTenGraphBenchmark {
+	/**
+	 * Calls per measured round.
+	 */
+	private static final int OPS = 1000;
+	/**
+	 * Untimed rounds before measuring.
+	 */
+	private static final int WARMUP_ROUNDS = 3;
+	/**
+	 * Timed rounds.
+	 */
+	private static final int MEASURE_ROUNDS = 5;
+	/**
+	 * Largest graph built with ErdosRenyiGeneratorDirected.
+	 */
+	private static final int JUNG_GENERATOR_LIMIT = 1000;
+
+	/**
+	 * Keeps query results alive so the JIT cannot drop the calls.
+	 */
+	private static long sink = 0;
+
+	/**
+	 * Average out-degree of the generated graphs.
+	 */
+	private final int avgDegree;
+	/**
+	 * Random number generator for graphs and operation arguments.
+	 */
+	private final Random rand;
+
+	/**
+	 * Creates a benchmark run.
+	 *
+	 * @param avgDegree average out-degree of the generated graphs
+	 * @param seed      seed for the random number generator
+	 */
+	ThreeTenGraphBenchmark(int avgDegree, long seed) {
+		this.avgDegree = avgDegree;
+		this.rand = new Random(seed);
+	}
+
+	/**
+	 * Runs every operation on both graph models for each size.
+	 *
+	 * @param args [0] = largest power of ten, [1] = average degree, [2] = seed
+	 */
+	public static void main(String[] args) {
+		int maxExponent = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+		int avgDegree = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 310;
+
+		ThreeTenGraphBenchmark bench = new ThreeTenGraphBenchmark(avgDegree, seed);
+		System.out.printf("%-10s %9s %9s %14s %14s %14s %14s %14s %14s %14s%n", "model", "vertices", "edges",
+				"addVertex", "addEdge", "findEdge", "getInEdges", "getSuccessors", "removeEdge", "removeVertex");
+
+		for (int e = 2; e <= maxExponent; e++) {
+			int n = (int) Math.pow(10, e);
+			bench.run("erdos", n);
+			bench.run("powerlaw", n);
+		}
+		System.out.println("(mean ns per call; sink " + (sink & 1) + ")");
+	}
+
+	/**
+	 * Benchmarks every operation on one graph model and size and prints a row.
+	 *
+	 * @param model "erdos" or "powerlaw"
+	 * @param n     the number of vertices
+	 */
+	private void run(String model, int n) {
+		ThreeTenGraph<ThreeTenNode, ThreeTenEdge> graph = build(model, n);
+		int edges = graph.getEdgeCount();
+		ArrayList<ThreeTenNode> vertices = new ArrayList<>(graph.getVertices());
+
+		double addVertex = measure(model, n, (g, v, e) -> {
+			for (int i = 0; i < OPS; i++) {
+				g.addVertex(new ThreeTenNode());
+			}
+		});
+		double addEdge = measure(model, n, (g, v, e) -> {
+			for (int i = 0; i < OPS; i++) {
+				g.addEdge(new ThreeTenEdge(), pick(v), pick(v));
+			}
+		});
+		double findEdge = time(() -> {
+			for (int i = 0; i < OPS; i++) {
+				sink += graph.findEdge(pick(vertices), pick(vertices)) == null ? 0 : 1;
+			}
+		});
+		double getInEdges = time(() -> {
+			for (int i = 0; i < OPS; i++) {
+				sink += graph.getInEdges(pick(vertices)).size();
+			}
+		});
+		double getSuccessors = time(() -> {
+			for (int i = 0; i < OPS; i++) {
+				sink += graph.getSuccessors(pick(vertices)).size();
+			}
+		});
+		double removeEdge = measure(model, n, (g, v, e) -> {
+			for (int i = 0; i < OPS && !e.isEmpty(); i++) {
+				g.removeEdge(take(e));
+			}
+		});
+		double removeVertex = measure(model, n, (g, v, e) -> {
+			for (int i = 0; i < OPS && !v.isEmpty(); i++) {
+				g.removeVertex(take(v));
+			}
+		});
+
+		System.out.printf("%-10s %9d %9d %14.1f %14.1f %14.1f %14.1f %14.1f %14.1f %14.1f%n", model, n, edges,
+				addVertex, addEdge, findEdge, getInEdges, getSuccessors, removeEdge, removeVertex);
+	}
+
+	/**
+	 * Times a mutating operation. Each round runs on a freshly built graph, and
+	 * only the operation itself is timed.
+	 *
+	 * @param model the graph model
+	 * @param n     the number of vertices
+	 * @param op    the operation, given the graph and copies of its vertex and
+	 *              edge lists
+	 * @return mean nanoseconds per call
+	 */
+	private double measure(String model, int n, Mutation op) {
+		long total = 0;
+
+		for (int round = 0; round < WARMUP_ROUNDS + MEASURE_ROUNDS; round++) {
+			ThreeTenGraph<ThreeTenNode, ThreeTenEdge> g = build(model, n);
+			ArrayList<ThreeTenNode> v = new ArrayList<>(g.getVertices());
+			ArrayList<ThreeTenEdge> e = new ArrayList<>(g.getEdges());
+			System.gc();
+			long t0 = System.nanoTime();
+			op.apply(g, v, e);
+			long elapsed = System.nanoTime() - t0;
+			if (round >= WARMUP_ROUNDS) {
+				total += elapsed;
+			}
+		}
+
+		return (double) total / MEASURE_ROUNDS / OPS;
+	}
+
+	/**
+	 * Times a read-only operation on a shared graph.
+	 *
+	 * @param op runs OPS calls
+	 * @return mean nanoseconds per call
+	 */
+	private static double time(Runnable op) {
+		long total = 0;
+
+		for (int round = 0; round < WARMUP_ROUNDS + MEASURE_ROUNDS; round++) {
+			System.gc();
+			long t0 = System.nanoTime();
+			op.run();
+			long elapsed = System.nanoTime() - t0;
+			if (round >= WARMUP_ROUNDS) {
+				total += elapsed;
+			}
+		}
+
+		return (double) total / MEASURE_ROUNDS / OPS;
+	}
+
+	/**
+	 * Builds a graph of the given model.
+	 *
+	 * @param model "erdos" or "powerlaw"
+	 * @param n     the number of vertices
+	 * @return the graph
+	 */
+	private ThreeTenGraph<ThreeTenNode, ThreeTenEdge> build(String model, int n) {
+		ThreeTenNode.IDS.reset();
+		ThreeTenEdge.IDS.reset();
+
+		if (model.equals("erdos")) {
+			return erdosRenyi(n);
+		}
+		return powerLaw(n);
+	}
+
+	/**
+	 * Builds a directed Erdos-Renyi graph with the configured average degree.
+	 *
+	 * @param n the number of vertices
+	 * @return the graph
+	 */
+	private ThreeTenGraph<ThreeTenNode, ThreeTenEdge> erdosRenyi(int n) {
+		double prob = Math.min(1.0, (double) avgDegree / n);
+
+		if (n <= JUNG_GENERATOR_LIMIT) {
+			Factory<ThreeTenNode> nodeFactory = ThreeTenNode.getFactory();
+			Factory<ThreeTenEdge> edgeFactory = ThreeTenEdge.getFactory();
+
+			ErdosRenyiGeneratorDirected<ThreeTenNode, ThreeTenEdge> gen = new ErdosRenyiGeneratorDirected<>(
+					ThreeTenGraph.<ThreeTenNode, ThreeTenEdge>getFactory(), nodeFactory, edgeFactory, n, prob);
+			gen.setSeed(rand.nextInt());
+			return (ThreeTenGraph<ThreeTenNode, ThreeTenEdge>) gen.create();
+		}
+
+		int m = (int) Math.round(prob * n * (double) n);
+		int[] src = new int[m];
+		int[] dst = new int[m];
+		for (int i = 0; i < m; i++) {
+			src[i] = rand.nextInt(n);
+			dst[i] = rand.nextInt(n);
+		}
+		return load(n, src, dst);
+	}
+
+	/**
+	 * Builds a graph by preferential attachment: each new vertex links to
+	 * avgDegree earlier vertices chosen in proportion to their degree.
+	 *
+	 * @param n the number of vertices
+	 * @return the graph
+	 */
+	private ThreeTenGraph<ThreeTenNode, ThreeTenEdge> powerLaw(int n) {
+		int m = Math.max(0, (n - 1) * avgDegree);
+		int[] src = new int[m];
+		int[] dst = new int[m];
+		// every edge endpoint so far; sampling it uniformly picks by degree
+		int[] ends = new int[2 * m + 1];
+		int numEnds = 1;
+		int pos = 0;
+
+		for (int v = 1; v < n; v++) {
+			for (int k = 0; k < avgDegree; k++) {
+				int target = ends[rand.nextInt(numEnds)];
+				src[pos] = v;
+				dst[pos] = target;
+				pos += 1;
+				ends[numEnds++] = target;
+			}
+			for (int k = 0; k < avgDegree; k++) {
+				ends[numEnds++] = v;
+			}
+		}
+		return load(n, src, dst);
+	}
+
+	/**
+	 * Loads an edge list through the bulk loader, then adds any vertices that
+	 * no edge touched.
+	 *
+	 * @param n   the number of vertices
+	 * @param src the source of each edge
+	 * @param dst the destination of each edge
+	 * @return the graph
+	 */
+	private static ThreeTenGraph<ThreeTenNode, ThreeTenEdge> load(int n, int[] src, int[] dst) {
+		ThreeTenGraph<ThreeTenNode, ThreeTenEdge> graph = new ThreeTenGraph<>(n, src.length);
+		new ThreeTenGraphLoader<>(ThreeTenNode.getFactory(), ThreeTenEdge.getFactory()).load(graph, src, dst,
+				src.length);
+		while (graph.getVertexCount() < n) {
+			graph.addVertex(new ThreeTenNode());
+		}
+		return graph;
+	}
+
+	/**
+	 * Picks a random vertex.
+	 *
+	 * @param vertices the vertices to pick from
+	 * @return a random element
+	 */
+	private ThreeTenNode pick(ArrayList<ThreeTenNode> vertices) {
+		return vertices.get(rand.nextInt(vertices.size()));
+	}
+
+	/**
+	 * Removes and returns a random element in constant time by moving the last
+	 * element into its place.
+	 *
+	 * @param <T>  the element type
+	 * @param list the list to take from, not empty
+	 * @return the removed element
+	 */
+	private <T> T take(ArrayList<T> list) {
+		int i = rand.nextInt(list.size());
+		T picked = list.get(i);
+		list.set(i, list.get(list.size() - 1));
+		list.remove(list.size() - 1);
+		return picked;
+	}
+
+	/**
+	 * An operation that changes a graph.
+	 */
+	private interface Mutation {
+		/**
+		 * Runs the operation.
+		 *
+		 * @param graph    the graph to change
+		 * @param vertices a modifiable copy of the graph's vertices
+		 * @param edges    a modifiable copy of the graph's edges
+		 */
+		void apply(ThreeTenGraph<ThreeTenNode, ThreeTenEdge> graph, ArrayList<ThreeTenNode> vertices,
+				ArrayList<ThreeTenEdge> edges);
+	}
+}
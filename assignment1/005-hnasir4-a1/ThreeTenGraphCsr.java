@@ -0,0 +1,238 @@
+import java.util.Arrays;
+
+/**
+ * Read-only compressed sparse row (CSR) snapshot of a ThreeTenGraph. Vertices
+ * are numbered by slot (0 to vertexCount() - 1) and every adjacency is kept in
+ * flat int arrays, so traversals walk primitive arrays instead of linked
+ * lists. The outgoing edges of slot s are targets[offsets[s]] up to (but not
+ * including) targets[offsets[s + 1]]; the incoming edges are laid out the
+ * same way in inOffsets/sources.
+ *
+ * <p>
+ * The array accessors hand out the internal arrays without copying. Callers
+ * must not modify them.
+ *
+ * @author Hammadullah Nasir
+ */
+final class ThreeTenGraphCsr {
+	/**
+	 * Component id of the vertex in each slot.
+	 */
+	private final int[] vertexIds;
+	/**
+	 * Slot of each vertex id, or -1 for ids not in the snapshot.
+	 */
+	private final int[] slotOfId;
+
+	/**
+	 * Start of each slot's outgoing edges in targets; has vertexCount() + 1
+	 * entries.
+	 */
+	private final int[] offsets;
+	/**
+	 * Destination slot of each outgoing edge.
+	 */
+	private final int[] targets;
+	/**
+	 * Component id of each outgoing edge, parallel to targets.
+	 */
+	private final int[] edgeIds;
+
+	/**
+	 * Start of each slot's incoming edges in sources; has vertexCount() + 1
+	 * entries.
+	 */
+	private final int[] inOffsets;
+	/**
+	 * Source slot of each incoming edge.
+	 */
+	private final int[] sources;
+	/**
+	 * Component id of each incoming edge, parallel to sources.
+	 */
+	private final int[] inEdgeIds;
+
+	/**
+	 * Creates a snapshot from outgoing adjacency arrays. The incoming
+	 * adjacency is derived here. The arrays are kept, not copied.
+	 *
+	 * @param vertexIds the component id of the vertex in each slot
+	 * @param offsets   start of each slot's outgoing edges, vertexIds.length + 1
+	 *                  entries
+	 * @param targets   destination slot of each edge
+	 * @param edgeIds   component id of each edge, parallel to targets
+	 */
+	ThreeTenGraphCsr(int[] vertexIds, int[] offsets, int[] targets, int[] edgeIds) {
+		int n = vertexIds.length;
+		int m = targets.length;
+
+		this.vertexIds = vertexIds;
+		this.offsets = offsets;
+		this.targets = targets;
+		this.edgeIds = edgeIds;
+
+		int maxId = -1;
+		for (int id : vertexIds) {
+			maxId = Math.max(maxId, id);
+		}
+		slotOfId = new int[maxId + 1];
+		Arrays.fill(slotOfId, -1);
+		for (int slot = 0; slot < n; slot++) {
+			slotOfId[vertexIds[slot]] = slot;
+		}
+
+		// counting sort of the edges by destination
+		inOffsets = new int[n + 1];
+		for (int i = 0; i < m; i++) {
+			inOffsets[targets[i] + 1] += 1;
+		}
+		for (int slot = 0; slot < n; slot++) {
+			inOffsets[slot + 1] += inOffsets[slot];
+		}
+
+		sources = new int[m];
+		inEdgeIds = new int[m];
+		int[] next = Arrays.copyOf(inOffsets, n);
+		for (int slot = 0; slot < n; slot++) {
+			for (int i = offsets[slot]; i < offsets[slot + 1]; i++) {
+				int pos = next[targets[i]]++;
+				sources[pos] = slot;
+				inEdgeIds[pos] = edgeIds[i];
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of vertices in the snapshot.
+	 *
+	 * @return the vertex count
+	 */
+	public int vertexCount() {
+		return vertexIds.length;
+	}
+
+	/**
+	 * Returns the number of edges in the snapshot.
+	 *
+	 * @return the edge count
+	 */
+	public int edgeCount() {
+		return targets.length;
+	}
+
+	/**
+	 * Returns the component id of the vertex in slot.
+	 *
+	 * @param slot the vertex slot
+	 * @return the vertex id
+	 */
+	public int vertexId(int slot) {
+		return vertexIds[slot];
+	}
+
+	/**
+	 * Returns the slot holding the vertex with the given component id.
+	 *
+	 * @param id the vertex id
+	 * @return the slot, or -1 if no such vertex is in the snapshot
+	 */
+	public int slotOf(int id) {
+		if (id < 0 || id >= slotOfId.length) {
+			return -1;
+		}
+		return slotOfId[id];
+	}
+
+	/**
+	 * Returns one more than the largest vertex id in the snapshot. Arrays of
+	 * this length can be indexed by vertex id.
+	 *
+	 * @return the vertex id bound
+	 */
+	public int idBound() {
+		return slotOfId.length;
+	}
+
+	/**
+	 * Returns the number of outgoing edges of slot.
+	 *
+	 * @param slot the vertex slot
+	 * @return the out-degree
+	 */
+	public int outDegree(int slot) {
+		return offsets[slot + 1] - offsets[slot];
+	}
+
+	/**
+	 * Returns the number of incoming edges of slot.
+	 *
+	 * @param slot the vertex slot
+	 * @return the in-degree
+	 */
+	public int inDegree(int slot) {
+		return inOffsets[slot + 1] - inOffsets[slot];
+	}
+
+	/**
+	 * Returns the component id of each vertex, indexed by slot.
+	 *
+	 * @return the vertex id array
+	 */
+	int[] vertexIds() {
+		return vertexIds;
+	}
+
+	/**
+	 * Returns the outgoing edge offsets, indexed by slot.
+	 *
+	 * @return the offsets array
+	 */
+	int[] offsets() {
+		return offsets;
+	}
+
+	/**
+	 * Returns the destination slot of each outgoing edge.
+	 *
+	 * @return the targets array
+	 */
+	int[] targets() {
+		return targets;
+	}
+
+	/**
+	 * Returns the component id of each outgoing edge, parallel to targets().
+	 *
+	 * @return the edge id array
+	 */
+	int[] edgeIds() {
+		return edgeIds;
+	}
+
+	/**
+	 * Returns the incoming edge offsets, indexed by slot.
+	 *
+	 * @return the incoming offsets array
+	 */
+	int[] inOffsets() {
+		return inOffsets;
+	}
+
+	/**
+	 * Returns the source slot of each incoming edge.
+	 *
+	 * @return the sources array
+	 */
+	int[] sources() {
+		return sources;
+	}
+
+	/**
+	 * Returns the component id of each incoming edge, parallel to sources().
+	 *
+	 * @return the incoming edge id array
+	 */
+	int[] inEdgeIds() {
+		return inEdgeIds;
+	}
+}
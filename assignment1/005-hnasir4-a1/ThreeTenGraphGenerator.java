@@ -0,0 +1,460 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Makes random directed graphs as edge lists of vertex numbers, ready for the
+ * loader's bulk path (see EdgeList.load). Three models are offered:
+ *
+ * <ul>
+ * <li>Erdos-Renyi G(n, p): every ordered pair of distinct vertices is an edge
+ * with probability p. Instead of flipping a coin per pair, the gap to the
+ * next edge is drawn from a geometric distribution, so the work is
+ * proportional to the number of edges, not n^2.</li>
+ * <li>Barabasi-Albert: each vertex after the first links to m earlier
+ * vertices chosen in proportion to their degree. Each choice copies a random
+ * endpoint of an earlier edge, and the randomness of edge i depends only on
+ * the seed and i, so all edges are resolved in parallel.</li>
+ * <li>R-MAT: each edge picks its endpoints by descending the adjacency matrix
+ * one quadrant at a time with probabilities a, b, c and 1 - a - b - c, which
+ * gives skewed degrees and community structure.</li>
+ * </ul>
+ *
+ * <p>
+ * Sampling is split into fixed chunks that run on a ForkJoinPool. Each chunk
+ * seeds its own generator from the seed and the chunk's number, so the same
+ * seed gives the same graph whatever the number of threads.
+ *
+ * @author Hammadullah Nasir
+ */
+final class ThreeTenGraphGenerator {
+	/**
+	 * Rough number of edges sampled by one task.
+	 */
+	private static final int CHUNK_EDGES = 1 << 16;
+	/**
+	 * Odd constant used to spread seeds and counters, 2^64 divided by the
+	 * golden ratio.
+	 */
+	private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+	/**
+	 * The pool the sampling tasks run on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a generator that runs on the common ForkJoinPool.
+	 */
+	public ThreeTenGraphGenerator() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a generator that runs on the given pool.
+	 *
+	 * @param pool the pool to sample on
+	 */
+	public ThreeTenGraphGenerator(ForkJoinPool pool) {
+		if (pool == null) {
+			throw new IllegalArgumentException("pool cannot be null");
+		}
+		this.pool = pool;
+	}
+
+	/**
+	 * Makes a directed Erdos-Renyi graph with n vertices, where each ordered
+	 * pair of distinct vertices is an edge with probability p. No self-loops
+	 * or parallel edges are made.
+	 *
+	 * @param n    the number of vertices
+	 * @param p    the edge probability, from 0 to 1
+	 * @param seed the random seed
+	 * @return the edges
+	 */
+	public EdgeList erdosRenyi(int n, double p, long seed) {
+		if (n < 0 || !(p >= 0 && p <= 1)) {
+			throw new IllegalArgumentException("need n >= 0 and 0 <= p <= 1");
+		}
+		if (n < 2 || p == 0) {
+			return new EdgeList(n, new int[0], new int[0], 0);
+		}
+
+		long perRow = n - 1;
+		if (p * n * perRow > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("too many edges expected");
+		}
+		int rowsPerChunk = (int) Math.max(1, Math.min(n, CHUNK_EDGES / (p * perRow)));
+		int chunks = (n + rowsPerChunk - 1) / rowsPerChunk;
+		int[][] chunkSrc = new int[chunks][];
+		int[][] chunkDst = new int[chunks][];
+		int[] chunkCount = new int[chunks];
+		double logQ = Math.log1p(-p);
+
+		forEachChunk(chunks, chunk -> {
+			int lo = chunk * rowsPerChunk;
+			int hi = Math.min(n, lo + rowsPerChunk);
+			long space = (hi - lo) * perRow;
+			int capacity = (int) Math.min(Integer.MAX_VALUE - 8, space * p * 1.1 + 16);
+			int[] src = new int[capacity];
+			int[] dst = new int[capacity];
+			int count = 0;
+			SplittableRandom random = random(seed, chunk);
+
+			// k walks the (row, column) pairs of this chunk, skipping non-edges
+			for (long k = skip(random, logQ); k < space; k += 1 + skip(random, logQ)) {
+				if (count == src.length) {
+					src = Arrays.copyOf(src, count * 2);
+					dst = Arrays.copyOf(dst, count * 2);
+				}
+				int row = lo + (int) (k / perRow);
+				int col = (int) (k % perRow);
+				src[count] = row;
+				dst[count] = col >= row ? col + 1 : col;
+				count += 1;
+			}
+
+			chunkSrc[chunk] = src;
+			chunkDst[chunk] = dst;
+			chunkCount[chunk] = count;
+		});
+
+		return concat(n, chunkSrc, chunkDst, chunkCount);
+	}
+
+	/**
+	 * Makes a directed Barabasi-Albert graph with n vertices. Vertex 1 links
+	 * m times to vertex 0, and every later vertex v makes m edges to earlier
+	 * vertices, each picked with probability proportional to its degree among
+	 * the edges of vertices 1 to v - 1. The same earlier vertex may be picked
+	 * more than once, giving parallel edges; there are no self-loops.
+	 *
+	 * @param n    the number of vertices
+	 * @param m    the number of edges each new vertex makes
+	 * @param seed the random seed
+	 * @return the (n - 1) * m edges
+	 */
+	public EdgeList barabasiAlbert(int n, int m, long seed) {
+		if (n < 0 || m < 1) {
+			throw new IllegalArgumentException("need n >= 0 and m >= 1");
+		}
+		long total = n < 2 ? 0 : (long) (n - 1) * m;
+		if (total > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("too many edges");
+		}
+
+		int count = (int) total;
+		int[] src = new int[count];
+		int[] dst = new int[count];
+		int chunks = (count + CHUNK_EDGES - 1) / CHUNK_EDGES;
+
+		forEachChunk(chunks, chunk -> {
+			int hi = (int) Math.min(count, (long) (chunk + 1) * CHUNK_EDGES);
+			for (int i = chunk * CHUNK_EDGES; i < hi; i++) {
+				src[i] = i / m + 1;
+				dst[i] = attach(i, m, seed);
+			}
+		});
+
+		return new EdgeList(n, src, dst, count);
+	}
+
+	/**
+	 * Makes a directed R-MAT graph with 2^scale vertices and edgeFactor edges
+	 * per vertex. Self-loops and parallel edges are kept.
+	 *
+	 * @param scale      log2 of the number of vertices, from 0 to 30
+	 * @param edgeFactor the average number of edges per vertex
+	 * @param a          probability of the top left quadrant
+	 * @param b          probability of the top right quadrant
+	 * @param c          probability of the bottom left quadrant
+	 * @param seed       the random seed
+	 * @return the edges
+	 */
+	public EdgeList rmat(int scale, int edgeFactor, double a, double b, double c, long seed) {
+		if (scale < 0 || scale > 30 || edgeFactor < 0) {
+			throw new IllegalArgumentException("need 0 <= scale <= 30 and edgeFactor >= 0");
+		}
+		if (!(a >= 0 && b >= 0 && c >= 0 && a + b + c <= 1)) {
+			throw new IllegalArgumentException("a, b and c must be probabilities summing to at most 1");
+		}
+		int n = 1 << scale;
+		long total = (long) edgeFactor << scale;
+		if (total > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("too many edges");
+		}
+
+		int count = (int) total;
+		int[] src = new int[count];
+		int[] dst = new int[count];
+		int chunks = (count + CHUNK_EDGES - 1) / CHUNK_EDGES;
+		double ab = a + b;
+		double abc = a + b + c;
+
+		forEachChunk(chunks, chunk -> {
+			SplittableRandom random = random(seed, chunk);
+			int hi = (int) Math.min(count, (long) (chunk + 1) * CHUNK_EDGES);
+
+			for (int i = chunk * CHUNK_EDGES; i < hi; i++) {
+				int row = 0;
+				int col = 0;
+				for (int bit = scale - 1; bit >= 0; bit--) {
+					double u = random.nextDouble();
+					if (u >= ab) {
+						row |= 1 << bit;
+					}
+					if (u >= a && u < ab || u >= abc) {
+						col |= 1 << bit;
+					}
+				}
+				src[i] = row;
+				dst[i] = col;
+			}
+		});
+
+		return new EdgeList(n, src, dst, count);
+	}
+
+	/**
+	 * Returns the destination of Barabasi-Albert edge i. A random position is
+	 * picked among the endpoints of the edges made before the source vertex
+	 * was added; a source endpoint is used as is, and a destination endpoint
+	 * is resolved the same way in turn. Each step goes to an earlier edge, so
+	 * this ends, and half the steps end right away on average.
+	 *
+	 * @param i    the edge
+	 * @param m    the number of edges per vertex
+	 * @param seed the random seed
+	 * @return the destination vertex
+	 */
+	private static int attach(long i, int m, long seed) {
+		while (true) {
+			long v = i / m + 1;
+			if (v == 1) {
+				return 0;
+			}
+
+			// endpoint 2j is the source of edge j, 2j + 1 its destination
+			long position = Math.floorMod(mix(seed + (i + 1) * GOLDEN), 2 * (v - 1) * m);
+			i = position >> 1;
+			if ((position & 1) == 0) {
+				return (int) (i / m + 1);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of non-edges before the next edge, drawn from the
+	 * geometric distribution with success probability p.
+	 *
+	 * @param random the generator
+	 * @param logQ   log(1 - p)
+	 * @return the gap
+	 */
+	private static long skip(SplittableRandom random, double logQ) {
+		if (logQ == Double.NEGATIVE_INFINITY) {
+			return 0;
+		}
+		double gap = Math.floor(Math.log(1 - random.nextDouble()) / logQ);
+		return gap >= Long.MAX_VALUE / 2 ? Long.MAX_VALUE / 2 : (long) gap;
+	}
+
+	/**
+	 * Returns the generator for one chunk, seeded from the seed and the
+	 * chunk's number only.
+	 *
+	 * @param seed  the random seed
+	 * @param chunk the chunk number
+	 * @return the generator
+	 */
+	private static SplittableRandom random(long seed, int chunk) {
+		return new SplittableRandom(mix(seed + (chunk + 1L) * GOLDEN));
+	}
+
+	/**
+	 * Scrambles the bits of z (the SplitMix64 finalizer).
+	 *
+	 * @param z the value
+	 * @return the scrambled value
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Joins the edges of each chunk, in chunk order.
+	 *
+	 * @param n          the number of vertices
+	 * @param chunkSrc   the source of each chunk's edges
+	 * @param chunkDst   the destination of each chunk's edges
+	 * @param chunkCount the number of edges in each chunk
+	 * @return the edges
+	 */
+	private static EdgeList concat(int n, int[][] chunkSrc, int[][] chunkDst, int[] chunkCount) {
+		long total = 0;
+		for (int count : chunkCount) {
+			total += count;
+		}
+		if (total > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("too many edges");
+		}
+
+		int[] src = new int[(int) total];
+		int[] dst = new int[(int) total];
+		int pos = 0;
+		for (int chunk = 0; chunk < chunkCount.length; chunk++) {
+			System.arraycopy(chunkSrc[chunk], 0, src, pos, chunkCount[chunk]);
+			System.arraycopy(chunkDst[chunk], 0, dst, pos, chunkCount[chunk]);
+			pos += chunkCount[chunk];
+		}
+		return new EdgeList(n, src, dst, pos);
+	}
+
+	/**
+	 * Runs body once per chunk number on the pool, and returns once every
+	 * chunk is done.
+	 *
+	 * @param chunks the number of chunks
+	 * @param body   the work for one chunk
+	 */
+	private void forEachChunk(int chunks, Chunk body) {
+		if (chunks <= 1) {
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				body.run(chunk);
+			}
+			return;
+		}
+
+		ArrayList<RecursiveAction> tasks = new ArrayList<>();
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			final int number = chunk;
+			tasks.add(new RecursiveAction() {
+				protected void compute() {
+					body.run(number);
+				}
+			});
+		}
+
+		pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Work on one chunk.
+	 */
+	private interface Chunk {
+		/**
+		 * Handles the chunk with the given number.
+		 *
+		 * @param chunk the chunk number
+		 */
+		void run(int chunk);
+	}
+
+	/**
+	 * A generated graph: a vertex count and parallel arrays of edge endpoints,
+	 * as vertex numbers from 0 to vertexCount - 1.
+	 */
+	static final class EdgeList {
+		/**
+		 * Number of vertices.
+		 */
+		private final int vertexCount;
+		/**
+		 * Source vertex number of each edge.
+		 */
+		private final int[] src;
+		/**
+		 * Destination vertex number of each edge.
+		 */
+		private final int[] dst;
+		/**
+		 * Number of edges.
+		 */
+		private final int count;
+
+		/**
+		 * Creates an edge list.
+		 *
+		 * @param vertexCount the number of vertices
+		 * @param src         the source of each edge
+		 * @param dst         the destination of each edge
+		 * @param count       the number of edges
+		 */
+		EdgeList(int vertexCount, int[] src, int[] dst, int count) {
+			this.vertexCount = vertexCount;
+			this.src = src;
+			this.dst = dst;
+			this.count = count;
+		}
+
+		/**
+		 * Returns the number of vertices.
+		 *
+		 * @return the vertex count
+		 */
+		public int vertexCount() {
+			return vertexCount;
+		}
+
+		/**
+		 * Returns the number of edges.
+		 *
+		 * @return the edge count
+		 */
+		public int edgeCount() {
+			return count;
+		}
+
+		/**
+		 * Returns the source vertex number of edge i.
+		 *
+		 * @param i the edge, from 0 to edgeCount() - 1
+		 * @return the source
+		 */
+		public int source(int i) {
+			return src[i];
+		}
+
+		/**
+		 * Returns the destination vertex number of edge i.
+		 *
+		 * @param i the edge, from 0 to edgeCount() - 1
+		 * @return the destination
+		 */
+		public int dest(int i) {
+			return dst[i];
+		}
+
+		/**
+		 * Builds a ThreeTenGraph from these edges through the loader's bulk
+		 * path. Vertex number i becomes the i-th vertex the loader's factory
+		 * makes, so isolated vertices are kept.
+		 *
+		 * @param <V>    the vertex type
+		 * @param <E>    the edge type
+		 * @param loader the loader to build with
+		 * @return the new graph and load statistics
+		 */
+		public <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> ThreeTenGraphLoader.Report<V, E> load(
+				ThreeTenGraphLoader<V, E> loader) {
+			return loader.load(new ThreeTenGraph<>(vertexCount, count), vertexCount, src, dst, count);
+		}
+
+		/**
+		 * Returns a short description of the edge list.
+		 *
+		 * @return the vertex and edge counts
+		 */
+		public String toString() {
+			return vertexCount + " vertices, " + count + " edges";
+		}
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * Receives every structural change made to a ThreeTenGraph, after the change
+ * has been applied. Register one with ThreeTenGraph.addListener. Callbacks run
+ * on the thread making the change and must not modify the graph.
+ *
+ * @author Hammadullah Nasir
+ *
+ * @param <V> for generics
+ * @param <E> for generics
+ */
+interface ThreeTenGraphListener<V, E> {
+	/**
+	 * Called after a vertex is added.
+	 *
+	 * @param vertex the new vertex
+	 */
+	void vertexAdded(V vertex);
+
+	/**
+	 * Called after an edge is added.
+	 *
+	 * @param edge   the new edge
+	 * @param source its source vertex
+	 * @param dest   its destination vertex
+	 */
+	void edgeAdded(E edge, V source, V dest);
+
+	/**
+	 * Called after an edge is removed on its own. Edges removed along with a
+	 * vertex are not reported separately.
+	 *
+	 * @param edge the removed edge
+	 */
+	void edgeRemoved(E edge);
+
+	/**
+	 * Called after a vertex and all of its edges are removed.
+	 *
+	 * @param vertex the removed vertex
+	 */
+	void vertexRemoved(V vertex);
+}
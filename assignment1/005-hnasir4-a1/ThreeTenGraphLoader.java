@@ -0,0 +1,535 @@
+import org.apache.commons.collections15.Factory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Streams edge lists into a ThreeTenGraph. Two file formats are read:
+ *
+ * <ul>
+ * <li>text: one "src dst" pair of non-negative vertex numbers per line, with
+ * blank lines and lines starting with '#' ignored, and anything after the
+ * second number on a line skipped;</li>
+ * <li>binary: the int MAGIC, an int version (1), an int bound on the vertex
+ * numbers, a long edge count, then that many (src, dst) int pairs, all big
+ * endian.</li>
+ * </ul>
+ *
+ * <p>
+ * Files are read through a FileChannel into one reusable direct buffer, and
+ * numbers are parsed straight from the bytes with no String per token. Each
+ * vertex number in the file gets one vertex from the vertex factory the first
+ * time it is seen, and each edge gets a new edge from the edge factory. Edges
+ * go in through the graph's unchecked bulk path, so no per-edge vertex lookup
+ * or duplicate check is made.
+ *
+ * @author Hammadullah Nasir
+ *
+ * @param <V> for generics
+ * @param <E> for generics
+ */
+class ThreeTenGraphLoader<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> {
+	/**
+	 * First int of a binary edge-list file ("TTEL").
+	 */
+	public static final int MAGIC = 0x5454454C;
+	/**
+	 * Binary format version written and accepted by this class.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * Size of the read buffer in bytes.
+	 */
+	private static final int BUFFER_SIZE = 1 << 20;
+	/**
+	 * Rough number of bytes per line, used to size the graph for a text file.
+	 */
+	private static final int BYTES_PER_TEXT_EDGE = 12;
+
+	/**
+	 * Creates the vertex for each new vertex number.
+	 */
+	private final Factory<V> vertexFactory;
+	/**
+	 * Creates each edge.
+	 */
+	private final Factory<E> edgeFactory;
+
+	/**
+	 * Graph slot of each vertex number seen so far, or -1.
+	 */
+	private int[] slotOfNumber = new int[0];
+	/**
+	 * Vertex created for each vertex number seen so far, indexed like
+	 * slotOfNumber.
+	 */
+	private Object[] vertexOfNumber = new Object[0];
+
+	/**
+	 * Creates a loader that makes vertices and edges with the given factories.
+	 *
+	 * @param vertexFactory makes one vertex per distinct vertex number
+	 * @param edgeFactory   makes one edge per edge read
+	 */
+	public ThreeTenGraphLoader(Factory<V> vertexFactory, Factory<E> edgeFactory) {
+		if (vertexFactory == null || edgeFactory == null) {
+			throw new IllegalArgumentException("factories cannot be null");
+		}
+		this.vertexFactory = vertexFactory;
+		this.edgeFactory = edgeFactory;
+	}
+
+	/**
+	 * Loads a text edge list into a new graph sized from the file length.
+	 *
+	 * @param file the file to read
+	 * @return the loaded graph and load statistics
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	public Report<V, E> loadText(Path file) throws IOException {
+		long t0 = System.nanoTime();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			int expected = (int) Math.min(Integer.MAX_VALUE - 8, channel.size() / BYTES_PER_TEXT_EDGE);
+			ThreeTenGraph<V, E> graph = new ThreeTenGraph<>(0, expected);
+			return readText(channel, graph, t0);
+		}
+	}
+
+	/**
+	 * Loads a text edge list into an existing graph.
+	 *
+	 * @param file  the file to read
+	 * @param graph the graph to add to
+	 * @return the graph and load statistics
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	public Report<V, E> loadText(Path file, ThreeTenGraph<V, E> graph) throws IOException {
+		long t0 = System.nanoTime();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return readText(channel, graph, t0);
+		}
+	}
+
+	/**
+	 * Loads a binary edge list into a new graph sized from the file header.
+	 *
+	 * @param file the file to read
+	 * @return the loaded graph and load statistics
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	public Report<V, E> loadBinary(Path file) throws IOException {
+		return loadBinary(file, null);
+	}
+
+	/**
+	 * Loads a binary edge list into an existing graph.
+	 *
+	 * @param file  the file to read
+	 * @param graph the graph to add to, or null to create one sized from the
+	 *              file header
+	 * @return the graph and load statistics
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	public Report<V, E> loadBinary(Path file, ThreeTenGraph<V, E> graph) throws IOException {
+		long t0 = System.nanoTime();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			buf.limit(0);
+			fill(channel, buf, 20);
+			if (buf.remaining() < 20 || buf.getInt() != MAGIC) {
+				throw new IOException(file + " is not a binary edge list");
+			}
+			if (buf.getInt() != VERSION) {
+				throw new IOException(file + " has an unsupported edge list version");
+			}
+			int bound = buf.getInt();
+			long count = buf.getLong();
+			if (bound < 0 || count < 0 || count > Integer.MAX_VALUE) {
+				throw new IOException(file + " has a corrupt header");
+			}
+
+			if (graph == null) {
+				graph = new ThreeTenGraph<>(bound, (int) count);
+			}
+			reset(bound);
+
+			for (long i = 0; i < count; i++) {
+				if (buf.remaining() < 8) {
+					fill(channel, buf, 8);
+					if (buf.remaining() < 8) {
+						throw new IOException(file + " ends after " + i + " of " + count + " edges");
+					}
+				}
+				addEdge(graph, buf.getInt(), buf.getInt());
+			}
+
+			return new Report<>(graph, this, count, System.nanoTime() - t0);
+		}
+	}
+
+	/**
+	 * Adds count edges given as parallel arrays of vertex numbers. This is the
+	 * in-memory form of the bulk path, used by graph generators.
+	 *
+	 * @param graph the graph to add to
+	 * @param src   the source vertex number of each edge
+	 * @param dst   the destination vertex number of each edge
+	 * @param count the number of edges to add
+	 * @return the graph and load statistics
+	 */
+	public Report<V, E> load(ThreeTenGraph<V, E> graph, int[] src, int[] dst, int count) {
+		return load(graph, 0, src, dst, count);
+	}
+
+	/**
+	 * Adds count edges given as parallel arrays of vertex numbers, after first
+	 * adding one vertex for each number below vertexCount in order. Numbers
+	 * that no edge uses still get a vertex, so generated graphs keep their
+	 * isolated vertices.
+	 *
+	 * @param graph       the graph to add to
+	 * @param vertexCount the number of vertices to add up front
+	 * @param src         the source vertex number of each edge
+	 * @param dst         the destination vertex number of each edge
+	 * @param count       the number of edges to add
+	 * @return the graph and load statistics
+	 */
+	public Report<V, E> load(ThreeTenGraph<V, E> graph, int vertexCount, int[] src, int[] dst, int count) {
+		long t0 = System.nanoTime();
+		int bound = vertexCount;
+
+		for (int i = 0; i < count; i++) {
+			bound = Math.max(bound, Math.max(src[i], dst[i]) + 1);
+		}
+		reset(bound);
+
+		for (int i = 0; i < vertexCount; i++) {
+			slotOf(graph, i);
+		}
+		for (int i = 0; i < count; i++) {
+			addEdge(graph, src[i], dst[i]);
+		}
+
+		return new Report<>(graph, this, count, System.nanoTime() - t0);
+	}
+
+	/**
+	 * Writes a binary edge list.
+	 *
+	 * @param file  the file to write
+	 * @param src   the source vertex number of each edge
+	 * @param dst   the destination vertex number of each edge
+	 * @param count the number of edges to write
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void writeBinary(Path file, int[] src, int[] dst, int count) throws IOException {
+		int bound = 0;
+		for (int i = 0; i < count; i++) {
+			if (src[i] < 0 || dst[i] < 0) {
+				throw new IllegalArgumentException("vertex numbers must not be negative");
+			}
+			bound = Math.max(bound, Math.max(src[i], dst[i]) + 1);
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+			buf.putInt(MAGIC).putInt(VERSION).putInt(bound).putLong(count);
+			for (int i = 0; i < count; i++) {
+				if (buf.remaining() < 8) {
+					drain(channel, buf);
+				}
+				buf.putInt(src[i]).putInt(dst[i]);
+			}
+			drain(channel, buf);
+		}
+	}
+
+	/**
+	 * Returns the vertex created for a vertex number in the most recent load.
+	 *
+	 * @param number the vertex number from the file
+	 * @return the vertex, or null if the number did not appear
+	 */
+	@SuppressWarnings("unchecked")
+	public V vertex(int number) {
+		if (number < 0 || number >= vertexOfNumber.length) {
+			return null;
+		}
+		return (V) vertexOfNumber[number];
+	}
+
+	/**
+	 * Parses a text edge list byte by byte. Numbers may span buffer refills.
+	 *
+	 * @param channel the channel to read
+	 * @param graph   the graph to add to
+	 * @param t0      when the load started, from System.nanoTime()
+	 * @return the graph and load statistics
+	 * @throws IOException if the file cannot be read or is malformed
+	 */
+	private Report<V, E> readText(FileChannel channel, ThreeTenGraph<V, E> graph, long t0) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		reset(0);
+
+		long edges = 0;
+		long line = 1;
+		int tokens = 0;
+		int first = 0;
+		long value = 0;
+		boolean inNumber = false;
+		boolean inComment = false;
+
+		while (true) {
+			buf.clear();
+			int read = channel.read(buf);
+			buf.flip();
+			// a final pass with an empty buffer acts as a trailing newline
+			int end = read < 0 ? 1 : buf.limit();
+
+			for (int i = 0; i < end; i++) {
+				byte b = read < 0 ? (byte) '\n' : buf.get(i);
+
+				if (inComment && b != '\n') {
+					continue;
+				}
+				if (b >= '0' && b <= '9') {
+					if (tokens < 2) {
+						value = value * 10 + (b - '0');
+						if (value > Integer.MAX_VALUE) {
+							throw new IOException("Vertex number too large on line " + line);
+						}
+						inNumber = true;
+					}
+					continue;
+				}
+
+				if (inNumber) {
+					if (tokens == 0) {
+						first = (int) value;
+					} else {
+						addEdge(graph, first, (int) value);
+						edges += 1;
+					}
+					tokens += 1;
+					value = 0;
+					inNumber = false;
+				}
+
+				if (b == '\n') {
+					if (tokens == 1) {
+						throw new IOException("Missing destination on line " + line);
+					}
+					tokens = 0;
+					inComment = false;
+					line += 1;
+				} else if (b == '#' && tokens == 0) {
+					inComment = true;
+				} else if (b != ' ' && b != '\t' && b != '\r' && tokens < 2) {
+					throw new IOException("Unexpected character '" + (char) b + "' on line " + line);
+				}
+			}
+
+			if (read < 0) {
+				break;
+			}
+		}
+
+		return new Report<>(graph, this, edges, System.nanoTime() - t0);
+	}
+
+	/**
+	 * Adds one edge between the vertices for two vertex numbers, creating
+	 * either vertex if its number is new.
+	 *
+	 * @param graph the graph to add to
+	 * @param src   the source vertex number
+	 * @param dst   the destination vertex number
+	 */
+	private void addEdge(ThreeTenGraph<V, E> graph, int src, int dst) {
+		if (src < 0 || dst < 0) {
+			throw new IllegalArgumentException("vertex numbers must not be negative");
+		}
+		graph.appendEdge(edgeFactory.create(), slotOf(graph, src), slotOf(graph, dst));
+	}
+
+	/**
+	 * Returns the graph slot of the vertex for a vertex number, creating and
+	 * adding the vertex the first time the number is seen.
+	 *
+	 * @param graph  the graph to add to
+	 * @param number the vertex number
+	 * @return the vertex's slot
+	 */
+	private int slotOf(ThreeTenGraph<V, E> graph, int number) {
+		if (number >= slotOfNumber.length) {
+			int size = Math.max(number + 1, slotOfNumber.length * 2);
+			int old = slotOfNumber.length;
+			slotOfNumber = Arrays.copyOf(slotOfNumber, size);
+			vertexOfNumber = Arrays.copyOf(vertexOfNumber, size);
+			Arrays.fill(slotOfNumber, old, size, -1);
+		}
+
+		int slot = slotOfNumber[number];
+		if (slot == -1) {
+			V vertex = vertexFactory.create();
+			if (vertex == null || graph.containsVertex(vertex)) {
+				throw new IllegalStateException("Vertex factory made a null or duplicate vertex");
+			}
+			slot = graph.appendVertex(vertex);
+			slotOfNumber[number] = slot;
+			vertexOfNumber[number] = vertex;
+		}
+		return slot;
+	}
+
+	/**
+	 * Forgets the vertex numbers of the previous load.
+	 *
+	 * @param bound expected bound on the vertex numbers
+	 */
+	private void reset(int bound) {
+		slotOfNumber = new int[bound];
+		vertexOfNumber = new Object[bound];
+		Arrays.fill(slotOfNumber, -1);
+	}
+
+	/**
+	 * Compacts buf and reads until it holds at least need bytes or the channel
+	 * is exhausted. Leaves buf ready for reading.
+	 *
+	 * @param channel the channel to read
+	 * @param buf     the buffer, ready for reading on entry
+	 * @param need    the number of bytes wanted
+	 * @throws IOException if the channel cannot be read
+	 */
+	private static void fill(FileChannel channel, ByteBuffer buf, int need) throws IOException {
+		buf.compact();
+		while (buf.position() < need && channel.read(buf) >= 0) {
+			continue;
+		}
+		buf.flip();
+	}
+
+	/**
+	 * Writes out everything in buf and clears it.
+	 *
+	 * @param channel the channel to write
+	 * @param buf     the buffer, ready for writing into on entry
+	 * @throws IOException if the channel cannot be written
+	 */
+	private static void drain(FileChannel channel, ByteBuffer buf) throws IOException {
+		buf.flip();
+		while (buf.hasRemaining()) {
+			channel.write(buf);
+		}
+		buf.clear();
+	}
+
+	/**
+	 * The outcome of one load: the graph and how fast it was built.
+	 *
+	 * @param <V> for generics
+	 * @param <E> for generics
+	 */
+	static final class Report<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> {
+		/**
+		 * The graph that was loaded into.
+		 */
+		private final ThreeTenGraph<V, E> graph;
+		/**
+		 * The loader, for looking up vertices by number.
+		 */
+		private final ThreeTenGraphLoader<V, E> loader;
+		/**
+		 * Number of edges loaded.
+		 */
+		private final long edges;
+		/**
+		 * Time the load took, in nanoseconds.
+		 */
+		private final long nanos;
+
+		/**
+		 * Creates a report.
+		 *
+		 * @param graph  the graph that was loaded into
+		 * @param loader the loader that ran
+		 * @param edges  the number of edges loaded
+		 * @param nanos  the time the load took in nanoseconds
+		 */
+		Report(ThreeTenGraph<V, E> graph, ThreeTenGraphLoader<V, E> loader, long edges, long nanos) {
+			this.graph = graph;
+			this.loader = loader;
+			this.edges = edges;
+			this.nanos = nanos;
+		}
+
+		/**
+		 * Returns the graph that was loaded into.
+		 *
+		 * @return the graph
+		 */
+		public ThreeTenGraph<V, E> getGraph() {
+			return graph;
+		}
+
+		/**
+		 * Returns the vertex created for a vertex number.
+		 *
+		 * @param number the vertex number from the input
+		 * @return the vertex, or null if the number did not appear
+		 */
+		public V vertex(int number) {
+			return loader.vertex(number);
+		}
+
+		/**
+		 * Returns the number of edges loaded.
+		 *
+		 * @return the edge count
+		 */
+		public long getEdgeCount() {
+			return edges;
+		}
+
+		/**
+		 * Returns how long the load took.
+		 *
+		 * @return the time in nanoseconds
+		 */
+		public long getNanos() {
+			return nanos;
+		}
+
+		/**
+		 * Returns the load throughput.
+		 *
+		 * @return edges loaded per second
+		 */
+		public double edgesPerSecond() {
+			if (nanos == 0) {
+				return 0;
+			}
+			return edges * 1e9 / nanos;
+		}
+
+		/**
+		 * Summarizes the load for logging.
+		 *
+		 * @return a one-line summary
+		 */
+		public String toString() {
+			return String.format("%d edges, %d vertices in %.1f ms (%.0f edges/s)", edges, graph.getVertexCount(),
+					nanos / 1e6, edgesPerSecond());
+		}
+	}
+}
@@ -0,0 +1,325 @@
+import org.apache.commons.collections15.Transformer;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+
+/**
+ * Saves a ThreeTenGraph to a compact binary file and restores it through a
+ * memory-mapped read. The file holds the graph's CSR arrays (see
+ * ThreeTenGraphCsr) as raw int blocks, so restoring copies them out of the
+ * mapping in bulk with no per-edge parsing. Only component text needs
+ * decoding, and components without text cost one int.
+ *
+ * <p>
+ * Layout, all big endian: the int MAGIC, an int VERSION, vertex count n,
+ * edge count m, then the int blocks vertexIds[n], vertexColors[n],
+ * offsets[n + 1], targets[m], edgeIds[m], edgeColors[m], and finally the text
+ * of every vertex (in slot order) and every edge (in targets order), each as
+ * an int byte length (-1 for no text) followed by UTF-8 bytes. Colors are
+ * stored as ARGB ints.
+ *
+ * @author Hammadullah Nasir
+ */
+final class ThreeTenGraphSnapshot {
+	/**
+	 * First int of a snapshot file ("TTGS").
+	 */
+	public static final int MAGIC = 0x54544753;
+	/**
+	 * Snapshot format version written and accepted by this class.
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * Size of the header (magic, version, n, m) in bytes.
+	 */
+	private static final int HEADER_BYTES = 16;
+
+	/**
+	 * Not instantiated; all methods are static.
+	 */
+	private ThreeTenGraphSnapshot() {
+	}
+
+	/**
+	 * Writes graph to file, replacing anything already there.
+	 *
+	 * @param <V>   the vertex type
+	 * @param <E>   the edge type
+	 * @param graph the graph to save
+	 * @param file  the file to write
+	 * @throws IOException if the file cannot be written or would exceed 2 GB
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> void write(
+			ThreeTenGraph<V, E> graph, Path file) throws IOException {
+		ThreeTenGraphCsr csr = graph.toCsr();
+		int n = csr.vertexCount();
+		int m = csr.edgeCount();
+		int[] edgeIds = csr.edgeIds();
+
+		ThreeTenGraphComponent[] vertices = graph.getVertices().toArray(new ThreeTenGraphComponent[n]);
+		ThreeTenGraphComponent[] edges = inTargetsOrder(graph.getEdges(), edgeIds);
+
+		byte[][] texts = new byte[n + m][];
+		long size = HEADER_BYTES + 4L * (3L * n + 1 + 3L * m);
+		for (int i = 0; i < n + m; i++) {
+			String text = (i < n ? vertices[i] : edges[i - n]).getText();
+			texts[i] = text == null ? null : text.getBytes(StandardCharsets.UTF_8);
+			size += 4 + (texts[i] == null ? 0 : texts[i].length);
+		}
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("Graph is too large for a snapshot file");
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+
+			buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(m);
+			IntBuffer ints = buf.asIntBuffer();
+			ints.put(csr.vertexIds());
+			for (ThreeTenGraphComponent vertex : vertices) {
+				ints.put(vertex.getColor().getRGB());
+			}
+			ints.put(csr.offsets());
+			ints.put(csr.targets());
+			ints.put(edgeIds);
+			for (ThreeTenGraphComponent edge : edges) {
+				ints.put(edge.getColor().getRGB());
+			}
+
+			buf.position(buf.position() + 4 * ints.position());
+			for (byte[] text : texts) {
+				if (text == null) {
+					buf.putInt(-1);
+				} else {
+					buf.putInt(text.length);
+					buf.put(text);
+				}
+			}
+			buf.force();
+		}
+	}
+
+	/**
+	 * Restores a graph from file. Components are recreated with their saved
+	 * ids through the given makers, then given their saved text and color.
+	 * For ThreeTenNode and ThreeTenEdge, pass ThreeTenNode::new and
+	 * ThreeTenEdge::new.
+	 *
+	 * @param <V>         the vertex type
+	 * @param <E>         the edge type
+	 * @param file        the file to read
+	 * @param vertexMaker creates a vertex with the given id
+	 * @param edgeMaker   creates an edge with the given id
+	 * @return the restored graph
+	 * @throws IOException if the file cannot be read or is not a snapshot
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> ThreeTenGraph<V, E> read(
+			Path file, Transformer<Integer, V> vertexMaker, Transformer<Integer, E> edgeMaker) throws IOException {
+		Contents c = map(file);
+		int n = c.vertexIds.length;
+		int m = c.targets.length;
+		ThreeTenGraph<V, E> graph = new ThreeTenGraph<>(n, m);
+
+		for (int slot = 0; slot < n; slot++) {
+			V vertex = vertexMaker.transform(c.vertexIds[slot]);
+			vertex.setColor(new Color(c.vertexColors[slot], true));
+			vertex.setText(c.nextText());
+			if (graph.containsVertex(vertex) || graph.appendVertex(vertex) != slot) {
+				throw new IOException(file + " repeats vertex id " + c.vertexIds[slot]);
+			}
+		}
+
+		E[] edges = makeEdges(c, edgeMaker);
+		for (int slot = 0; slot < n; slot++) {
+			for (int pos = c.offsets[slot]; pos < c.offsets[slot + 1]; pos++) {
+				graph.appendEdge(edges[pos], slot, c.targets[pos]);
+			}
+		}
+
+		return graph;
+	}
+
+	/**
+	 * Reads only the adjacency of a snapshot file into a CSR snapshot, without
+	 * creating any component objects or decoding any text.
+	 *
+	 * @param file the file to read
+	 * @return the CSR snapshot
+	 * @throws IOException if the file cannot be read or is not a snapshot
+	 */
+	public static ThreeTenGraphCsr readCsr(Path file) throws IOException {
+		Contents c = map(file);
+		return new ThreeTenGraphCsr(c.vertexIds, c.offsets, c.targets, c.edgeIds);
+	}
+
+	/**
+	 * Creates the edges of a snapshot, in targets order, with their saved text
+	 * and color.
+	 *
+	 * @param <E>       the edge type
+	 * @param c         the mapped snapshot, positioned at the edge texts
+	 * @param edgeMaker creates an edge with the given id
+	 * @return the edges
+	 */
+	@SuppressWarnings("unchecked")
+	private static <E extends ThreeTenGraphComponent> E[] makeEdges(Contents c, Transformer<Integer, E> edgeMaker) {
+		E[] edges = (E[]) new ThreeTenGraphComponent[c.edgeIds.length];
+
+		for (int pos = 0; pos < edges.length; pos++) {
+			edges[pos] = edgeMaker.transform(c.edgeIds[pos]);
+			edges[pos].setColor(new Color(c.edgeColors[pos], true));
+			edges[pos].setText(c.nextText());
+		}
+		return edges;
+	}
+
+	/**
+	 * Orders edges to match a CSR edge id array.
+	 *
+	 * @param edges   the graph's edges
+	 * @param edgeIds the CSR edge ids
+	 * @return the edges, parallel to edgeIds
+	 */
+	private static ThreeTenGraphComponent[] inTargetsOrder(Collection<? extends ThreeTenGraphComponent> edges,
+			int[] edgeIds) {
+		int bound = 0;
+		for (int id : edgeIds) {
+			bound = Math.max(bound, id + 1);
+		}
+
+		ThreeTenGraphComponent[] byId = new ThreeTenGraphComponent[bound];
+		for (ThreeTenGraphComponent edge : edges) {
+			byId[edge.getId()] = edge;
+		}
+
+		ThreeTenGraphComponent[] ordered = new ThreeTenGraphComponent[edgeIds.length];
+		for (int i = 0; i < edgeIds.length; i++) {
+			ordered[i] = byId[edgeIds[i]];
+		}
+		return ordered;
+	}
+
+	/**
+	 * Maps a snapshot file and copies its int blocks out in bulk.
+	 *
+	 * @param file the file to read
+	 * @return the file contents
+	 * @throws IOException if the file cannot be read or is not a snapshot
+	 */
+	private static Contents map(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+				throw new IOException(file + " is not a graph snapshot");
+			}
+
+			MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (buf.getInt() != MAGIC) {
+				throw new IOException(file + " is not a graph snapshot");
+			}
+			if (buf.getInt() != VERSION) {
+				throw new IOException(file + " has an unsupported snapshot version");
+			}
+			int n = buf.getInt();
+			int m = buf.getInt();
+			if (n < 0 || m < 0 || HEADER_BYTES + 4L * (3L * n + 1 + 3L * m) > size) {
+				throw new IOException(file + " is truncated");
+			}
+
+			Contents c = new Contents(n, m);
+			IntBuffer ints = buf.asIntBuffer();
+			ints.get(c.vertexIds);
+			ints.get(c.vertexColors);
+			ints.get(c.offsets);
+			ints.get(c.targets);
+			ints.get(c.edgeIds);
+			ints.get(c.edgeColors);
+			buf.position(buf.position() + 4 * ints.position());
+			c.texts = buf;
+
+			if (c.offsets[0] != 0 || c.offsets[n] != m) {
+				throw new IOException(file + " has corrupt offsets");
+			}
+			for (int target : c.targets) {
+				if (target < 0 || target >= n) {
+					throw new IOException(file + " has corrupt targets");
+				}
+			}
+			return c;
+		}
+	}
+
+	/**
+	 * The decoded blocks of a snapshot file.
+	 */
+	private static final class Contents {
+		/**
+		 * Id of the vertex in each slot.
+		 */
+		private final int[] vertexIds;
+		/**
+		 * ARGB color of the vertex in each slot.
+		 */
+		private final int[] vertexColors;
+		/**
+		 * CSR offsets.
+		 */
+		private final int[] offsets;
+		/**
+		 * CSR targets.
+		 */
+		private final int[] targets;
+		/**
+		 * Id of each edge, parallel to targets.
+		 */
+		private final int[] edgeIds;
+		/**
+		 * ARGB color of each edge, parallel to targets.
+		 */
+		private final int[] edgeColors;
+		/**
+		 * The mapped file, positioned at the next unread text.
+		 */
+		private ByteBuffer texts;
+
+		/**
+		 * Allocates the blocks for n vertices and m edges.
+		 *
+		 * @param n the vertex count
+		 * @param m the edge count
+		 */
+		Contents(int n, int m) {
+			vertexIds = new int[n];
+			vertexColors = new int[n];
+			offsets = new int[n + 1];
+			targets = new int[m];
+			edgeIds = new int[m];
+			edgeColors = new int[m];
+		}
+
+		/**
+		 * Decodes the next component text.
+		 *
+		 * @return the text, or null if the component had none
+		 */
+		String nextText() {
+			int length = texts.getInt();
+			if (length < 0) {
+				return null;
+			}
+
+			byte[] bytes = new byte[length];
+			texts.get(bytes);
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,152 @@
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Thread-safe, lock-free source of component ids. New ids count up from 0;
+ * released ids go onto a lock-free stack and are handed out again before any
+ * new id, so the ids in use stay dense and id-indexed arrays stay small.
+ *
+ * <p>
+ * The set of released ids is tracked next to the stack, and an id is only
+ * handed out by whoever takes it out of that set. That way reserve can claim
+ * a released id directly: its stack entry is left behind and skipped when it
+ * reaches the top. Releasing an id that is already free is rejected.
+ *
+ * <p>
+ * Components are equal when their ids are equal, so an id must only be
+ * released once nothing refers to the component that held it any more.
+ *
+ * @author Hammadullah Nasir
+ */
+final class ThreeTenIdAllocator {
+	/**
+	 * The next never-used id.
+	 */
+	private final AtomicInteger next = new AtomicInteger();
+	/**
+	 * Top of the stack of released ids.
+	 */
+	private final AtomicReference<Released> released = new AtomicReference<>();
+	/**
+	 * The ids that are released and not yet handed out again. The stack may
+	 * also hold entries for ids that reserve has since claimed; those are
+	 * not in this set.
+	 */
+	private final Set<Integer> free = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Returns an unused id, reusing a released one if there is any.
+	 *
+	 * @return the id
+	 * @throws IllegalStateException if every int id has been handed out
+	 */
+	public int allocate() {
+		while (true) {
+			Released top = released.get();
+			if (top == null) {
+				break;
+			}
+			if (released.compareAndSet(top, top.below) && free.remove(top.id)) {
+				return top.id;
+			}
+		}
+
+		int id = next.getAndIncrement();
+		if (id < 0) {
+			next.set(Integer.MIN_VALUE);
+			throw new IllegalStateException("Out of component ids");
+		}
+		return id;
+	}
+
+	/**
+	 * Makes id available to be handed out again.
+	 *
+	 * @param id an id previously returned by allocate() or reserve()
+	 * @throws IllegalArgumentException if id was never handed out or is
+	 *                                  already released
+	 */
+	public void release(int id) {
+		if (id < 0 || id >= next.get()) {
+			throw new IllegalArgumentException("Id " + id + " was not allocated");
+		}
+		if (!free.add(id)) {
+			throw new IllegalArgumentException("Id " + id + " is already released");
+		}
+
+		Released node = new Released(id);
+		do {
+			node.below = released.get();
+		} while (!released.compareAndSet(node.below, node));
+	}
+
+	/**
+	 * Marks every id up to and including id as used, for components created
+	 * with an explicit id (for example when restoring a saved graph). If id is
+	 * currently released, it is taken back so allocate() will not hand it out
+	 * again.
+	 *
+	 * @param id the id to reserve
+	 * @return id, so the call can be passed straight to a constructor
+	 */
+	public int reserve(int id) {
+		if (id < 0) {
+			throw new IllegalArgumentException("Id cannot be negative");
+		}
+
+		int current;
+		do {
+			current = next.get();
+			if (current > id) {
+				free.remove(id);
+				return id;
+			}
+		} while (!next.compareAndSet(current, id + 1));
+		return id;
+	}
+
+	/**
+	 * Returns one more than the largest id handed out so far. Arrays of this
+	 * length can be indexed by every allocated id.
+	 *
+	 * @return the id bound
+	 */
+	public int bound() {
+		return next.get();
+	}
+
+	/**
+	 * Forgets every id handed out, so allocation starts again from 0. Only safe
+	 * when no component with an allocated id is still in use.
+	 */
+	public void reset() {
+		released.set(null);
+		free.clear();
+		next.set(0);
+	}
+
+	/**
+	 * Entry in the stack of released ids.
+	 */
+	private static final class Released {
+		/**
+		 * The released id.
+		 */
+		private final int id;
+		/**
+		 * The entry below this one.
+		 */
+		private Released below;
+
+		/**
+		 * Creates an entry for id.
+		 *
+		 * @param id the released id
+		 */
+		Released(int id) {
+			this.id = id;
+		}
+	}
+}
@@ -0,0 +1,193 @@
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Indexed d-ary min-heap of int keys in the range 0 to capacity - 1, ordered
+ * by a double priority. Keeps the heap position of every key so priorities
+ * can be lowered in place (decrease-key) in O(log_d n).
+ *
+ * @author Hammadullah Nasir
+ */
+final class ThreeTenIndexedHeap {
+	/**
+	 * Number of children per heap node.
+	 */
+	private final int arity;
+	/**
+	 * Keys in heap order.
+	 */
+	private final int[] heap;
+	/**
+	 * Heap position of each key, or -1 if the key is not in the heap.
+	 */
+	private final int[] position;
+	/**
+	 * Current priority of each key.
+	 */
+	private final double[] priority;
+	/**
+	 * Number of keys in the heap.
+	 */
+	private int size = 0;
+
+	/**
+	 * Creates an empty heap for keys 0 to capacity - 1.
+	 *
+	 * @param capacity one more than the largest key
+	 * @param arity    number of children per node, at least 2
+	 */
+	ThreeTenIndexedHeap(int capacity, int arity) {
+		if (arity < 2) {
+			throw new IllegalArgumentException("arity must be at least 2");
+		}
+		this.arity = arity;
+		heap = new int[capacity];
+		position = new int[capacity];
+		priority = new double[capacity];
+		Arrays.fill(position, -1);
+	}
+
+	/**
+	 * Returns whether the heap is empty.
+	 *
+	 * @return true if there are no keys in the heap
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns whether key is in the heap.
+	 *
+	 * @param key the key to check
+	 * @return true if key is in the heap
+	 */
+	public boolean contains(int key) {
+		return position[key] != -1;
+	}
+
+	/**
+	 * Returns the smallest priority in the heap.
+	 *
+	 * @return the minimum priority
+	 * @throws NoSuchElementException if the heap is empty
+	 */
+	public double minPriority() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		return priority[heap[0]];
+	}
+
+	/**
+	 * Inserts key with priority p, or lowers its priority to p if it is already
+	 * in the heap with a larger one.
+	 *
+	 * @param key the key
+	 * @param p   the priority
+	 * @return true if the heap changed
+	 */
+	public boolean offer(int key, double p) {
+		int pos = position[key];
+
+		if (pos == -1) {
+			pos = size++;
+			heap[pos] = key;
+			position[key] = pos;
+		} else if (p >= priority[key]) {
+			return false;
+		}
+
+		priority[key] = p;
+		siftUp(pos);
+		return true;
+	}
+
+	/**
+	 * Removes and returns the key with the smallest priority.
+	 *
+	 * @return the minimum key
+	 * @throws NoSuchElementException if the heap is empty
+	 */
+	public int poll() {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+
+		int min = heap[0];
+		position[min] = -1;
+		size -= 1;
+		if (size > 0) {
+			heap[0] = heap[size];
+			position[heap[0]] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	/**
+	 * Empties the heap in O(size).
+	 */
+	public void clear() {
+		for (int i = 0; i < size; i++) {
+			position[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Moves the key at pos up until its parent is no larger.
+	 *
+	 * @param pos the heap position to sift
+	 */
+	private void siftUp(int pos) {
+		int key = heap[pos];
+		double p = priority[key];
+
+		while (pos > 0) {
+			int parent = (pos - 1) / arity;
+			if (priority[heap[parent]] <= p) {
+				break;
+			}
+			heap[pos] = heap[parent];
+			position[heap[pos]] = pos;
+			pos = parent;
+		}
+		heap[pos] = key;
+		position[key] = pos;
+	}
+
+	/**
+	 * Moves the key at pos down until no child is smaller.
+	 *
+	 * @param pos the heap position to sift
+	 */
+	private void siftDown(int pos) {
+		int key = heap[pos];
+		double p = priority[key];
+
+		while (true) {
+			int first = pos * arity + 1;
+			if (first >= size) {
+				break;
+			}
+
+			int best = first;
+			int last = Math.min(first + arity, size);
+			for (int c = first + 1; c < last; c++) {
+				if (priority[heap[c]] < priority[heap[best]]) {
+					best = c;
+				}
+			}
+			if (priority[heap[best]] >= p) {
+				break;
+			}
+
+			heap[pos] = heap[best];
+			position[heap[pos]] = pos;
+			pos = best;
+		}
+		heap[pos] = key;
+		position[key] = pos;
+	}
+}
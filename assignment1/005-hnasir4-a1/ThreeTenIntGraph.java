@@ -0,0 +1,1216 @@
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.DirectedGraph;
+
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.graph.util.EdgeType;
+
+import org.apache.commons.collections15.Factory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Directed graph with the same behavior as ThreeTenGraph, stored by component
+ * id instead of by object. Every vertex and edge is looked up through its
+ * getId(), and all adjacency lives in int arrays indexed by those ids:
+ *
+ * <ul>
+ * <li>each vertex keeps growable int arrays of its outgoing and incoming edge
+ * ids;</li>
+ * <li>each edge keeps its source and destination vertex ids and its position
+ * in both of those arrays, so it can be removed in constant time by moving
+ * the last entry into its place;</li>
+ * <li>the component objects themselves are kept in id-indexed arrays and
+ * only touched when a query has to return them.</li>
+ * </ul>
+ *
+ * <p>
+ * An edge costs about ten ints, against four linked list nodes, a map entry
+ * and a Pair in ThreeTenGraph. Arrays grow to the largest id seen, so ids
+ * should be dense, as ThreeTenIdAllocator keeps them. Adjacency order is not
+ * insertion order once edges have been removed.
+ *
+ * <p>
+ * Like ThreeTenGraph, the graph is not thread-safe, but queries never write
+ * to it: the distinct counts mark vertex ids in a scratch array owned by the
+ * calling thread, so any number of threads may query at once as long as
+ * nothing is modifying the graph.
+ *
+ * @author Hammadullah Nasir
+ *
+ * @param <V> for generics
+ * @param <E> for generics
+ */
+class ThreeTenIntGraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent>
+		implements Graph<V, E>, DirectedGraph<V, E> {
+	/**
+	 * Initial length of each adjacency array.
+	 */
+	private static final int MIN_ADJACENCY = 4;
+	/**
+	 * Empty adjacency array shared by vertices with no edges.
+	 */
+	private static final int[] NO_EDGES = new int[0];
+
+	/**
+	 * Vertex with each id, or null.
+	 */
+	private Object[] vertexById;
+	/**
+	 * Outgoing edge ids of each vertex id; the first outSize entries are used.
+	 */
+	private int[][] out;
+	/**
+	 * Number of outgoing edges of each vertex id.
+	 */
+	private int[] outSize;
+	/**
+	 * Incoming edge ids of each vertex id; the first inSize entries are used.
+	 */
+	private int[][] in;
+	/**
+	 * Number of incoming edges of each vertex id.
+	 */
+	private int[] inSize;
+	/**
+	 * Number of self-loops on each vertex id.
+	 */
+	private int[] selfLoops;
+	/**
+	 * Position of each vertex id in vertexList.
+	 */
+	private int[] vertexPos;
+	/**
+	 * Ids of the vertices in the graph; the first numVertices entries are used.
+	 */
+	private int[] vertexList;
+	/**
+	 * Number of vertices in the graph.
+	 */
+	private int numVertices = 0;
+
+	/**
+	 * Edge with each id, or null.
+	 */
+	private Object[] edgeById;
+	/**
+	 * Source vertex id of each edge id.
+	 */
+	private int[] source;
+	/**
+	 * Destination vertex id of each edge id.
+	 */
+	private int[] dest;
+	/**
+	 * Position of each edge id in its source's outgoing array.
+	 */
+	private int[] outPos;
+	/**
+	 * Position of each edge id in its destination's incoming array.
+	 */
+	private int[] inPos;
+	/**
+	 * Position of each edge id in edgeList.
+	 */
+	private int[] edgePos;
+	/**
+	 * Ids of the edges in the graph; the first numEdges entries are used.
+	 */
+	private int[] edgeList;
+	/**
+	 * Number of edges in the graph.
+	 */
+	private int numEdges = 0;
+
+	/**
+	 * Visit stamps of each querying thread, for counting distinct neighbors
+	 * without building a set.
+	 */
+	private final ThreadLocal<Marks> marks = ThreadLocal.withInitial(Marks::new);
+
+	/**
+	 * Creates an empty graph.
+	 */
+	public ThreeTenIntGraph() {
+		this(0, 0);
+	}
+
+	/**
+	 * Creates an empty graph with room for vertex ids below vertexIdBound and
+	 * edge ids below edgeIdBound.
+	 *
+	 * @param vertexIdBound the expected vertex id bound
+	 * @param edgeIdBound   the expected edge id bound
+	 */
+	public ThreeTenIntGraph(int vertexIdBound, int edgeIdBound) {
+		int n = Math.max(vertexIdBound, MIN_ADJACENCY);
+		int m = Math.max(edgeIdBound, MIN_ADJACENCY);
+
+		vertexById = new Object[n];
+		out = new int[n][];
+		outSize = new int[n];
+		in = new int[n][];
+		inSize = new int[n];
+		selfLoops = new int[n];
+		vertexPos = new int[n];
+		vertexList = new int[n];
+
+		edgeById = new Object[m];
+		source = new int[m];
+		dest = new int[m];
+		outPos = new int[m];
+		inPos = new int[m];
+		edgePos = new int[m];
+		edgeList = new int[m];
+	}
+
+	/**
+	 * Returns a view of all edges in this graph.
+	 *
+	 * @return a Collection of all edges in this graph
+	 */
+	public Collection<E> getEdges() {
+		ArrayList<E> temp = new ArrayList<>(numEdges);
+		for (int i = 0; i < numEdges; i++) {
+			temp.add(edge(edgeList[i]));
+		}
+		return temp;
+	}
+
+	/**
+	 * Returns a view of all vertices in this graph.
+	 *
+	 * @return a Collection of all vertices in this graph
+	 */
+	public Collection<V> getVertices() {
+		ArrayList<V> temp = new ArrayList<>(numVertices);
+		for (int i = 0; i < numVertices; i++) {
+			temp.add(vertex(vertexList[i]));
+		}
+		return temp;
+	}
+
+	/**
+	 * Returns the number of edges in this graph.
+	 *
+	 * @return the number of edges in this graph
+	 */
+	public int getEdgeCount() {
+		return numEdges;
+	}
+
+	/**
+	 * Returns the number of vertices in this graph.
+	 *
+	 * @return the number of vertices in this graph
+	 */
+	public int getVertexCount() {
+		return numVertices;
+	}
+
+	/**
+	 * Returns the incoming edges of vertex.
+	 *
+	 * @param vertex the vertex whose incoming edges are to be returned
+	 * @return the incoming edges, empty if vertex is not in this graph
+	 */
+	public Collection<E> getInEdges(V vertex) {
+		ArrayList<E> temp = new ArrayList<>();
+		forEachInEdge(vertex, temp::add);
+		return temp;
+	}
+
+	/**
+	 * Returns the outgoing edges of vertex.
+	 *
+	 * @param vertex the vertex whose outgoing edges are to be returned
+	 * @return the outgoing edges, empty if vertex is not in this graph
+	 */
+	public Collection<E> getOutEdges(V vertex) {
+		ArrayList<E> temp = new ArrayList<>();
+		forEachOutEdge(vertex, temp::add);
+		return temp;
+	}
+
+	/**
+	 * Returns the distinct sources of the incoming edges of vertex.
+	 *
+	 * @param vertex the vertex whose predecessors are to be returned
+	 * @return the predecessors, empty if vertex is not in this graph
+	 */
+	public Collection<V> getPredecessors(V vertex) {
+		ArrayList<V> temp = new ArrayList<>();
+		int v = idOf(vertex);
+
+		if (v != -1) {
+			Marks m = nextMarks();
+			for (int i = 0; i < inSize[v]; i++) {
+				int u = source[in[v][i]];
+				if (m.visit(u)) {
+					temp.add(vertex(u));
+				}
+			}
+		}
+		return temp;
+	}
+
+	/**
+	 * Returns the destination of each outgoing edge of vertex. As in
+	 * ThreeTenGraph, a successor reached by parallel edges is listed once per
+	 * edge.
+	 *
+	 * @param vertex the vertex whose successors are to be returned
+	 * @return the successors, empty if vertex is not in this graph
+	 */
+	public Collection<V> getSuccessors(V vertex) {
+		ArrayList<V> temp = new ArrayList<>();
+		forEachSuccessor(vertex, temp::add);
+		return temp;
+	}
+
+	/**
+	 * Passes each outgoing edge of vertex to action. The graph must not be
+	 * modified while the walk is running.
+	 *
+	 * @param vertex the vertex whose outgoing edges are visited
+	 * @param action called once per outgoing edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachOutEdge(V vertex, Consumer<? super E> action) {
+		int v = idOf(vertex);
+
+		if (v == -1) {
+			return false;
+		}
+		for (int i = 0; i < outSize[v]; i++) {
+			action.accept(edge(out[v][i]));
+		}
+		return true;
+	}
+
+	/**
+	 * Passes each incoming edge of vertex to action. The graph must not be
+	 * modified while the walk is running.
+	 *
+	 * @param vertex the vertex whose incoming edges are visited
+	 * @param action called once per incoming edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachInEdge(V vertex, Consumer<? super E> action) {
+		int v = idOf(vertex);
+
+		if (v == -1) {
+			return false;
+		}
+		for (int i = 0; i < inSize[v]; i++) {
+			action.accept(edge(in[v][i]));
+		}
+		return true;
+	}
+
+	/**
+	 * Passes the destination of each outgoing edge of vertex to action, once
+	 * per edge. The graph must not be modified while the walk is running.
+	 *
+	 * @param vertex the vertex whose successors are visited
+	 * @param action called once per outgoing edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachSuccessor(V vertex, Consumer<? super V> action) {
+		int v = idOf(vertex);
+
+		if (v == -1) {
+			return false;
+		}
+		for (int i = 0; i < outSize[v]; i++) {
+			action.accept(vertex(dest[out[v][i]]));
+		}
+		return true;
+	}
+
+	/**
+	 * Passes the source of each incoming edge of vertex to action, once per
+	 * edge. The graph must not be modified while the walk is running.
+	 *
+	 * @param vertex the vertex whose predecessors are visited
+	 * @param action called once per incoming edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachPredecessor(V vertex, Consumer<? super V> action) {
+		int v = idOf(vertex);
+
+		if (v == -1) {
+			return false;
+		}
+		for (int i = 0; i < inSize[v]; i++) {
+			action.accept(vertex(source[in[v][i]]));
+		}
+		return true;
+	}
+
+	/**
+	 * Passes each edge incident to vertex to action, counting self-loops once.
+	 * The graph must not be modified while the walk is running.
+	 *
+	 * @param vertex the vertex whose incident edges are visited
+	 * @param action called once per incident edge
+	 * @return true if vertex is in this graph, false otherwise
+	 */
+	public boolean forEachIncidentEdge(V vertex, Consumer<? super E> action) {
+		int v = idOf(vertex);
+
+		if (v == -1) {
+			return false;
+		}
+		for (int i = 0; i < outSize[v]; i++) {
+			action.accept(edge(out[v][i]));
+		}
+		for (int i = 0; i < inSize[v]; i++) {
+			int e = in[v][i];
+			if (source[e] != v) {
+				action.accept(edge(e));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the source of directedEdge.
+	 *
+	 * @param directedEdge used to get source of
+	 * @return the source, or null if the edge is not in this graph
+	 */
+	public V getSource(E directedEdge) {
+		int e = edgeIdOf(directedEdge);
+		return e == -1 ? null : vertex(source[e]);
+	}
+
+	/**
+	 * Returns the destination of directedEdge.
+	 *
+	 * @param directedEdge used to get destination of
+	 * @return the destination, or null if the edge is not in this graph
+	 */
+	public V getDest(E directedEdge) {
+		int e = edgeIdOf(directedEdge);
+		return e == -1 ? null : vertex(dest[e]);
+	}
+
+	/**
+	 * Returns the endpoints of edge as a Pair.
+	 *
+	 * @param edge the edge whose endpoints are to be returned
+	 * @return the (source, destination) pair, or null if edge is not present
+	 */
+	public Pair<V> getEndpoints(E edge) {
+		int e = edgeIdOf(edge);
+		return e == -1 ? null : new Pair<>(vertex(source[e]), vertex(dest[e]));
+	}
+
+	/**
+	 * Returns the distinct vertices that share an edge with vertex, including
+	 * vertex itself if it has a self-loop.
+	 *
+	 * @param vertex the vertex whose neighbors are to be returned
+	 * @return the neighbors, or null if vertex is not present
+	 */
+	public Collection<V> getNeighbors(V vertex) {
+		int v = idOf(vertex);
+
+		if (v == -1) {
+			return null;
+		}
+
+		ArrayList<V> temp = new ArrayList<>();
+		Marks m = nextMarks();
+		for (int i = 0; i < outSize[v]; i++) {
+			int w = dest[out[v][i]];
+			if (m.visit(w)) {
+				temp.add(vertex(w));
+			}
+		}
+		for (int i = 0; i < inSize[v]; i++) {
+			int w = source[in[v][i]];
+			if (m.visit(w)) {
+				temp.add(vertex(w));
+			}
+		}
+		return temp;
+	}
+
+	/**
+	 * Returns the edges incident to vertex.
+	 *
+	 * @param vertex the vertex whose incident edges are to be returned
+	 * @return the incident edges, or null if vertex is not present
+	 */
+	public Collection<E> getIncidentEdges(V vertex) {
+		ArrayList<E> temp = new ArrayList<>();
+
+		if (!forEachIncidentEdge(vertex, temp::add)) {
+			return null;
+		}
+		return temp;
+	}
+
+	/**
+	 * Returns the two endpoints of edge.
+	 *
+	 * @param edge the edge whose incident vertices are to be returned
+	 * @return the source and destination, or null if edge is not present
+	 */
+	public Collection<V> getIncidentVertices(E edge) {
+		int e = edgeIdOf(edge);
+
+		if (e == -1) {
+			return null;
+		}
+
+		ArrayList<V> temp = new ArrayList<>(2);
+		temp.add(vertex(source[e]));
+		temp.add(vertex(dest[e]));
+		return temp;
+	}
+
+	/**
+	 * Finds an edge from v1 to v2, scanning whichever of v1's outgoing and
+	 * v2's incoming arrays is shorter.
+	 *
+	 * @param v1 the source
+	 * @param v2 the destination
+	 * @return an edge from v1 to v2, or null if there is none or either vertex
+	 *         is not present
+	 */
+	public E findEdge(V v1, V v2) {
+		int e = findEdgeId(idOf(v1), idOf(v2));
+		return e == -1 ? null : edge(e);
+	}
+
+	/**
+	 * Returns every edge from v1 to v2.
+	 *
+	 * @param v1 the source
+	 * @param v2 the destination
+	 * @return the edges from v1 to v2, or null if there are none
+	 */
+	public Collection<E> findEdgeSet(V v1, V v2) {
+		int u = idOf(v1);
+		int v = idOf(v2);
+
+		if (findEdgeId(u, v) == -1) {
+			return null;
+		}
+
+		ArrayList<E> ret = new ArrayList<>();
+		for (int i = 0; i < outSize[u]; i++) {
+			if (dest[out[u][i]] == v) {
+				ret.add(edge(out[u][i]));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Adds edge e from v1 to v2.
+	 *
+	 * @param e  the edge to be added
+	 * @param v1 the source
+	 * @param v2 the destination
+	 * @return true if the add is successful, false if e is null or already in
+	 *         this graph
+	 * @throws IllegalArgumentException if v1 or v2 is not in this graph, or e
+	 *                                  has a negative id
+	 */
+	public boolean addEdge(E e, V v1, V v2) {
+		int u = idOf(v1);
+		int v = idOf(v2);
+
+		if (e == null || edgeIdOf(e) != -1) {
+			return false;
+		}
+		if (u == -1 || v == -1) {
+			throw new IllegalArgumentException("Not in list");
+		}
+
+		int id = checkId(e);
+		growEdges(id);
+		edgeById[id] = e;
+		source[id] = u;
+		dest[id] = v;
+
+		out[u] = push(out[u], outSize[u], id);
+		outPos[id] = outSize[u]++;
+		in[v] = push(in[v], inSize[v], id);
+		inPos[id] = inSize[v]++;
+		if (u == v) {
+			selfLoops[u] += 1;
+		}
+
+		edgePos[id] = numEdges;
+		edgeList[numEdges++] = id;
+		return true;
+	}
+
+	/**
+	 * Adds vertex to this graph.
+	 *
+	 * @param vertex the vertex to add
+	 * @return true if the add is successful, false if vertex is null or already
+	 *         in this graph
+	 * @throws IllegalArgumentException if vertex has a negative id
+	 */
+	public boolean addVertex(V vertex) {
+		if (vertex == null || idOf(vertex) != -1) {
+			return false;
+		}
+
+		int id = checkId(vertex);
+		growVertices(id);
+		vertexById[id] = vertex;
+		out[id] = NO_EDGES;
+		in[id] = NO_EDGES;
+		outSize[id] = 0;
+		inSize[id] = 0;
+		selfLoops[id] = 0;
+
+		vertexPos[id] = numVertices;
+		vertexList[numVertices++] = id;
+		return true;
+	}
+
+	/**
+	 * Removes edge from this graph in constant time.
+	 *
+	 * @param edge the edge to remove
+	 * @return true if the removal is successful, false otherwise
+	 */
+	public boolean removeEdge(E edge) {
+		int e = edgeIdOf(edge);
+
+		if (e == -1) {
+			return false;
+		}
+		removeEdgeId(e);
+		return true;
+	}
+
+	/**
+	 * Removes vertex and every edge incident to it, in time proportional to
+	 * its degree.
+	 *
+	 * @param vertex the vertex to remove
+	 * @return true if the removal is successful, false otherwise
+	 */
+	public boolean removeVertex(V vertex) {
+		int v = idOf(vertex);
+
+		if (v == -1) {
+			return false;
+		}
+
+		while (outSize[v] > 0) {
+			removeEdgeId(out[v][outSize[v] - 1]);
+		}
+		while (inSize[v] > 0) {
+			removeEdgeId(in[v][inSize[v] - 1]);
+		}
+
+		int pos = vertexPos[v];
+		int moved = vertexList[--numVertices];
+		vertexList[pos] = moved;
+		vertexPos[moved] = pos;
+
+		vertexById[v] = null;
+		out[v] = null;
+		in[v] = null;
+		return true;
+	}
+
+	/**
+	 * Returns true if vertex is in this graph.
+	 *
+	 * @param vertex the vertex whose presence is being queried
+	 * @return true iff this graph contains vertex
+	 */
+	public boolean containsVertex(V vertex) {
+		return idOf(vertex) != -1;
+	}
+
+	/**
+	 * Returns true if edge is in this graph.
+	 *
+	 * @param edge the edge whose presence is being queried
+	 * @return true iff this graph contains edge
+	 */
+	public boolean containsEdge(E edge) {
+		return edgeIdOf(edge) != -1;
+	}
+
+	/**
+	 * Returns true if vertex and edge are incident to each other.
+	 *
+	 * @param vertex the vertex to test
+	 * @param edge   the edge to test
+	 * @return true if vertex and edge are incident, false otherwise
+	 */
+	public boolean isIncident(V vertex, E edge) {
+		int v = idOf(vertex);
+		int e = edgeIdOf(edge);
+		return v != -1 && e != -1 && (source[e] == v || dest[e] == v);
+	}
+
+	/**
+	 * Returns true if v1 and v2 share an incident edge.
+	 *
+	 * @param v1 the first vertex to test
+	 * @param v2 the second vertex to test
+	 * @return true if v1 and v2 share an incident edge
+	 */
+	public boolean isNeighbor(V v1, V v2) {
+		int u = idOf(v1);
+		int v = idOf(v2);
+		return findEdgeId(u, v) != -1 || findEdgeId(v, u) != -1;
+	}
+
+	/**
+	 * Returns true if v2 is a predecessor of v1, as in ThreeTenGraph
+	 * (getPredecessors(v1).contains(v2)).
+	 *
+	 * @param v1 the first vertex to be queried
+	 * @param v2 the second vertex to be queried
+	 * @return true if there is an edge from v2 to v1
+	 */
+	public boolean isPredecessor(V v1, V v2) {
+		return findEdgeId(idOf(v2), idOf(v1)) != -1;
+	}
+
+	/**
+	 * Returns true if v2 is a successor of v1, as in ThreeTenGraph
+	 * (getSuccessors(v1).contains(v2)).
+	 *
+	 * @param v1 the first vertex to be queried
+	 * @param v2 the second vertex to be queried
+	 * @return true if there is an edge from v1 to v2
+	 */
+	public boolean isSuccessor(V v1, V v2) {
+		return findEdgeId(idOf(v1), idOf(v2)) != -1;
+	}
+
+	/**
+	 * Returns the number of edges incident to vertex, counting self-loops once.
+	 *
+	 * @param vertex the vertex whose degree is to be returned
+	 * @return the degree, or 0 if vertex is not in this graph
+	 */
+	public int degree(V vertex) {
+		int v = idOf(vertex);
+		return v == -1 ? 0 : outSize[v] + inSize[v] - selfLoops[v];
+	}
+
+	/**
+	 * Returns the number of distinct neighbors of vertex.
+	 *
+	 * @param vertex the vertex whose neighbor count is to be returned
+	 * @return the neighbor count, or 0 if vertex is not in this graph
+	 */
+	public int getNeighborCount(V vertex) {
+		int v = idOf(vertex);
+		int count = 0;
+
+		if (v != -1) {
+			Marks m = nextMarks();
+			for (int i = 0; i < outSize[v]; i++) {
+				if (m.visit(dest[out[v][i]])) {
+					count += 1;
+				}
+			}
+			for (int i = 0; i < inSize[v]; i++) {
+				if (m.visit(source[in[v][i]])) {
+					count += 1;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of incoming edges of vertex.
+	 *
+	 * @param vertex the vertex whose indegree is to be calculated
+	 * @return the in-degree, or 0 if vertex is not in this graph
+	 */
+	public int inDegree(V vertex) {
+		int v = idOf(vertex);
+		return v == -1 ? 0 : inSize[v];
+	}
+
+	/**
+	 * Returns the number of outgoing edges of vertex.
+	 *
+	 * @param vertex the vertex whose outdegree is to be calculated
+	 * @return the out-degree, or 0 if vertex is not in this graph
+	 */
+	public int outDegree(V vertex) {
+		int v = idOf(vertex);
+		return v == -1 ? 0 : outSize[v];
+	}
+
+	/**
+	 * Returns the number of distinct predecessors of vertex.
+	 *
+	 * @param vertex the vertex whose predecessor count is to be returned
+	 * @return the predecessor count, or 0 if vertex is not in this graph
+	 */
+	public int getPredecessorCount(V vertex) {
+		int v = idOf(vertex);
+		int count = 0;
+
+		if (v != -1) {
+			Marks m = nextMarks();
+			for (int i = 0; i < inSize[v]; i++) {
+				if (m.visit(source[in[v][i]])) {
+					count += 1;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of outgoing edges of vertex, the size of
+	 * getSuccessors(vertex).
+	 *
+	 * @param vertex the vertex whose successor count is to be returned
+	 * @return the successor count, or 0 if vertex is not in this graph
+	 */
+	public int getSuccessorCount(V vertex) {
+		return outDegree(vertex);
+	}
+
+	/**
+	 * Returns the vertex at the other end of edge from vertex.
+	 *
+	 * @param vertex the vertex to be queried
+	 * @param edge   the edge to be queried
+	 * @return the other endpoint, or null if edge is not in this graph
+	 */
+	public V getOpposite(V vertex, E edge) {
+		int e = edgeIdOf(edge);
+
+		if (e == -1) {
+			return null;
+		}
+		return vertex(source[e] == idOf(vertex) ? dest[e] : source[e]);
+	}
+
+	/**
+	 * Returns true if vertex is the source of edge.
+	 *
+	 * @param vertex the vertex to be queried
+	 * @param edge   the edge to be queried
+	 * @return true iff vertex is the source of edge
+	 */
+	public boolean isSource(V vertex, E edge) {
+		int e = edgeIdOf(edge);
+		return e != -1 && source[e] == idOf(vertex);
+	}
+
+	/**
+	 * Returns true if vertex is the destination of edge.
+	 *
+	 * @param vertex the vertex to be queried
+	 * @param edge   the edge to be queried
+	 * @return true iff vertex is the destination of edge
+	 */
+	public boolean isDest(V vertex, E edge) {
+		int e = edgeIdOf(edge);
+		return e != -1 && dest[e] == idOf(vertex);
+	}
+
+	/**
+	 * Adds edge e from v1 to v2. Only directed edges are allowed.
+	 *
+	 * @param e        the edge to be added
+	 * @param v1       the source
+	 * @param v2       the destination
+	 * @param edgeType the type to be assigned to the edge
+	 * @return true if the add is successful, false otherwise
+	 * @throws IllegalArgumentException if edgeType is UNDIRECTED
+	 */
+	public boolean addEdge(E e, V v1, V v2, EdgeType edgeType) {
+		if (edgeType == EdgeType.UNDIRECTED) {
+			throw new IllegalArgumentException();
+		}
+		return addEdge(e, v1, v2);
+	}
+
+	/**
+	 * Adds edge between the two vertices in vertices, first to second.
+	 *
+	 * @param edge     to add
+	 * @param vertices the source and destination
+	 * @return true if the add is successful, and false otherwise
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean addEdge(E edge, Collection<? extends V> vertices) {
+		if (edge == null || vertices == null || vertices.size() != 2) {
+			return false;
+		}
+
+		V[] vs = (V[]) vertices.toArray();
+		return addEdge(edge, vs[0], vs[1]);
+	}
+
+	/**
+	 * Adds edge between the two vertices in vertices, first to second, with
+	 * type edgeType.
+	 *
+	 * @param edge     to add
+	 * @param vertices the source and destination
+	 * @param edgeType to use
+	 * @return true if the add is successful, and false otherwise
+	 */
+	@SuppressWarnings("unchecked")
+	public boolean addEdge(E edge, Collection<? extends V> vertices, EdgeType edgeType) {
+		if (edge == null || vertices == null || vertices.size() != 2) {
+			return false;
+		}
+
+		V[] vs = (V[]) vertices.toArray();
+		return addEdge(edge, vs[0], vs[1], edgeType);
+	}
+
+	/**
+	 * Returns the number of edges of type edgeType in this graph.
+	 *
+	 * @param edgeType the type of edge for which the count is to be returned
+	 * @return the edge count for DIRECTED, 0 otherwise
+	 */
+	public int getEdgeCount(EdgeType edgeType) {
+		return edgeType == EdgeType.DIRECTED ? numEdges : 0;
+	}
+
+	/**
+	 * Returns the edges of type edgeType in this graph.
+	 *
+	 * @param edgeType the type of edges to be returned
+	 * @return every edge for DIRECTED, null otherwise
+	 */
+	public Collection<E> getEdges(EdgeType edgeType) {
+		return edgeType == EdgeType.DIRECTED ? getEdges() : null;
+	}
+
+	/**
+	 * Returns the edge type of edge in this graph.
+	 *
+	 * @param edge to use
+	 * @return DIRECTED if edge is in this graph, null otherwise
+	 */
+	public EdgeType getEdgeType(E edge) {
+		return containsEdge(edge) ? EdgeType.DIRECTED : null;
+	}
+
+	/**
+	 * Returns the default edge type for this graph.
+	 *
+	 * @return DIRECTED
+	 */
+	public EdgeType getDefaultEdgeType() {
+		return EdgeType.DIRECTED;
+	}
+
+	/**
+	 * Returns the number of vertices that are incident to edge.
+	 *
+	 * @param edge the edge whose incident vertex count is to be returned
+	 * @return 2
+	 */
+	public int getIncidentCount(E edge) {
+		return 2;
+	}
+
+	/**
+	 * Builds a read-only CSR snapshot straight from the id arrays. Slots follow
+	 * the order of getVertices().
+	 *
+	 * @return the CSR snapshot
+	 */
+	public ThreeTenGraphCsr toCsr() {
+		int[] vertexIds = Arrays.copyOf(vertexList, numVertices);
+		int[] offsets = new int[numVertices + 1];
+		int[] targets = new int[numEdges];
+		int[] edgeIds = new int[numEdges];
+		int pos = 0;
+
+		for (int slot = 0; slot < numVertices; slot++) {
+			int v = vertexIds[slot];
+			offsets[slot] = pos;
+			for (int i = 0; i < outSize[v]; i++) {
+				int e = out[v][i];
+				targets[pos] = vertexPos[dest[e]];
+				edgeIds[pos] = e;
+				pos += 1;
+			}
+		}
+		offsets[numVertices] = pos;
+
+		return new ThreeTenGraphCsr(vertexIds, offsets, targets, edgeIds);
+	}
+
+	/**
+	 * Returns a factory that creates empty ThreeTenIntGraphs.
+	 *
+	 * @param <V> vertex type
+	 * @param <E> edge type
+	 * @return the factory
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> Factory<Graph<V, E>> getFactory() {
+		return new Factory<Graph<V, E>>() {
+			public Graph<V, E> create() {
+				return new ThreeTenIntGraph<>();
+			}
+		};
+	}
+
+	/**
+	 * Removes the edge with id e from every array that holds it.
+	 *
+	 * @param e the edge id, in this graph
+	 */
+	private void removeEdgeId(int e) {
+		int u = source[e];
+		int v = dest[e];
+
+		int moved = out[u][--outSize[u]];
+		out[u][outPos[e]] = moved;
+		outPos[moved] = outPos[e];
+
+		moved = in[v][--inSize[v]];
+		in[v][inPos[e]] = moved;
+		inPos[moved] = inPos[e];
+
+		if (u == v) {
+			selfLoops[u] -= 1;
+		}
+
+		moved = edgeList[--numEdges];
+		edgeList[edgePos[e]] = moved;
+		edgePos[moved] = edgePos[e];
+		edgeById[e] = null;
+	}
+
+	/**
+	 * Finds an edge id from vertex id u to vertex id v.
+	 *
+	 * @param u the source id, or -1
+	 * @param v the destination id, or -1
+	 * @return the edge id, or -1 if there is none
+	 */
+	private int findEdgeId(int u, int v) {
+		if (u == -1 || v == -1) {
+			return -1;
+		}
+
+		if (outSize[u] <= inSize[v]) {
+			for (int i = 0; i < outSize[u]; i++) {
+				if (dest[out[u][i]] == v) {
+					return out[u][i];
+				}
+			}
+		} else {
+			for (int i = 0; i < inSize[v]; i++) {
+				if (source[in[v][i]] == u) {
+					return in[v][i];
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the id of vertex if it is in this graph.
+	 *
+	 * @param vertex the vertex to look up
+	 * @return its id, or -1 if vertex is null or not in this graph
+	 */
+	private int idOf(V vertex) {
+		if (vertex == null) {
+			return -1;
+		}
+
+		int id = vertex.getId();
+		if (id < 0 || id >= vertexById.length || vertexById[id] == null) {
+			return -1;
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the id of edge if it is in this graph.
+	 *
+	 * @param edge the edge to look up
+	 * @return its id, or -1 if edge is null or not in this graph
+	 */
+	private int edgeIdOf(E edge) {
+		if (edge == null) {
+			return -1;
+		}
+
+		int id = edge.getId();
+		if (id < 0 || id >= edgeById.length || edgeById[id] == null) {
+			return -1;
+		}
+		return id;
+	}
+
+	/**
+	 * Returns the vertex with id.
+	 *
+	 * @param id a vertex id in this graph
+	 * @return the vertex
+	 */
+	@SuppressWarnings("unchecked")
+	private V vertex(int id) {
+		return (V) vertexById[id];
+	}
+
+	/**
+	 * Returns the edge with id.
+	 *
+	 * @param id an edge id in this graph
+	 * @return the edge
+	 */
+	@SuppressWarnings("unchecked")
+	private E edge(int id) {
+		return (E) edgeById[id];
+	}
+
+	/**
+	 * Starts a new distinct count on the calling thread's marks.
+	 *
+	 * @return the marks, sized for every vertex id
+	 */
+	private Marks nextMarks() {
+		Marks m = marks.get();
+		m.start(vertexById.length);
+		return m;
+	}
+
+	/**
+	 * Makes sure the vertex arrays can be indexed by id.
+	 *
+	 * @param id the vertex id
+	 */
+	private void growVertices(int id) {
+		if (id < vertexById.length) {
+			return;
+		}
+
+		int n = Math.max(id + 1, vertexById.length * 2);
+		vertexById = Arrays.copyOf(vertexById, n);
+		out = Arrays.copyOf(out, n);
+		outSize = Arrays.copyOf(outSize, n);
+		in = Arrays.copyOf(in, n);
+		inSize = Arrays.copyOf(inSize, n);
+		selfLoops = Arrays.copyOf(selfLoops, n);
+		vertexPos = Arrays.copyOf(vertexPos, n);
+		vertexList = Arrays.copyOf(vertexList, n);
+	}
+
+	/**
+	 * Makes sure the edge arrays can be indexed by id.
+	 *
+	 * @param id the edge id
+	 */
+	private void growEdges(int id) {
+		if (id < edgeById.length) {
+			return;
+		}
+
+		int m = Math.max(id + 1, edgeById.length * 2);
+		edgeById = Arrays.copyOf(edgeById, m);
+		source = Arrays.copyOf(source, m);
+		dest = Arrays.copyOf(dest, m);
+		outPos = Arrays.copyOf(outPos, m);
+		inPos = Arrays.copyOf(inPos, m);
+		edgePos = Arrays.copyOf(edgePos, m);
+		edgeList = Arrays.copyOf(edgeList, m);
+	}
+
+	/**
+	 * Appends value to a growable adjacency array.
+	 *
+	 * @param list  the array
+	 * @param size  the number of entries in use
+	 * @param value the value to append
+	 * @return the array, replaced by a larger copy if it was full
+	 */
+	private static int[] push(int[] list, int size, int value) {
+		if (size == list.length) {
+			list = Arrays.copyOf(list, Math.max(MIN_ADJACENCY, size * 2));
+		}
+		list[size] = value;
+		return list;
+	}
+
+	/**
+	 * Returns the id of a component about to be added.
+	 *
+	 * @param component the component
+	 * @return its id
+	 * @throws IllegalArgumentException if the id is negative
+	 */
+	private static int checkId(ThreeTenGraphComponent component) {
+		int id = component.getId();
+		if (id < 0) {
+			throw new IllegalArgumentException("Id cannot be negative");
+		}
+		return id;
+	}
+
+	/**
+	 * One thread's visit stamps, for counting distinct neighbors.
+	 */
+	private static final class Marks {
+		/**
+		 * Visit stamp of each vertex id.
+		 */
+		private int[] mark = new int[0];
+		/**
+		 * Stamp of the current distinct count.
+		 */
+		private int stamp = 0;
+
+		/**
+		 * Starts a new distinct count over vertex ids below n.
+		 *
+		 * @param n the vertex id bound
+		 */
+		void start(int n) {
+			if (mark.length < n) {
+				mark = Arrays.copyOf(mark, n);
+			}
+			stamp += 1;
+			if (stamp == 0) {
+				Arrays.fill(mark, 0);
+				stamp = 1;
+			}
+		}
+
+		/**
+		 * Marks a vertex id as seen by the current count.
+		 *
+		 * @param id the vertex id
+		 * @return false if it was already seen
+		 */
+		boolean visit(int id) {
+			if (mark[id] == stamp) {
+				return false;
+			}
+			mark[id] = stamp;
+			return true;
+		}
+	}
+}
@@ -0,0 +1,316 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Answers k-hop neighborhood queries on a ThreeTenGraph and keeps the most
+ * recently used answers. A neighborhood is the set of vertices within k
+ * edges of a vertex, following edges forwards only or in either direction,
+ * stored as a sorted int array of vertex ids.
+ *
+ * <p>
+ * Cached answers are checked against the graph's per-vertex versions (see
+ * ThreeTenGraph.versionOf), which change whenever an edge is added to or
+ * removed from a vertex. An answer only depends on the adjacency lists of
+ * the vertices fewer than k hops out, so each entry remembers those vertices
+ * and is recomputed only if one of them has changed or left the graph since;
+ * changes anywhere else leave it valid.
+ *
+ * <p>
+ * Like the graph, the cache is not thread-safe.
+ *
+ * @author Hammadullah Nasir
+ *
+ * @param <V> for generics
+ * @param <E> for generics
+ */
+class ThreeTenNeighborhoodCache<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> {
+	/**
+	 * The graph being queried.
+	 */
+	private final ThreeTenGraph<V, E> graph;
+	/**
+	 * Cached answers, least recently used first.
+	 */
+	private final LinkedHashMap<Long, Entry> entries;
+
+	/**
+	 * Visit stamp of each vertex id, for the searches.
+	 */
+	private int[] mark = new int[0];
+	/**
+	 * Stamp of the current search.
+	 */
+	private int stamp = 0;
+	/**
+	 * Ids found by the current search.
+	 */
+	private int[] found = new int[16];
+	/**
+	 * Number of ids in found.
+	 */
+	private int foundCount = 0;
+
+	/**
+	 * Number of queries answered from the cache.
+	 */
+	private long hits = 0;
+	/**
+	 * Number of queries that had to search the graph.
+	 */
+	private long misses = 0;
+
+	/**
+	 * Creates a cache over graph that keeps at most capacity answers.
+	 *
+	 * @param graph    the graph to query
+	 * @param capacity the most answers to keep
+	 * @throws IllegalArgumentException if capacity is less than 1
+	 */
+	public ThreeTenNeighborhoodCache(ThreeTenGraph<V, E> graph, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		this.graph = graph;
+		this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the ids of the vertices within hops edges of vertex, not
+	 * counting vertex itself.
+	 *
+	 * @param vertex   the vertex at the center
+	 * @param hops     the most edges to follow, at least 1
+	 * @param directed true to follow edges forwards only, false to follow
+	 *                 them in either direction
+	 * @return the vertex ids in ascending order, in a new array
+	 * @throws IllegalArgumentException if vertex is not in the graph or hops is
+	 *                                  less than 1
+	 */
+	public int[] neighborhood(V vertex, int hops, boolean directed) {
+		return lookup(vertex, hops, directed).ids.clone();
+	}
+
+	/**
+	 * Returns whether other is within hops edges of vertex. Answered from the
+	 * same cached neighborhood as neighborhood, without copying it.
+	 *
+	 * @param vertex   the vertex at the center
+	 * @param other    the vertex to look for
+	 * @param hops     the most edges to follow, at least 1
+	 * @param directed true to follow edges forwards only, false to follow
+	 *                 them in either direction
+	 * @return true if other is in the neighborhood
+	 * @throws IllegalArgumentException if vertex is not in the graph or hops is
+	 *                                  less than 1
+	 */
+	public boolean isWithin(V vertex, V other, int hops, boolean directed) {
+		return Arrays.binarySearch(lookup(vertex, hops, directed).ids, other.getId()) >= 0;
+	}
+
+	/**
+	 * Returns the number of vertices within hops edges of vertex, not
+	 * counting vertex itself.
+	 *
+	 * @param vertex   the vertex at the center
+	 * @param hops     the most edges to follow, at least 1
+	 * @param directed true to follow edges forwards only, false to follow
+	 *                 them in either direction
+	 * @return the size of the neighborhood
+	 * @throws IllegalArgumentException if vertex is not in the graph or hops is
+	 *                                  less than 1
+	 */
+	public int neighborhoodSize(V vertex, int hops, boolean directed) {
+		return lookup(vertex, hops, directed).ids.length;
+	}
+
+	/**
+	 * Returns the number of queries answered from the cache.
+	 *
+	 * @return the hit count
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of queries that had to search the graph, because
+	 * the answer was not cached or was out of date.
+	 *
+	 * @return the miss count
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of answers kept, some of which may be out of date.
+	 *
+	 * @return the entry count
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Drops every cached answer.
+	 */
+	public void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * Returns an up to date answer for a query, from the cache if possible.
+	 *
+	 * @param vertex   the vertex at the center
+	 * @param hops     the most edges to follow
+	 * @param directed whether to follow edges forwards only
+	 * @return the answer
+	 */
+	private Entry lookup(V vertex, int hops, boolean directed) {
+		if (hops < 1) {
+			throw new IllegalArgumentException("hops must be at least 1");
+		}
+		if (!graph.containsVertex(vertex)) {
+			throw new IllegalArgumentException("Not in list");
+		}
+
+		long key = ((long) vertex.getId() << 32) | ((long) hops << 1) | (directed ? 1 : 0);
+		Entry entry = entries.get(key);
+		if (entry != null && isCurrent(entry)) {
+			hits += 1;
+			return entry;
+		}
+
+		misses += 1;
+		entry = search(vertex, hops, directed);
+		entries.put(key, entry);
+		return entry;
+	}
+
+	/**
+	 * Returns whether none of the vertices an answer was built from has
+	 * changed since.
+	 *
+	 * @param entry the answer
+	 * @return true if the answer still holds
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean isCurrent(Entry entry) {
+		for (Object o : entry.expanded) {
+			long version = graph.versionOf((V) o);
+			if (version == -1 || version > entry.built) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the vertices within hops edges of vertex with a breadth-first
+	 * search that stops at depth hops.
+	 *
+	 * @param vertex   the vertex at the center
+	 * @param hops     the most edges to follow
+	 * @param directed whether to follow edges forwards only
+	 * @return the answer
+	 */
+	private Entry search(V vertex, int hops, boolean directed) {
+		stamp += 1;
+		foundCount = 0;
+		ArrayList<V> expanded = new ArrayList<>();
+		ArrayList<V> frontier = new ArrayList<>();
+		ArrayList<V> next = new ArrayList<>();
+
+		visit(vertex.getId());
+		frontier.add(vertex);
+		for (int depth = 0; depth < hops && !frontier.isEmpty(); depth++) {
+			ArrayList<V> reached = next;
+			for (V u : frontier) {
+				expanded.add(u);
+				graph.forEachSuccessor(u, w -> reach(w, reached));
+				if (!directed) {
+					graph.forEachPredecessor(u, w -> reach(w, reached));
+				}
+			}
+			next = frontier;
+			next.clear();
+			frontier = reached;
+		}
+
+		int[] ids = Arrays.copyOf(found, foundCount);
+		Arrays.sort(ids);
+		return new Entry(ids, expanded.toArray(), graph.changeCount());
+	}
+
+	/**
+	 * Collects w if the current search has not seen it yet.
+	 *
+	 * @param w       the vertex reached
+	 * @param reached the vertices to expand at the next depth
+	 */
+	private void reach(V w, ArrayList<V> reached) {
+		if (visit(w.getId())) {
+			if (foundCount == found.length) {
+				found = Arrays.copyOf(found, foundCount * 2);
+			}
+			found[foundCount++] = w.getId();
+			reached.add(w);
+		}
+	}
+
+	/**
+	 * Marks an id as seen by the current search.
+	 *
+	 * @param id the vertex id
+	 * @return false if it was already seen
+	 */
+	private boolean visit(int id) {
+		if (id >= mark.length) {
+			mark = Arrays.copyOf(mark, Math.max(id + 1, mark.length * 2));
+		}
+		if (mark[id] == stamp) {
+			return false;
+		}
+		mark[id] = stamp;
+		return true;
+	}
+
+	/**
+	 * A cached answer.
+	 */
+	private static final class Entry {
+		/**
+		 * The neighborhood's vertex ids, ascending.
+		 */
+		private final int[] ids;
+		/**
+		 * The vertices whose adjacency lists were read.
+		 */
+		private final Object[] expanded;
+		/**
+		 * The graph's change count when the answer was built.
+		 */
+		private final long built;
+
+		/**
+		 * Creates an answer.
+		 *
+		 * @param ids      the neighborhood's vertex ids, ascending
+		 * @param expanded the vertices whose adjacency lists were read
+		 * @param built    the graph's change count when it was built
+		 */
+		Entry(int[] ids, Object[] expanded, long built) {
+			this.ids = ids;
+			this.expanded = expanded;
+			this.built = built;
+		}
+	}
+}
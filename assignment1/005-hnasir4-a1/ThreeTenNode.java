@@ -12,16 +12,26 @@ import org.apache.commons.collections15.Factory;
  */
 class ThreeTenNode extends ThreeTenGraphComponent {
 	/**
-	 * The ID for the next node to be created. This auto-increments with ever
-	 * constructor call to this class.
+	 * Hands out the ID for each node created. Thread-safe, and recycles ids
+	 * released by a graph (see ThreeTenGraph.setIdRecycling).
 	 */
-	public static int nodeCount = 0;
+	public static final ThreeTenIdAllocator IDS = new ThreeTenIdAllocator();
 
 	/**
 	 * Creates a new ThreeTenNode with default settings.
 	 */
 	public ThreeTenNode() {
-		super(nodeCount++);
+		super(IDS.allocate());
+	}
+
+	/**
+	 * Creates a ThreeTenNode with a given ID, for restoring saved graphs. The
+	 * ID is reserved so later nodes do not reuse it.
+	 * 
+	 * @param id the ID of the node
+	 */
+	ThreeTenNode(int id) {
+		super(IDS.reserve(id));
 	}
 
 	/**
@@ -0,0 +1,309 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Level-synchronous parallel breadth-first search over the outgoing edges of
+ * a ThreeTenGraph. The search runs on a CSR snapshot (see
+ * ThreeTenGraph.toCsr()) so worker threads only read primitive arrays. Each
+ * frontier is split into chunks that run on a ForkJoinPool, and vertices are
+ * claimed through an atomic visited bitset so every vertex is discovered by
+ * exactly one thread.
+ *
+ * @author Hammadullah Nasir
+ */
+final class ThreeTenParallelBfs {
+	/**
+	 * Number of frontier vertices handled by one task. Frontiers no larger than
+	 * this are expanded on the calling thread.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	/**
+	 * The pool the frontier chunks run on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a search engine that runs on the common ForkJoinPool.
+	 */
+	public ThreeTenParallelBfs() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a search engine that runs on the given pool.
+	 *
+	 * @param pool the pool to split frontiers across
+	 */
+	public ThreeTenParallelBfs(ForkJoinPool pool) {
+		if (pool == null) {
+			throw new IllegalArgumentException("pool cannot be null");
+		}
+		this.pool = pool;
+	}
+
+	/**
+	 * Searches graph from source. The graph is snapshotted first, so it must not
+	 * be modified during the call.
+	 *
+	 * @param <V>    the vertex type
+	 * @param <E>    the edge type
+	 * @param graph  the graph to search
+	 * @param source the vertex to start from
+	 * @return the distances and parents of every vertex, keyed by vertex id
+	 * @throws IllegalArgumentException if source is not in graph
+	 */
+	public <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> Result search(
+			ThreeTenGraph<V, E> graph, V source) {
+		if (source == null || !graph.containsVertex(source)) {
+			throw new IllegalArgumentException("source is not in the graph");
+		}
+		return search(graph.toCsr(), source.getId());
+	}
+
+	/**
+	 * Searches a CSR snapshot from the vertex with id sourceId.
+	 *
+	 * @param csr      the snapshot to search
+	 * @param sourceId the id of the vertex to start from
+	 * @return the distances and parents of every vertex, keyed by vertex id
+	 * @throws IllegalArgumentException if sourceId is not in the snapshot
+	 */
+	public Result search(ThreeTenGraphCsr csr, int sourceId) {
+		int source = csr.slotOf(sourceId);
+		if (source == -1) {
+			throw new IllegalArgumentException("source is not in the graph");
+		}
+
+		int n = csr.vertexCount();
+		int[] distance = new int[n];
+		int[] parent = new int[n];
+		Arrays.fill(distance, -1);
+		Arrays.fill(parent, -1);
+		AtomicLongArray visited = new AtomicLongArray((n + 63) >>> 6);
+
+		claim(visited, source);
+		distance[source] = 0;
+		int[] frontier = {source};
+		int level = 0;
+
+		while (frontier.length > 0) {
+			level += 1;
+			if (frontier.length <= CHUNK_SIZE) {
+				frontier = expand(csr, frontier, 0, frontier.length, visited, distance, parent, level);
+			} else {
+				frontier = expandParallel(csr, frontier, visited, distance, parent, level);
+			}
+		}
+
+		return toResult(csr, distance, parent);
+	}
+
+	/**
+	 * Expands a large frontier by running one task per chunk on the pool.
+	 *
+	 * @param csr      the snapshot being searched
+	 * @param frontier the slots discovered in the previous level
+	 * @param visited  the visited bitset
+	 * @param distance the distance of each slot
+	 * @param parent   the parent slot of each slot
+	 * @param level    the distance of the vertices discovered now
+	 * @return the next frontier
+	 */
+	private int[] expandParallel(ThreeTenGraphCsr csr, int[] frontier, AtomicLongArray visited,
+			int[] distance, int[] parent, int level) {
+		int chunks = (frontier.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		int[][] found = new int[chunks][];
+		ArrayList<RecursiveAction> tasks = new ArrayList<>(chunks);
+
+		for (int c = 0; c < chunks; c++) {
+			final int chunk = c;
+			tasks.add(new RecursiveAction() {
+				protected void compute() {
+					int lo = chunk * CHUNK_SIZE;
+					int hi = Math.min(lo + CHUNK_SIZE, frontier.length);
+					found[chunk] = expand(csr, frontier, lo, hi, visited, distance, parent, level);
+				}
+			});
+		}
+
+		pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+
+		int total = 0;
+		for (int[] part : found) {
+			total += part.length;
+		}
+		int[] next = new int[total];
+		int pos = 0;
+		for (int[] part : found) {
+			System.arraycopy(part, 0, next, pos, part.length);
+			pos += part.length;
+		}
+		return next;
+	}
+
+	/**
+	 * Expands frontier[lo] to frontier[hi - 1], claiming every unvisited
+	 * successor. Only the thread that claims a slot writes its distance and
+	 * parent.
+	 *
+	 * @param csr      the snapshot being searched
+	 * @param frontier the slots discovered in the previous level
+	 * @param lo       first frontier position to expand
+	 * @param hi       one past the last frontier position to expand
+	 * @param visited  the visited bitset
+	 * @param distance the distance of each slot
+	 * @param parent   the parent slot of each slot
+	 * @param level    the distance of the vertices discovered now
+	 * @return the slots claimed by this call
+	 */
+	private static int[] expand(ThreeTenGraphCsr csr, int[] frontier, int lo, int hi, AtomicLongArray visited,
+			int[] distance, int[] parent, int level) {
+		int[] offsets = csr.offsets();
+		int[] targets = csr.targets();
+		int[] next = new int[16];
+		int size = 0;
+
+		for (int f = lo; f < hi; f++) {
+			int u = frontier[f];
+			for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+				int v = targets[i];
+				if (claim(visited, v)) {
+					distance[v] = level;
+					parent[v] = u;
+					if (size == next.length) {
+						next = Arrays.copyOf(next, size * 2);
+					}
+					next[size++] = v;
+				}
+			}
+		}
+
+		return Arrays.copyOf(next, size);
+	}
+
+	/**
+	 * Atomically sets the visited bit of slot.
+	 *
+	 * @param visited the visited bitset
+	 * @param slot    the slot to claim
+	 * @return true if this call set the bit, false if it was already set
+	 */
+	private static boolean claim(AtomicLongArray visited, int slot) {
+		int word = slot >>> 6;
+		long bit = 1L << (slot & 63);
+
+		while (true) {
+			long old = visited.get(word);
+			if ((old & bit) != 0) {
+				return false;
+			}
+			if (visited.compareAndSet(word, old, old | bit)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Converts slot-indexed search arrays into id-indexed ones.
+	 *
+	 * @param csr      the snapshot that was searched
+	 * @param distance the distance of each slot
+	 * @param parent   the parent slot of each slot
+	 * @return the result keyed by vertex id
+	 */
+	private static Result toResult(ThreeTenGraphCsr csr, int[] distance, int[] parent) {
+		int[] distanceById = new int[csr.idBound()];
+		int[] parentById = new int[csr.idBound()];
+		Arrays.fill(distanceById, -1);
+		Arrays.fill(parentById, -1);
+
+		for (int slot = 0; slot < distance.length; slot++) {
+			int id = csr.vertexId(slot);
+			distanceById[id] = distance[slot];
+			if (parent[slot] != -1) {
+				parentById[id] = csr.vertexId(parent[slot]);
+			}
+		}
+
+		return new Result(distanceById, parentById);
+	}
+
+	/**
+	 * Distances and breadth-first tree parents of a search, keyed by vertex id.
+	 */
+	static final class Result {
+		/**
+		 * Hop count from the source, or -1 if unreachable.
+		 */
+		private final int[] distance;
+		/**
+		 * Id of the vertex each vertex was discovered from, or -1.
+		 */
+		private final int[] parent;
+
+		/**
+		 * Creates a result from id-indexed arrays.
+		 *
+		 * @param distance hop count of each vertex id
+		 * @param parent   parent id of each vertex id
+		 */
+		Result(int[] distance, int[] parent) {
+			this.distance = distance;
+			this.parent = parent;
+		}
+
+		/**
+		 * Returns the number of hops from the source to the vertex with id.
+		 *
+		 * @param id the vertex id
+		 * @return the distance, or -1 if the vertex is unreachable or unknown
+		 */
+		public int distance(int id) {
+			if (id < 0 || id >= distance.length) {
+				return -1;
+			}
+			return distance[id];
+		}
+
+		/**
+		 * Returns the id of the vertex that discovered the vertex with id.
+		 *
+		 * @param id the vertex id
+		 * @return the parent id, or -1 for the source and unreachable vertices
+		 */
+		public int parent(int id) {
+			if (id < 0 || id >= parent.length) {
+				return -1;
+			}
+			return parent[id];
+		}
+
+		/**
+		 * Returns the distance array, indexed by vertex id. The array is not
+		 * copied.
+		 *
+		 * @return the distances
+		 */
+		int[] distances() {
+			return distance;
+		}
+
+		/**
+		 * Returns the parent array, indexed by vertex id. The array is not
+		 * copied.
+		 *
+		 * @return the parents
+		 */
+		int[] parents() {
+			return parent;
+		}
+	}
+}
@@ -0,0 +1,822 @@
+import edu.uci.ics.jung.algorithms.layout.Layout;
+import edu.uci.ics.jung.graph.DirectedGraph;
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.GraphDecorator;
+import edu.uci.ics.jung.graph.util.EdgeType;
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.visualization.RenderContext;
+import edu.uci.ics.jung.visualization.VisualizationServer;
+import edu.uci.ics.jung.visualization.VisualizationViewer;
+import edu.uci.ics.jung.visualization.decorators.EdgeShape;
+import edu.uci.ics.jung.visualization.renderers.BasicRenderer;
+import edu.uci.ics.jung.visualization.util.ChangeEventSupport;
+import edu.uci.ics.jung.visualization.util.DefaultChangeEventSupport;
+
+import org.apache.commons.collections15.Transformer;
+
+import java.awt.BasicStroke;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Paint;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.Stroke;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+
+import javax.swing.JLabel;
+import javax.swing.Timer;
+import javax.swing.event.ChangeListener;
+
+/**
+ * Draws a ThreeTenGraph laid out by a ThreeTenForceLayout in a JUNG
+ * VisualizationViewer, without redoing work on every frame.
+ *
+ * <ul>
+ * <li>Every vertex is drawn with one shared shape and every edge with one
+ * shared stroke. Colors come straight from getColor(), and the default
+ * "#id" labels are built once per id.</li>
+ * <li>The layout is stepped on a worker thread of its own, at most once per
+ * frame, and only while it has something to move or the graph changed.</li>
+ * <li>After a step only the area the step moved (see
+ * ThreeTenForceLayout.getMovedBounds()) is repainted, and vertices and edges
+ * outside the area being repainted are skipped instead of drawn and
+ * clipped. The whole view is repainted only when vertices or edges are added
+ * or removed.</li>
+ * <li>Graphs with more than DETAIL_LIMIT vertices are drawn with straight,
+ * unlabeled edges and no antialiasing, which is most of the cost of a
+ * frame.</li>
+ * <li>The time each paint takes and the time of the last layout step are
+ * shown in a status label.</li>
+ * </ul>
+ *
+ * <p>
+ * The viewer edits the graph (for example through an EditingModalGraphMouse)
+ * on the event thread while the worker steps the layout. Every edit made
+ * through the viewer's layout holds the layout's graph lock (see
+ * ThreeTenForceLayout.getGraphLock()), so it never lands in the middle of a
+ * step's snapshot. Code that changes the graph directly should hold the same
+ * lock.
+ *
+ * <p>
+ * Color changes are not reported by the graph, so code that recolors a
+ * component should call markVertexDirty or markEdgeDirty to have it redrawn.
+ *
+ * @author Hammadullah Nasir
+ *
+ * @param <V> for generics
+ * @param <E> for generics
+ */
+class ThreeTenRenderPipeline<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> {
+	/**
+	 * Diameter of a vertex, in pixels.
+	 */
+	private static final int VERTEX_SIZE = 30;
+	/**
+	 * Width of an edge line, in pixels.
+	 */
+	private static final float EDGE_WIDTH = 2;
+	/**
+	 * Largest graph, in vertices, drawn with curved, labeled, antialiased
+	 * edges.
+	 */
+	private static final int DETAIL_LIMIT = 1000;
+	/**
+	 * Pixels added around a repainted area for vertex shapes, labels and
+	 * arrowheads that stick out of it.
+	 */
+	private static final int DIRTY_MARGIN = 40;
+	/**
+	 * Shortest time between two layout steps, in nanoseconds (about 60 per
+	 * second).
+	 */
+	private static final long FRAME_NANOS = 16_000_000L;
+	/**
+	 * How often the status label is refreshed, in milliseconds.
+	 */
+	private static final int STATUS_MILLIS = 250;
+	/**
+	 * Weight of the newest frame in the average frame time.
+	 */
+	private static final double SMOOTHING = 0.1;
+
+	/**
+	 * The layout being drawn.
+	 */
+	private final ThreeTenForceLayout<V, E> layout;
+	/**
+	 * The component the graph is drawn in.
+	 */
+	private final VisualizationViewer<V, E> viewer;
+	/**
+	 * Shows the frame time.
+	 */
+	private final JLabel status = new JLabel();
+	/**
+	 * Refreshes the status label.
+	 */
+	private final Timer statusTimer;
+	/**
+	 * Steps the layout.
+	 */
+	private final Thread worker;
+
+	/**
+	 * The shape of every vertex.
+	 */
+	private final Shape vertexShape = new Ellipse2D.Double(-VERTEX_SIZE / 2.0, -VERTEX_SIZE / 2.0, VERTEX_SIZE,
+			VERTEX_SIZE);
+	/**
+	 * The stroke of every edge.
+	 */
+	private final Stroke edgeStroke = new BasicStroke(EDGE_WIDTH);
+	/**
+	 * Default label of each component id, built on first use. Only touched
+	 * while painting.
+	 */
+	private String[] labels = new String[0];
+
+	/**
+	 * Guards pending.
+	 */
+	private final Object lock = new Object();
+	/**
+	 * Whether the graph changed since the worker last looked.
+	 */
+	private boolean pending = true;
+	/**
+	 * Whether vertices or edges were added or removed since the last
+	 * repaint.
+	 */
+	private volatile boolean structureChanged = true;
+	/**
+	 * Cleared by stop().
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * When the paint in progress started, from System.nanoTime().
+	 */
+	private long frameStart = 0;
+	/**
+	 * Area being repainted, in layout coordinates, or null to draw
+	 * everything. Only set while painting.
+	 */
+	private Rectangle2D paintArea = null;
+	/**
+	 * How long the last paint took, in milliseconds.
+	 */
+	private volatile double frameMillis = 0;
+	/**
+	 * Moving average of the paint time, in milliseconds.
+	 */
+	private volatile double averageFrameMillis = 0;
+	/**
+	 * How long the last layout step took, in milliseconds.
+	 */
+	private volatile double stepMillis = 0;
+
+	/**
+	 * Creates a viewer of the given size for layout, and starts stepping the
+	 * layout.
+	 *
+	 * @param layout the layout to draw
+	 * @param size   the size of the drawing, in pixels
+	 */
+	public ThreeTenRenderPipeline(ThreeTenForceLayout<V, E> layout, Dimension size) {
+		this.layout = layout;
+		layout.setSize(size);
+		layout.setWakeup(this::changed);
+
+		viewer = new VisualizationViewer<V, E>(new View());
+		viewer.setPreferredSize(size);
+		viewer.setRenderer(new CullingRenderer());
+		install(viewer.getRenderContext());
+		if (layout.getGraph().getVertexCount() > DETAIL_LIMIT) {
+			reduceDetail();
+		}
+
+		viewer.addPreRenderPaintable(new VisualizationServer.Paintable() {
+			public void paint(Graphics g) {
+				frameStart = System.nanoTime();
+				paintArea = areaOf(g.getClipBounds());
+			}
+
+			public boolean useTransform() {
+				return false;
+			}
+		});
+		viewer.addPostRenderPaintable(new VisualizationServer.Paintable() {
+			public void paint(Graphics g) {
+				paintArea = null;
+				frameDone(System.nanoTime() - frameStart);
+			}
+
+			public boolean useTransform() {
+				return false;
+			}
+		});
+
+		statusTimer = new Timer(STATUS_MILLIS, event -> status.setText(String.format(
+				"frame %.1f ms (avg %.1f), step %.1f ms", frameMillis, averageFrameMillis, stepMillis)));
+		statusTimer.start();
+
+		worker = new Thread(this::run, "ThreeTenRenderPipeline");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Returns the component the graph is drawn in.
+	 *
+	 * @return the viewer
+	 */
+	public VisualizationViewer<V, E> getViewer() {
+		return viewer;
+	}
+
+	/**
+	 * Returns the label showing the frame and layout step times.
+	 *
+	 * @return the status label
+	 */
+	public JLabel getStatusLabel() {
+		return status;
+	}
+
+	/**
+	 * Returns how long the last paint took.
+	 *
+	 * @return the frame time in milliseconds
+	 */
+	public double getFrameMillis() {
+		return frameMillis;
+	}
+
+	/**
+	 * Returns the moving average of the paint time.
+	 *
+	 * @return the average frame time in milliseconds
+	 */
+	public double getAverageFrameMillis() {
+		return averageFrameMillis;
+	}
+
+	/**
+	 * Repaints the area around a vertex and its edges, for example after its
+	 * color changed.
+	 *
+	 * @param vertex the vertex
+	 */
+	public void markVertexDirty(V vertex) {
+		Graph<V, E> graph = layout.getGraph();
+		if (!graph.containsVertex(vertex)) {
+			return;
+		}
+
+		Rectangle2D area = new Rectangle2D.Double();
+		area.setFrameFromCenter(layout.transform(vertex), layout.transform(vertex));
+		for (V neighbor : graph.getNeighbors(vertex)) {
+			area.add(layout.transform(neighbor));
+		}
+		repaint(area);
+	}
+
+	/**
+	 * Repaints the area around an edge, for example after its color changed.
+	 *
+	 * @param edge the edge
+	 */
+	public void markEdgeDirty(E edge) {
+		Pair<V> ends = layout.getGraph().getEndpoints(edge);
+		if (ends == null) {
+			return;
+		}
+
+		Rectangle2D area = new Rectangle2D.Double();
+		area.setFrameFromDiagonal(layout.transform(ends.getFirst()), layout.transform(ends.getSecond()));
+		repaint(area);
+	}
+
+	/**
+	 * Stops stepping the layout and refreshing the status label. The viewer
+	 * still paints, but no longer follows the graph.
+	 */
+	public void stop() {
+		running = false;
+		layout.setWakeup(null);
+		statusTimer.stop();
+		worker.interrupt();
+	}
+
+	/**
+	 * Sets the shared shape, stroke, color and label transformers on the
+	 * viewer's render context.
+	 *
+	 * @param context the render context
+	 */
+	private void install(RenderContext<V, E> context) {
+		context.setVertexShapeTransformer(new Transformer<V, Shape>() {
+			public Shape transform(V v) {
+				return vertexShape;
+			}
+		});
+		context.setVertexFillPaintTransformer(new Transformer<V, Paint>() {
+			public Paint transform(V v) {
+				return v.getColor();
+			}
+		});
+		context.setVertexLabelTransformer(new Transformer<V, String>() {
+			public String transform(V v) {
+				return label(v);
+			}
+		});
+
+		context.setEdgeStrokeTransformer(new Transformer<E, Stroke>() {
+			public Stroke transform(E e) {
+				return edgeStroke;
+			}
+		});
+		context.setEdgeDrawPaintTransformer(new Transformer<E, Paint>() {
+			public Paint transform(E e) {
+				return e.getColor();
+			}
+		});
+		context.setArrowFillPaintTransformer(new Transformer<E, Paint>() {
+			public Paint transform(E e) {
+				return e.getColor();
+			}
+		});
+		context.setEdgeLabelTransformer(new Transformer<E, String>() {
+			public String transform(E e) {
+				return label(e);
+			}
+		});
+	}
+
+	/**
+	 * Draws edges as straight lines without labels, and turns antialiasing
+	 * off.
+	 */
+	private void reduceDetail() {
+		RenderContext<V, E> context = viewer.getRenderContext();
+
+		context.setEdgeShapeTransformer(new EdgeShape.Line<V, E>());
+		context.setEdgeLabelTransformer(new Transformer<E, String>() {
+			public String transform(E e) {
+				return null;
+			}
+		});
+		viewer.getRenderingHints().put(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+	}
+
+	/**
+	 * Converts the clip of a paint, in view coordinates, to the layout area
+	 * that has to be drawn, margin included.
+	 *
+	 * @param clip the clip, or null
+	 * @return the area, or null to draw everything
+	 */
+	private Rectangle2D areaOf(Rectangle clip) {
+		if (clip == null || clip.contains(0, 0, viewer.getWidth(), viewer.getHeight())) {
+			return null;
+		}
+
+		Rectangle grown = new Rectangle(clip);
+		grown.grow(DIRTY_MARGIN, DIRTY_MARGIN);
+		return viewer.getRenderContext().getMultiLayerTransformer().inverseTransform(grown).getBounds2D();
+	}
+
+	/**
+	 * Returns what the component's toString() would, without building a new
+	 * string for components that have no text.
+	 *
+	 * @param component the vertex or edge
+	 * @return its label
+	 */
+	private String label(ThreeTenGraphComponent component) {
+		String text = component.getText();
+		if (text != null) {
+			return text;
+		}
+
+		int id = component.getId();
+		if (id >= labels.length) {
+			labels = Arrays.copyOf(labels, Math.max(id + 1, labels.length * 2));
+		}
+		if (labels[id] == null) {
+			labels[id] = component.toString();
+		}
+		return labels[id];
+	}
+
+	/**
+	 * Records the time one paint took.
+	 *
+	 * @param nanos the paint time in nanoseconds
+	 */
+	private void frameDone(long nanos) {
+		double millis = nanos / 1e6;
+
+		frameMillis = millis;
+		averageFrameMillis = averageFrameMillis == 0 ? millis
+				: averageFrameMillis + SMOOTHING * (millis - averageFrameMillis);
+	}
+
+	/**
+	 * Notes that the graph changed and wakes the worker. Called by the layout
+	 * on whatever thread changed the graph.
+	 */
+	private void changed() {
+		structureChanged = true;
+		wake();
+	}
+
+	/**
+	 * Wakes the worker.
+	 */
+	private void wake() {
+		synchronized (lock) {
+			pending = true;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * The worker's loop: steps the layout while it has work, repaints what
+	 * each step moved, and sleeps until woken once the layout is done.
+	 */
+	private void run() {
+		try {
+			while (running) {
+				synchronized (lock) {
+					while (running && !pending && layout.done()) {
+						lock.wait();
+					}
+					pending = false;
+				}
+
+				long t0 = System.nanoTime();
+				Rectangle2D moved = null;
+				try {
+					synchronized (layout) {
+						layout.step();
+						moved = layout.getMovedBounds();
+					}
+				} catch (RuntimeException e) {
+					// a failed step must not stop the layout for good; report
+					// it and redraw everything, and the next frame steps again
+					System.err.println("ThreeTenRenderPipeline: layout step failed: " + e);
+					structureChanged = true;
+				}
+				long took = System.nanoTime() - t0;
+				stepMillis = took / 1e6;
+
+				if (structureChanged) {
+					structureChanged = false;
+					viewer.repaint();
+				} else if (moved != null) {
+					repaint(moved);
+				}
+
+				if (took < FRAME_NANOS) {
+					Thread.sleep((FRAME_NANOS - took) / 1_000_000L);
+				}
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		}
+	}
+
+	/**
+	 * Repaints an area given in layout coordinates, plus a margin.
+	 *
+	 * @param area the area
+	 */
+	private void repaint(Rectangle2D area) {
+		Rectangle bounds = viewer.getRenderContext().getMultiLayerTransformer().transform(area).getBounds();
+		bounds.grow(DIRTY_MARGIN, DIRTY_MARGIN);
+		viewer.repaint(bounds);
+	}
+
+	/**
+	 * Renders like JUNG's BasicRenderer, but skips vertices and edges that
+	 * lie outside the area being repainted. JUNG's include predicates cannot
+	 * be used for this: they also hide every edge of an excluded vertex, even
+	 * one that crosses the repainted area.
+	 */
+	private final class CullingRenderer extends BasicRenderer<V, E> {
+		/**
+		 * Draws every edge and vertex that can show up in the area being
+		 * repainted.
+		 *
+		 * @param context the render context
+		 * @param layout  the layout to draw
+		 */
+		public void render(RenderContext<V, E> context, Layout<V, E> layout) {
+			Rectangle2D area = paintArea;
+			Graph<V, E> graph = layout.getGraph();
+
+			try {
+				for (E e : graph.getEdges()) {
+					if (area != null) {
+						Pair<V> ends = graph.getEndpoints(e);
+						Point2D p = layout.transform(ends.getFirst());
+						Point2D q = layout.transform(ends.getSecond());
+						if (!area.intersectsLine(p.getX(), p.getY(), q.getX(), q.getY())) {
+							continue;
+						}
+					}
+					renderEdge(context, layout, e);
+					renderEdgeLabel(context, layout, e);
+				}
+				for (V v : graph.getVertices()) {
+					if (area != null && !area.contains(layout.transform(v))) {
+						continue;
+					}
+					renderVertex(context, layout, v);
+					renderVertexLabel(context, layout, v);
+				}
+			} catch (ConcurrentModificationException e) {
+				// the graph changed while drawing; draw it again
+				context.getScreenDevice().repaint();
+			}
+		}
+	}
+
+	/**
+	 * The layout handed to the viewer. It forwards to the force layout, but
+	 * unlike the wrapper JUNG would otherwise put around it, it does not make
+	 * the viewer repaint everything after each step or run a relaxer thread:
+	 * the pipeline's worker does the stepping. It fires a change, and so a
+	 * full repaint, only when a vertex is placed by hand or the layout is
+	 * restarted.
+	 */
+	private final class View implements Layout<V, E>, ChangeEventSupport {
+		/**
+		 * Listeners told about changes.
+		 */
+		private final ChangeEventSupport changes = new DefaultChangeEventSupport(this);
+		/**
+		 * The graph as the viewer sees it.
+		 */
+		private final LockedGraph graph = new LockedGraph(layout.getGraph());
+
+		/**
+		 * Restarts the layout from scratch.
+		 */
+		public void initialize() {
+			synchronized (layout) {
+				layout.initialize();
+			}
+			wake();
+			fireStateChanged();
+		}
+
+		/**
+		 * Sets where vertices without a position start out.
+		 *
+		 * @param initializer gives each new vertex its first position
+		 */
+		public void setInitializer(Transformer<V, Point2D> initializer) {
+			layout.setInitializer(initializer);
+		}
+
+		/**
+		 * Not supported: the force layout is bound to its graph.
+		 *
+		 * @param graph unused
+		 */
+		public void setGraph(Graph<V, E> graph) {
+			throw new UnsupportedOperationException("the layout's graph cannot be replaced");
+		}
+
+		/**
+		 * Returns the graph being drawn, with every edit made through it
+		 * holding the layout's graph lock.
+		 *
+		 * @return the graph
+		 */
+		public Graph<V, E> getGraph() {
+			return graph;
+		}
+
+		/**
+		 * Restarts the layout from scratch.
+		 */
+		public void reset() {
+			initialize();
+		}
+
+		/**
+		 * Sets the size of the drawing.
+		 *
+		 * @param size the size, in pixels
+		 */
+		public void setSize(Dimension size) {
+			synchronized (layout) {
+				layout.setSize(size);
+			}
+			fireStateChanged();
+		}
+
+		/**
+		 * Returns the size of the drawing.
+		 *
+		 * @return the size, in pixels
+		 */
+		public Dimension getSize() {
+			return layout.getSize();
+		}
+
+		/**
+		 * Pins or unpins a vertex where it is.
+		 *
+		 * @param v     the vertex
+		 * @param state true to pin
+		 */
+		public void lock(V v, boolean state) {
+			layout.lock(v, state);
+		}
+
+		/**
+		 * Returns whether a vertex is pinned.
+		 *
+		 * @param v the vertex
+		 * @return true if pinned
+		 */
+		public boolean isLocked(V v) {
+			return layout.isLocked(v);
+		}
+
+		/**
+		 * Moves a vertex, for example when it is dragged.
+		 *
+		 * @param v        the vertex
+		 * @param location its new position
+		 */
+		public void setLocation(V v, Point2D location) {
+			layout.setLocation(v, location);
+			fireStateChanged();
+		}
+
+		/**
+		 * Returns the position of a vertex.
+		 *
+		 * @param v the vertex
+		 * @return its position
+		 */
+		public Point2D transform(V v) {
+			return layout.transform(v);
+		}
+
+		/**
+		 * Adds a change listener.
+		 *
+		 * @param l the listener
+		 */
+		public void addChangeListener(ChangeListener l) {
+			changes.addChangeListener(l);
+		}
+
+		/**
+		 * Removes a change listener.
+		 *
+		 * @param l the listener
+		 */
+		public void removeChangeListener(ChangeListener l) {
+			changes.removeChangeListener(l);
+		}
+
+		/**
+		 * Returns the change listeners.
+		 *
+		 * @return the listeners
+		 */
+		public ChangeListener[] getChangeListeners() {
+			return changes.getChangeListeners();
+		}
+
+		/**
+		 * Tells the listeners that the drawing changed.
+		 */
+		public void fireStateChanged() {
+			changes.fireStateChanged();
+		}
+	}
+
+	/**
+	 * The graph handed to the viewer. Queries go straight to the graph, and
+	 * every edit holds the layout's graph lock, so edits the viewer makes on
+	 * the event thread never overlap the worker's snapshot.
+	 */
+	private final class LockedGraph extends GraphDecorator<V, E> implements DirectedGraph<V, E> {
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Wraps graph.
+		 *
+		 * @param graph the graph being drawn
+		 */
+		LockedGraph(Graph<V, E> graph) {
+			super(graph);
+		}
+
+		/**
+		 * Adds a vertex under the graph lock.
+		 *
+		 * @param vertex the vertex to add
+		 * @return true if it was added
+		 */
+		public boolean addVertex(V vertex) {
+			synchronized (layout.getGraphLock()) {
+				return super.addVertex(vertex);
+			}
+		}
+
+		/**
+		 * Adds an edge under the graph lock.
+		 *
+		 * @param edge     the edge to add
+		 * @param vertices its endpoints
+		 * @return true if it was added
+		 */
+		public boolean addEdge(E edge, Collection<? extends V> vertices) {
+			synchronized (layout.getGraphLock()) {
+				return super.addEdge(edge, vertices);
+			}
+		}
+
+		/**
+		 * Adds an edge under the graph lock.
+		 *
+		 * @param edge     the edge to add
+		 * @param vertices its endpoints
+		 * @param edgeType the edge type
+		 * @return true if it was added
+		 */
+		public boolean addEdge(E edge, Collection<? extends V> vertices, EdgeType edgeType) {
+			synchronized (layout.getGraphLock()) {
+				return super.addEdge(edge, vertices, edgeType);
+			}
+		}
+
+		/**
+		 * Adds an edge under the graph lock.
+		 *
+		 * @param edge the edge to add
+		 * @param v1   its source
+		 * @param v2   its destination
+		 * @return true if it was added
+		 */
+		public boolean addEdge(E edge, V v1, V v2) {
+			synchronized (layout.getGraphLock()) {
+				return super.addEdge(edge, v1, v2);
+			}
+		}
+
+		/**
+		 * Adds an edge under the graph lock.
+		 *
+		 * @param edge     the edge to add
+		 * @param v1       its source
+		 * @param v2       its destination
+		 * @param edgeType the edge type
+		 * @return true if it was added
+		 */
+		public boolean addEdge(E edge, V v1, V v2, EdgeType edgeType) {
+			synchronized (layout.getGraphLock()) {
+				return super.addEdge(edge, v1, v2, edgeType);
+			}
+		}
+
+		/**
+		 * Removes an edge under the graph lock.
+		 *
+		 * @param edge the edge to remove
+		 * @return true if it was removed
+		 */
+		public boolean removeEdge(E edge) {
+			synchronized (layout.getGraphLock()) {
+				return super.removeEdge(edge);
+			}
+		}
+
+		/**
+		 * Removes a vertex and its edges under the graph lock.
+		 *
+		 * @param vertex the vertex to remove
+		 * @return true if it was removed
+		 */
+		public boolean removeVertex(V vertex) {
+			synchronized (layout.getGraphLock()) {
+				return super.removeVertex(vertex);
+			}
+		}
+	}
+}
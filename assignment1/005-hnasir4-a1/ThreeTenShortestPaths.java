@@ -0,0 +1,490 @@
+import org.apache.commons.collections15.Transformer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Weighted shortest paths over a ThreeTenGraph using Dijkstra's algorithm
+ * with an indexed d-ary heap. The graph is snapshotted into CSR form (see
+ * ThreeTenGraph.toCsr()) together with the edge weights when this object is
+ * created, so every query runs over primitive arrays. Create a new instance
+ * after the graph changes.
+ *
+ * <p>
+ * Three query styles are offered: a full single-source tree (from), a
+ * point-to-point search that stops as soon as the target is settled
+ * (distance, path), and a bidirectional point-to-point search
+ * (bidirectionalDistance, bidirectionalPath).
+ *
+ * @author Hammadullah Nasir
+ *
+ * @param <V> for generics
+ * @param <E> for generics
+ */
+class ThreeTenShortestPaths<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> {
+	/**
+	 * Number of children per node in the priority queue.
+	 */
+	private static final int HEAP_ARITY = 4;
+
+	/**
+	 * The graph snapshot the searches run on.
+	 */
+	private final ThreeTenGraphCsr csr;
+	/**
+	 * Each edge, indexed by edge id.
+	 */
+	private final E[] edgeById;
+	/**
+	 * Weight of each outgoing edge, parallel to csr.targets().
+	 */
+	private final double[] outWeight;
+	/**
+	 * Weight of each incoming edge, parallel to csr.sources().
+	 */
+	private final double[] inWeight;
+
+	/**
+	 * Snapshots graph and the weight of every edge.
+	 *
+	 * @param graph   the graph to search
+	 * @param weights gives the weight of each edge
+	 * @throws IllegalArgumentException if any weight is negative or not a
+	 *                                  number
+	 */
+	@SuppressWarnings("unchecked")
+	public ThreeTenShortestPaths(ThreeTenGraph<V, E> graph, Transformer<? super E, ? extends Number> weights) {
+		csr = graph.toCsr();
+		int maxEdgeId = -1;
+		for (int id : csr.edgeIds()) {
+			maxEdgeId = Math.max(maxEdgeId, id);
+		}
+		edgeById = (E[]) new ThreeTenGraphComponent[maxEdgeId + 1];
+		double[] weightById = new double[maxEdgeId + 1];
+		for (E edge : graph.getEdges()) {
+			double w = weights.transform(edge).doubleValue();
+			if (!(w >= 0)) {
+				throw new IllegalArgumentException("Edge " + edge + " has invalid weight " + w);
+			}
+			edgeById[edge.getId()] = edge;
+			weightById[edge.getId()] = w;
+		}
+
+		int[] edgeIds = csr.edgeIds();
+		int[] inEdgeIds = csr.inEdgeIds();
+		outWeight = new double[edgeIds.length];
+		inWeight = new double[inEdgeIds.length];
+		for (int i = 0; i < edgeIds.length; i++) {
+			outWeight[i] = weightById[edgeIds[i]];
+			inWeight[i] = weightById[inEdgeIds[i]];
+		}
+	}
+
+	/**
+	 * Returns a weight function that parses each edge's text as a number. Edges
+	 * without text weigh 1.
+	 *
+	 * @param <E> the edge type
+	 * @return the weight function
+	 * @throws NumberFormatException (from transform) if an edge's text is not a
+	 *                               number
+	 */
+	public static <E extends ThreeTenGraphComponent> Transformer<E, Double> textWeights() {
+		return new Transformer<E, Double>() {
+			public Double transform(E edge) {
+				String text = edge.getText();
+				if (text == null) {
+					return 1.0;
+				}
+				return Double.parseDouble(text.trim());
+			}
+		};
+	}
+
+	/**
+	 * Computes the shortest path tree from source to every reachable vertex.
+	 *
+	 * @param source the vertex to start from
+	 * @return the shortest path tree
+	 * @throws IllegalArgumentException if source is not in the graph
+	 */
+	public Tree from(V source) {
+		int s = slotOf(source);
+		double[] dist = newDistances();
+		int[] parentPos = newParents();
+
+		search(s, -1, dist, parentPos);
+		return new Tree(dist, parentPos);
+	}
+
+	/**
+	 * Returns the length of the shortest path from source to target. The
+	 * search stops as soon as target is settled.
+	 *
+	 * @param source the start vertex
+	 * @param target the end vertex
+	 * @return the path length, or Double.POSITIVE_INFINITY if target is not
+	 *         reachable
+	 * @throws IllegalArgumentException if either vertex is not in the graph
+	 */
+	public double distance(V source, V target) {
+		int t = slotOf(target);
+		double[] dist = newDistances();
+
+		search(slotOf(source), t, dist, newParents());
+		return dist[t];
+	}
+
+	/**
+	 * Returns the edges of a shortest path from source to target. The search
+	 * stops as soon as target is settled.
+	 *
+	 * @param source the start vertex
+	 * @param target the end vertex
+	 * @return the edges in path order (empty if source equals target), or null
+	 *         if target is not reachable
+	 * @throws IllegalArgumentException if either vertex is not in the graph
+	 */
+	public List<E> path(V source, V target) {
+		int t = slotOf(target);
+		double[] dist = newDistances();
+		int[] parentPos = newParents();
+
+		search(slotOf(source), t, dist, parentPos);
+		if (dist[t] == Double.POSITIVE_INFINITY) {
+			return null;
+		}
+		return forwardPath(parentPos, t);
+	}
+
+	/**
+	 * Returns the length of the shortest path from source to target, searching
+	 * forward from source and backward from target at the same time.
+	 *
+	 * @param source the start vertex
+	 * @param target the end vertex
+	 * @return the path length, or Double.POSITIVE_INFINITY if target is not
+	 *         reachable
+	 * @throws IllegalArgumentException if either vertex is not in the graph
+	 */
+	public double bidirectionalDistance(V source, V target) {
+		Meeting meeting = bidirectional(slotOf(source), slotOf(target));
+		return meeting.length;
+	}
+
+	/**
+	 * Returns the edges of a shortest path from source to target, searching
+	 * forward from source and backward from target at the same time.
+	 *
+	 * @param source the start vertex
+	 * @param target the end vertex
+	 * @return the edges in path order (empty if source equals target), or null
+	 *         if target is not reachable
+	 * @throws IllegalArgumentException if either vertex is not in the graph
+	 */
+	public List<E> bidirectionalPath(V source, V target) {
+		Meeting meeting = bidirectional(slotOf(source), slotOf(target));
+
+		if (meeting.vertex == -1) {
+			return null;
+		}
+
+		List<E> path = forwardPath(meeting.forwardParent, meeting.vertex);
+		int[] inEdgeIds = csr.inEdgeIds();
+		int[] inOffsets = csr.inOffsets();
+		int v = meeting.vertex;
+		while (meeting.backwardParent[v] != -1) {
+			int pos = meeting.backwardParent[v];
+			path.add(edgeById[inEdgeIds[pos]]);
+			v = slotOfInPosition(inOffsets, pos);
+		}
+		return path;
+	}
+
+	/**
+	 * Runs Dijkstra from slot s. Stops once target is settled, or runs to
+	 * completion if target is -1.
+	 *
+	 * @param s         the source slot
+	 * @param target    the slot to stop at, or -1
+	 * @param dist      distance of each slot, all infinite on entry
+	 * @param parentPos position in csr.targets() of the tree edge into each slot
+	 */
+	private void search(int s, int target, double[] dist, int[] parentPos) {
+		int[] offsets = csr.offsets();
+		int[] targets = csr.targets();
+		ThreeTenIndexedHeap heap = new ThreeTenIndexedHeap(csr.vertexCount(), HEAP_ARITY);
+
+		dist[s] = 0;
+		heap.offer(s, 0);
+		while (!heap.isEmpty()) {
+			int u = heap.poll();
+			if (u == target) {
+				return;
+			}
+
+			double du = dist[u];
+			for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+				int v = targets[i];
+				double dv = du + outWeight[i];
+				if (dv < dist[v]) {
+					dist[v] = dv;
+					parentPos[v] = i;
+					heap.offer(v, dv);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the bidirectional search between slots s and t. Each round expands
+	 * the side with the smaller queue head, and the search stops once the two
+	 * heads together cannot beat the best path found so far.
+	 *
+	 * @param s the source slot
+	 * @param t the target slot
+	 * @return where the two searches met
+	 */
+	private Meeting bidirectional(int s, int t) {
+		int[] offsets = csr.offsets();
+		int[] targets = csr.targets();
+		int[] inOffsets = csr.inOffsets();
+		int[] sources = csr.sources();
+
+		double[] distF = newDistances();
+		double[] distB = newDistances();
+		int[] parentF = newParents();
+		int[] parentB = newParents();
+		ThreeTenIndexedHeap heapF = new ThreeTenIndexedHeap(csr.vertexCount(), HEAP_ARITY);
+		ThreeTenIndexedHeap heapB = new ThreeTenIndexedHeap(csr.vertexCount(), HEAP_ARITY);
+
+		Meeting meeting = new Meeting(parentF, parentB);
+		distF[s] = 0;
+		distB[t] = 0;
+		heapF.offer(s, 0);
+		heapB.offer(t, 0);
+		if (s == t) {
+			meeting.offer(s, 0);
+		}
+
+		while (!heapF.isEmpty() && !heapB.isEmpty()) {
+			if (heapF.minPriority() + heapB.minPriority() >= meeting.length) {
+				break;
+			}
+
+			if (heapF.minPriority() <= heapB.minPriority()) {
+				int u = heapF.poll();
+				for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+					int v = targets[i];
+					double dv = distF[u] + outWeight[i];
+					if (dv < distF[v]) {
+						distF[v] = dv;
+						parentF[v] = i;
+						heapF.offer(v, dv);
+						meeting.offer(v, dv + distB[v]);
+					}
+				}
+			} else {
+				int u = heapB.poll();
+				for (int i = inOffsets[u]; i < inOffsets[u + 1]; i++) {
+					int v = sources[i];
+					double dv = distB[u] + inWeight[i];
+					if (dv < distB[v]) {
+						distB[v] = dv;
+						parentB[v] = i;
+						heapB.offer(v, dv);
+						meeting.offer(v, distF[v] + dv);
+					}
+				}
+			}
+		}
+
+		return meeting;
+	}
+
+	/**
+	 * Builds the forward path that ends at slot v by following tree edges back
+	 * to the source.
+	 *
+	 * @param parentPos position in csr.targets() of the tree edge into each slot
+	 * @param v         the last slot on the path
+	 * @return the path edges in order
+	 */
+	private List<E> forwardPath(int[] parentPos, int v) {
+		int[] edgeIds = csr.edgeIds();
+		int[] offsets = csr.offsets();
+		ArrayList<E> path = new ArrayList<>();
+
+		while (parentPos[v] != -1) {
+			int pos = parentPos[v];
+			path.add(edgeById[edgeIds[pos]]);
+			v = slotOfInPosition(offsets, pos);
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	/**
+	 * Finds the slot whose adjacency range in a CSR offsets array holds pos.
+	 *
+	 * @param offsets the CSR offsets array
+	 * @param pos     a position in the matching adjacency array
+	 * @return the slot owning pos
+	 */
+	private static int slotOfInPosition(int[] offsets, int pos) {
+		int lo = 0;
+		int hi = offsets.length - 2;
+
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (offsets[mid] <= pos) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the snapshot slot of vertex.
+	 *
+	 * @param vertex the vertex
+	 * @return its slot
+	 * @throws IllegalArgumentException if vertex is not in the graph
+	 */
+	private int slotOf(V vertex) {
+		int slot = -1;
+
+		if (vertex != null) {
+			slot = csr.slotOf(vertex.getId());
+		}
+		if (slot == -1) {
+			throw new IllegalArgumentException("Vertex is not in the graph");
+		}
+		return slot;
+	}
+
+	/**
+	 * Creates a distance array with every slot unreached.
+	 *
+	 * @return the distances
+	 */
+	private double[] newDistances() {
+		double[] dist = new double[csr.vertexCount()];
+		Arrays.fill(dist, Double.POSITIVE_INFINITY);
+		return dist;
+	}
+
+	/**
+	 * Creates a parent array with no tree edges.
+	 *
+	 * @return the parent positions
+	 */
+	private int[] newParents() {
+		int[] parent = new int[csr.vertexCount()];
+		Arrays.fill(parent, -1);
+		return parent;
+	}
+
+	/**
+	 * Best meeting point found so far by a bidirectional search.
+	 */
+	private static final class Meeting {
+		/**
+		 * Tree edge positions of the forward search.
+		 */
+		private final int[] forwardParent;
+		/**
+		 * Tree edge positions of the backward search.
+		 */
+		private final int[] backwardParent;
+		/**
+		 * Length of the best path, or infinity if none was found.
+		 */
+		private double length = Double.POSITIVE_INFINITY;
+		/**
+		 * The slot the best path passes through, or -1.
+		 */
+		private int vertex = -1;
+
+		/**
+		 * Creates an empty meeting for the given search trees.
+		 *
+		 * @param forwardParent  tree edge positions of the forward search
+		 * @param backwardParent tree edge positions of the backward search
+		 */
+		Meeting(int[] forwardParent, int[] backwardParent) {
+			this.forwardParent = forwardParent;
+			this.backwardParent = backwardParent;
+		}
+
+		/**
+		 * Records a path through slot v if it is shorter than the best so far.
+		 *
+		 * @param v      the slot reached by both searches
+		 * @param length the length of the path through v
+		 */
+		void offer(int v, double length) {
+			if (length < this.length) {
+				this.length = length;
+				this.vertex = v;
+			}
+		}
+	}
+
+	/**
+	 * Shortest path tree from a single source.
+	 */
+	public final class Tree {
+		/**
+		 * Distance of each slot from the source.
+		 */
+		private final double[] dist;
+		/**
+		 * Position in csr.targets() of the tree edge into each slot.
+		 */
+		private final int[] parentPos;
+
+		/**
+		 * Wraps the arrays of a finished search.
+		 *
+		 * @param dist      distance of each slot
+		 * @param parentPos tree edge position of each slot
+		 */
+		private Tree(double[] dist, int[] parentPos) {
+			this.dist = dist;
+			this.parentPos = parentPos;
+		}
+
+		/**
+		 * Returns the length of the shortest path from the source to vertex.
+		 *
+		 * @param vertex the end vertex
+		 * @return the path length, or Double.POSITIVE_INFINITY if vertex is not
+		 *         reachable
+		 * @throws IllegalArgumentException if vertex is not in the graph
+		 */
+		public double distance(V vertex) {
+			return dist[slotOf(vertex)];
+		}
+
+		/**
+		 * Returns the edges of a shortest path from the source to vertex.
+		 *
+		 * @param vertex the end vertex
+		 * @return the edges in path order, or null if vertex is not reachable
+		 * @throws IllegalArgumentException if vertex is not in the graph
+		 */
+		public List<E> pathTo(V vertex) {
+			int v = slotOf(vertex);
+
+			if (dist[v] == Double.POSITIVE_INFINITY) {
+				return null;
+			}
+			return forwardPath(parentPos, v);
+		}
+	}
+}
@@ -0,0 +1,980 @@
+import edu.uci.ics.jung.graph.Graph;
+import edu.uci.ics.jung.graph.DirectedGraph;
+
+import edu.uci.ics.jung.graph.util.Pair;
+import edu.uci.ics.jung.graph.util.EdgeType;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Read-only view of part of a ThreeTenGraph. The view holds the vertices of
+ * the parent that pass a vertex filter, and the edges that pass an edge
+ * filter and have both ends in the view. Nothing is copied: every query walks
+ * the parent's adjacency lists and applies the filters as it goes, so the
+ * view follows later changes to the parent and to whatever the filters read.
+ *
+ * <p>
+ * Queries about one vertex cost the same as on the parent plus one filter
+ * test per edge. getVertexCount and getEdgeCount walk the whole parent, and
+ * getVertices and getEdges return lazy collections rather than copies. To
+ * run many queries over the same region, or an analysis that wants arrays,
+ * toCsr copies just the region into a CSR snapshot.
+ *
+ * <p>
+ * Like the parent, a view is not thread-safe, and the parent must not be
+ * changed while a walk over the view is running. Every method that would
+ * change the graph throws UnsupportedOperationException.
+ *
+ * @author Hammadullah Nasir
+ *
+ * @param <V> for generics
+ * @param <E> for generics
+ */
+class ThreeTenSubgraph<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent>
+		implements Graph<V, E>, DirectedGraph<V, E> {
+	/**
+	 * The graph being viewed.
+	 */
+	private final ThreeTenGraph<V, E> parent;
+	/**
+	 * Which of the parent's vertices are in the view.
+	 */
+	private final Predicate<? super V> vertexFilter;
+	/**
+	 * Which of the parent's edges are in the view, if both ends are.
+	 */
+	private final Predicate<? super E> edgeFilter;
+
+	/**
+	 * Creates a view of parent's vertices that pass vertexFilter and edges
+	 * that pass edgeFilter and join two such vertices.
+	 *
+	 * @param parent       the graph to view
+	 * @param vertexFilter which vertices to keep
+	 * @param edgeFilter   which edges to keep
+	 * @throws IllegalArgumentException if any argument is null
+	 */
+	public ThreeTenSubgraph(ThreeTenGraph<V, E> parent, Predicate<? super V> vertexFilter,
+			Predicate<? super E> edgeFilter) {
+		if (parent == null || vertexFilter == null || edgeFilter == null) {
+			throw new IllegalArgumentException("parent and filters cannot be null");
+		}
+		this.parent = parent;
+		this.vertexFilter = vertexFilter;
+		this.edgeFilter = edgeFilter;
+	}
+
+	/**
+	 * Returns the subgraph of parent induced by the vertices that pass
+	 * vertexFilter: those vertices and every edge between them.
+	 *
+	 * @param <V>          the vertex type
+	 * @param <E>          the edge type
+	 * @param parent       the graph to view
+	 * @param vertexFilter which vertices to keep
+	 * @return the view
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> ThreeTenSubgraph<V, E> induced(
+			ThreeTenGraph<V, E> parent, Predicate<? super V> vertexFilter) {
+		return new ThreeTenSubgraph<>(parent, vertexFilter, e -> true);
+	}
+
+	/**
+	 * Returns the subgraph of parent induced by the vertices whose ids are set
+	 * in ids. The bit set is not copied, so setting or clearing bits later
+	 * changes the view.
+	 *
+	 * @param <V>    the vertex type
+	 * @param <E>    the edge type
+	 * @param parent the graph to view
+	 * @param ids    the ids of the vertices to keep
+	 * @return the view
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> ThreeTenSubgraph<V, E> induced(
+			ThreeTenGraph<V, E> parent, BitSet ids) {
+		if (ids == null) {
+			throw new IllegalArgumentException("ids cannot be null");
+		}
+		return new ThreeTenSubgraph<>(parent, v -> ids.get(v.getId()), e -> true);
+	}
+
+	/**
+	 * Returns a view of every vertex of parent and the edges that pass
+	 * edgeFilter.
+	 *
+	 * @param <V>        the vertex type
+	 * @param <E>        the edge type
+	 * @param parent     the graph to view
+	 * @param edgeFilter which edges to keep
+	 * @return the view
+	 */
+	public static <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> ThreeTenSubgraph<V, E> ofEdges(
+			ThreeTenGraph<V, E> parent, Predicate<? super E> edgeFilter) {
+		return new ThreeTenSubgraph<>(parent, v -> true, edgeFilter);
+	}
+
+	/**
+	 * Returns the graph this is a view of.
+	 *
+	 * @return the parent graph
+	 */
+	public ThreeTenGraph<V, E> getParent() {
+		return parent;
+	}
+
+	/**
+	 * Copies the view into a CSR snapshot. Slots follow the parent's
+	 * getVertices() order, vertices and edges keep their component ids, and
+	 * only the view's own vertices and edges are visited, so the cost is that
+	 * of one pass over the parent's vertex list plus the adjacency lists of
+	 * the vertices kept.
+	 *
+	 * @return the CSR snapshot
+	 */
+	public ThreeTenGraphCsr toCsr() {
+		ArrayList<V> kept = new ArrayList<>();
+		int maxId = -1;
+		for (V vertex : parent.getVertices()) {
+			if (vertexFilter.test(vertex)) {
+				kept.add(vertex);
+				maxId = Math.max(maxId, vertex.getId());
+			}
+		}
+
+		int n = kept.size();
+		int[] vertexIds = new int[n];
+		int[] slotOfId = new int[maxId + 1];
+		Arrays.fill(slotOfId, -1);
+		for (int slot = 0; slot < n; slot++) {
+			vertexIds[slot] = kept.get(slot).getId();
+			slotOfId[vertexIds[slot]] = slot;
+		}
+
+		int[] offsets = new int[n + 1];
+		Edges edges = new Edges(Math.max(16, n));
+		for (int slot = 0; slot < n; slot++) {
+			offsets[slot] = edges.count;
+			parent.forEachOutPair(kept.get(slot), (edge, dest) -> {
+				int id = dest.getId();
+				int target = id < slotOfId.length ? slotOfId[id] : -1;
+				if (target != -1 && edgeFilter.test(edge)) {
+					edges.add(target, edge.getId());
+				}
+			});
+		}
+		offsets[n] = edges.count;
+
+		return new ThreeTenGraphCsr(vertexIds, offsets, Arrays.copyOf(edges.targets, edges.count),
+				Arrays.copyOf(edges.ids, edges.count));
+	}
+
+	/**
+	 * Returns a lazy collection of the view's edges. Iterating it walks the
+	 * outgoing edges of each vertex in the view; size() counts them all.
+	 *
+	 * @return the edges
+	 */
+	public Collection<E> getEdges() {
+		return new AbstractCollection<E>() {
+			public Iterator<E> iterator() {
+				return new EdgeIterator();
+			}
+
+			@SuppressWarnings("unchecked")
+			public boolean contains(Object o) {
+				return o instanceof ThreeTenGraphComponent && containsEdge((E) o);
+			}
+
+			public int size() {
+				return getEdgeCount();
+			}
+		};
+	}
+
+	/**
+	 * Returns a lazy collection of the view's vertices, in the parent's
+	 * order. size() counts them all.
+	 *
+	 * @return the vertices
+	 */
+	public Collection<V> getVertices() {
+		return new AbstractCollection<V>() {
+			public Iterator<V> iterator() {
+				return new VertexIterator();
+			}
+
+			@SuppressWarnings("unchecked")
+			public boolean contains(Object o) {
+				return o instanceof ThreeTenGraphComponent && containsVertex((V) o);
+			}
+
+			public int size() {
+				return getVertexCount();
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of edges in the view. Walks every vertex in it.
+	 *
+	 * @return the edge count
+	 */
+	public int getEdgeCount() {
+		int[] count = new int[1];
+		for (V vertex : parent.getVertices()) {
+			if (vertexFilter.test(vertex)) {
+				forEachOutEdge(vertex, e -> count[0]++);
+			}
+		}
+		return count[0];
+	}
+
+	/**
+	 * Returns the number of vertices in the view. Tests every vertex of the
+	 * parent.
+	 *
+	 * @return the vertex count
+	 */
+	public int getVertexCount() {
+		int count = 0;
+		for (V vertex : parent.getVertices()) {
+			if (vertexFilter.test(vertex)) {
+				count += 1;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the incoming edges of vertex that are in the view.
+	 *
+	 * @param vertex the vertex whose incoming edges are to be returned
+	 * @return the edges, empty if vertex is not in the view
+	 */
+	public Collection<E> getInEdges(V vertex) {
+		ArrayList<E> temp = new ArrayList<>();
+		forEachInEdge(vertex, temp::add);
+		return temp;
+	}
+
+	/**
+	 * Returns the outgoing edges of vertex that are in the view.
+	 *
+	 * @param vertex the vertex whose outgoing edges are to be returned
+	 * @return the edges, empty if vertex is not in the view
+	 */
+	public Collection<E> getOutEdges(V vertex) {
+		ArrayList<E> temp = new ArrayList<>();
+		forEachOutEdge(vertex, temp::add);
+		return temp;
+	}
+
+	/**
+	 * Returns the distinct sources of vertex's incoming edges in the view.
+	 *
+	 * @param vertex the vertex whose predecessors are to be returned
+	 * @return the predecessors, empty if vertex is not in the view
+	 */
+	public Collection<V> getPredecessors(V vertex) {
+		LinkedHashSet<V> temp = new LinkedHashSet<>();
+		forEachPredecessor(vertex, temp::add);
+		return new ArrayList<>(temp);
+	}
+
+	/**
+	 * Returns the destination of each of vertex's outgoing edges in the view,
+	 * once per edge, as ThreeTenGraph does.
+	 *
+	 * @param vertex the vertex whose successors are to be returned
+	 * @return the successors, empty if vertex is not in the view
+	 */
+	public Collection<V> getSuccessors(V vertex) {
+		ArrayList<V> temp = new ArrayList<>();
+		forEachSuccessor(vertex, temp::add);
+		return temp;
+	}
+
+	/**
+	 * Passes each outgoing edge of vertex in the view to action.
+	 *
+	 * @param vertex the vertex whose outgoing edges are visited
+	 * @param action called once per outgoing edge
+	 * @return true if vertex is in the view, false otherwise
+	 */
+	public boolean forEachOutEdge(V vertex, Consumer<? super E> action) {
+		if (!containsVertex(vertex)) {
+			return false;
+		}
+		parent.forEachOutPair(vertex, (edge, dest) -> {
+			if (vertexFilter.test(dest) && edgeFilter.test(edge)) {
+				action.accept(edge);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Passes each incoming edge of vertex in the view to action.
+	 *
+	 * @param vertex the vertex whose incoming edges are visited
+	 * @param action called once per incoming edge
+	 * @return true if vertex is in the view, false otherwise
+	 */
+	public boolean forEachInEdge(V vertex, Consumer<? super E> action) {
+		if (!containsVertex(vertex)) {
+			return false;
+		}
+		parent.forEachInPair(vertex, (edge, source) -> {
+			if (vertexFilter.test(source) && edgeFilter.test(edge)) {
+				action.accept(edge);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Passes the destination of each outgoing edge of vertex in the view to
+	 * action, once per edge.
+	 *
+	 * @param vertex the vertex whose successors are visited
+	 * @param action called once per outgoing edge
+	 * @return true if vertex is in the view, false otherwise
+	 */
+	public boolean forEachSuccessor(V vertex, Consumer<? super V> action) {
+		if (!containsVertex(vertex)) {
+			return false;
+		}
+		parent.forEachOutPair(vertex, (edge, dest) -> {
+			if (vertexFilter.test(dest) && edgeFilter.test(edge)) {
+				action.accept(dest);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Passes the source of each incoming edge of vertex in the view to action,
+	 * once per edge.
+	 *
+	 * @param vertex the vertex whose predecessors are visited
+	 * @param action called once per incoming edge
+	 * @return true if vertex is in the view, false otherwise
+	 */
+	public boolean forEachPredecessor(V vertex, Consumer<? super V> action) {
+		if (!containsVertex(vertex)) {
+			return false;
+		}
+		parent.forEachInPair(vertex, (edge, source) -> {
+			if (vertexFilter.test(source) && edgeFilter.test(edge)) {
+				action.accept(source);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Passes each edge of the view incident to vertex to action: outgoing
+	 * edges first, then incoming edges that are not self-loops.
+	 *
+	 * @param vertex the vertex whose incident edges are visited
+	 * @param action called once per incident edge
+	 * @return true if vertex is in the view, false otherwise
+	 */
+	public boolean forEachIncidentEdge(V vertex, Consumer<? super E> action) {
+		if (!forEachOutEdge(vertex, action)) {
+			return false;
+		}
+		parent.forEachInPair(vertex, (edge, source) -> {
+			if (!source.equals(vertex) && vertexFilter.test(source) && edgeFilter.test(edge)) {
+				action.accept(edge);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Returns the source of an edge in the view.
+	 *
+	 * @param directedEdge the edge
+	 * @return its source, or null if the edge is not in the view
+	 */
+	public V getSource(E directedEdge) {
+		return containsEdge(directedEdge) ? parent.getSource(directedEdge) : null;
+	}
+
+	/**
+	 * Returns the destination of an edge in the view.
+	 *
+	 * @param directedEdge the edge
+	 * @return its destination, or null if the edge is not in the view
+	 */
+	public V getDest(E directedEdge) {
+		return containsEdge(directedEdge) ? parent.getDest(directedEdge) : null;
+	}
+
+	/**
+	 * Returns the endpoints of an edge in the view.
+	 *
+	 * @param edge the edge
+	 * @return its source and destination, or null if the edge is not in the
+	 *         view
+	 */
+	public Pair<V> getEndpoints(E edge) {
+		return containsEdge(edge) ? parent.getEndpoints(edge) : null;
+	}
+
+	/**
+	 * Returns the distinct vertices that share an edge of the view with vertex,
+	 * including vertex itself if it has a self-loop.
+	 *
+	 * @param vertex the vertex whose neighbors are to be returned
+	 * @return the neighbors, or null if vertex is not in the view
+	 */
+	public Collection<V> getNeighbors(V vertex) {
+		LinkedHashSet<V> temp = new LinkedHashSet<>();
+
+		if (!forEachSuccessor(vertex, temp::add)) {
+			return null;
+		}
+		forEachPredecessor(vertex, temp::add);
+
+		return new ArrayList<>(temp);
+	}
+
+	/**
+	 * Returns the edges of the view incident to vertex.
+	 *
+	 * @param vertex the vertex whose incident edges are to be returned
+	 * @return the edges, or null if vertex is not in the view
+	 */
+	public Collection<E> getIncidentEdges(V vertex) {
+		ArrayList<E> temp = new ArrayList<>();
+
+		if (!forEachIncidentEdge(vertex, temp::add)) {
+			return null;
+		}
+
+		return temp;
+	}
+
+	/**
+	 * Returns the source and destination of an edge in the view.
+	 *
+	 * @param edge the edge whose incident vertices are to be returned
+	 * @return the two ends, or null if the edge is not in the view
+	 */
+	public Collection<V> getIncidentVertices(E edge) {
+		Pair<V> ends = getEndpoints(edge);
+
+		if (ends == null) {
+			return null;
+		}
+
+		ArrayList<V> temp = new ArrayList<>();
+		temp.add(ends.getFirst());
+		temp.add(ends.getSecond());
+		return temp;
+	}
+
+	/**
+	 * Finds an edge of the view from v1 to v2.
+	 *
+	 * @param v1 the source
+	 * @param v2 the destination
+	 * @return such an edge, or null if there is none or either vertex is not
+	 *         in the view
+	 */
+	public E findEdge(V v1, V v2) {
+		if (!containsVertex(v1) || !containsVertex(v2)) {
+			return null;
+		}
+
+		ArrayList<E> found = new ArrayList<>(1);
+		parent.forEachOutPair(v1, (edge, dest) -> {
+			if (found.isEmpty() && dest.equals(v2) && edgeFilter.test(edge)) {
+				found.add(edge);
+			}
+		});
+		return found.isEmpty() ? null : found.get(0);
+	}
+
+	/**
+	 * Returns every edge of the view from v1 to v2.
+	 *
+	 * @param v1 the source
+	 * @param v2 the destination
+	 * @return the edges, or null if there are none
+	 */
+	public Collection<E> findEdgeSet(V v1, V v2) {
+		if (!containsVertex(v1) || !containsVertex(v2)) {
+			return null;
+		}
+
+		ArrayList<E> found = new ArrayList<>();
+		parent.forEachOutPair(v1, (edge, dest) -> {
+			if (dest.equals(v2) && edgeFilter.test(edge)) {
+				found.add(edge);
+			}
+		});
+		return found.isEmpty() ? null : found;
+	}
+
+	/**
+	 * Not supported; a view is read-only.
+	 *
+	 * @param e  the edge
+	 * @param v1 the source
+	 * @param v2 the destination
+	 * @return never
+	 * @throws UnsupportedOperationException always
+	 */
+	public boolean addEdge(E e, V v1, V v2) {
+		throw new UnsupportedOperationException("subgraph views are read-only");
+	}
+
+	/**
+	 * Not supported; a view is read-only.
+	 *
+	 * @param vertex the vertex
+	 * @return never
+	 * @throws UnsupportedOperationException always
+	 */
+	public boolean addVertex(V vertex) {
+		throw new UnsupportedOperationException("subgraph views are read-only");
+	}
+
+	/**
+	 * Not supported; a view is read-only.
+	 *
+	 * @param edge the edge
+	 * @return never
+	 * @throws UnsupportedOperationException always
+	 */
+	public boolean removeEdge(E edge) {
+		throw new UnsupportedOperationException("subgraph views are read-only");
+	}
+
+	/**
+	 * Not supported; a view is read-only.
+	 *
+	 * @param vertex the vertex
+	 * @return never
+	 * @throws UnsupportedOperationException always
+	 */
+	public boolean removeVertex(V vertex) {
+		throw new UnsupportedOperationException("subgraph views are read-only");
+	}
+
+	/**
+	 * Returns true if vertex is in the parent and passes the vertex filter.
+	 *
+	 * @param vertex the vertex whose presence is being queried
+	 * @return true iff the view contains vertex
+	 */
+	public boolean containsVertex(V vertex) {
+		return parent.containsVertex(vertex) && vertexFilter.test(vertex);
+	}
+
+	/**
+	 * Returns true if edge is in the parent, passes the edge filter and joins
+	 * two vertices of the view.
+	 *
+	 * @param edge the edge whose presence is being queried
+	 * @return true iff the view contains edge
+	 */
+	public boolean containsEdge(E edge) {
+		Pair<V> ends = parent.getEndpoints(edge);
+		return ends != null && vertexFilter.test(ends.getFirst()) && vertexFilter.test(ends.getSecond())
+				&& edgeFilter.test(edge);
+	}
+
+	/**
+	 * Returns true if edge is in the view and vertex is one of its ends.
+	 *
+	 * @param vertex the vertex
+	 * @param edge   the edge
+	 * @return true if vertex and edge are incident in the view
+	 */
+	public boolean isIncident(V vertex, E edge) {
+		return containsEdge(edge) && parent.isIncident(vertex, edge);
+	}
+
+	/**
+	 * Returns true if v1 and v2 share an edge of the view.
+	 *
+	 * @param v1 the first vertex to test
+	 * @param v2 the second vertex to test
+	 * @return true if v1 and v2 are neighbors in the view
+	 */
+	public boolean isNeighbor(V v1, V v2) {
+		return findEdge(v1, v2) != null || findEdge(v2, v1) != null;
+	}
+
+	/**
+	 * Returns true if the view has an edge from v2 to v1.
+	 *
+	 * @param v1 the first vertex to be queried
+	 * @param v2 the second vertex to be queried
+	 * @return true if v2 is a predecessor of v1 in the view
+	 */
+	public boolean isPredecessor(V v1, V v2) {
+		return findEdge(v2, v1) != null;
+	}
+
+	/**
+	 * Returns true if the view has an edge from v1 to v2.
+	 *
+	 * @param v1 the first vertex to be queried
+	 * @param v2 the second vertex to be queried
+	 * @return true if v2 is a successor of v1 in the view
+	 */
+	public boolean isSuccessor(V v1, V v2) {
+		return findEdge(v1, v2) != null;
+	}
+
+	/**
+	 * Returns the number of edges of the view incident to vertex, counting
+	 * self-loops once.
+	 *
+	 * @param vertex the vertex whose degree is to be returned
+	 * @return the degree, or 0 if vertex is not in the view
+	 */
+	public int degree(V vertex) {
+		int[] count = new int[1];
+		forEachIncidentEdge(vertex, e -> count[0]++);
+		return count[0];
+	}
+
+	/**
+	 * Returns the number of distinct neighbors of vertex in the view.
+	 *
+	 * @param vertex the vertex whose neighbor count is to be returned
+	 * @return the neighbor count, or 0 if vertex is not in the view
+	 */
+	public int getNeighborCount(V vertex) {
+		Collection<V> neighbors = getNeighbors(vertex);
+		return neighbors == null ? 0 : neighbors.size();
+	}
+
+	/**
+	 * Returns the number of incoming edges of vertex in the view.
+	 *
+	 * @param vertex the vertex whose indegree is to be calculated
+	 * @return the in-degree, or 0 if vertex is not in the view
+	 */
+	public int inDegree(V vertex) {
+		int[] count = new int[1];
+		forEachInEdge(vertex, e -> count[0]++);
+		return count[0];
+	}
+
+	/**
+	 * Returns the number of outgoing edges of vertex in the view.
+	 *
+	 * @param vertex the vertex whose outdegree is to be calculated
+	 * @return the out-degree, or 0 if vertex is not in the view
+	 */
+	public int outDegree(V vertex) {
+		int[] count = new int[1];
+		forEachOutEdge(vertex, e -> count[0]++);
+		return count[0];
+	}
+
+	/**
+	 * Returns the number of distinct predecessors of vertex in the view.
+	 *
+	 * @param vertex the vertex whose predecessor count is to be returned
+	 * @return the predecessor count, or 0 if vertex is not in the view
+	 */
+	public int getPredecessorCount(V vertex) {
+		return getPredecessors(vertex).size();
+	}
+
+	/**
+	 * Returns the size of getSuccessors(vertex), the out-degree.
+	 *
+	 * @param vertex the vertex whose successor count is to be returned
+	 * @return the successor count, or 0 if vertex is not in the view
+	 */
+	public int getSuccessorCount(V vertex) {
+		return outDegree(vertex);
+	}
+
+	/**
+	 * Returns the vertex at the other end of edge from vertex.
+	 *
+	 * @param vertex the vertex to be queried
+	 * @param edge   the edge to be queried
+	 * @return the other end, or null if edge is not in the view
+	 */
+	public V getOpposite(V vertex, E edge) {
+		Pair<V> p = getEndpoints(edge);
+		if (p == null) {
+			return null;
+		}
+		return p.getFirst().equals(vertex) ? p.getSecond() : p.getFirst();
+	}
+
+	/**
+	 * Returns true if edge is in the view and vertex is its source.
+	 *
+	 * @param vertex the vertex to be queried
+	 * @param edge   the edge to be queried
+	 * @return true iff vertex is the source of edge
+	 */
+	public boolean isSource(V vertex, E edge) {
+		V source = getSource(edge);
+		return source != null && source.equals(vertex);
+	}
+
+	/**
+	 * Returns true if edge is in the view and vertex is its destination.
+	 *
+	 * @param vertex the vertex to be queried
+	 * @param edge   the edge to be queried
+	 * @return true iff vertex is the destination of edge
+	 */
+	public boolean isDest(V vertex, E edge) {
+		V dest = getDest(edge);
+		return dest != null && dest.equals(vertex);
+	}
+
+	/**
+	 * Not supported; a view is read-only.
+	 *
+	 * @param e        the edge
+	 * @param v1       the source
+	 * @param v2       the destination
+	 * @param edgeType the edge type
+	 * @return never
+	 * @throws UnsupportedOperationException always
+	 */
+	public boolean addEdge(E e, V v1, V v2, EdgeType edgeType) {
+		throw new UnsupportedOperationException("subgraph views are read-only");
+	}
+
+	/**
+	 * Not supported; a view is read-only.
+	 *
+	 * @param edge     the edge
+	 * @param vertices the ends
+	 * @return never
+	 * @throws UnsupportedOperationException always
+	 */
+	public boolean addEdge(E edge, Collection<? extends V> vertices) {
+		throw new UnsupportedOperationException("subgraph views are read-only");
+	}
+
+	/**
+	 * Not supported; a view is read-only.
+	 *
+	 * @param edge     the edge
+	 * @param vertices the ends
+	 * @param edgeType the edge type
+	 * @return never
+	 * @throws UnsupportedOperationException always
+	 */
+	public boolean addEdge(E edge, Collection<? extends V> vertices, EdgeType edgeType) {
+		throw new UnsupportedOperationException("subgraph views are read-only");
+	}
+
+	/**
+	 * Returns the number of edges of type edgeType in the view.
+	 *
+	 * @param edgeType the type of edge for which the count is to be returned
+	 * @return the edge count for DIRECTED, 0 otherwise
+	 */
+	public int getEdgeCount(EdgeType edgeType) {
+		return edgeType == EdgeType.DIRECTED ? getEdgeCount() : 0;
+	}
+
+	/**
+	 * Returns the edges of type edgeType in the view.
+	 *
+	 * @param edgeType the type of edges to be returned
+	 * @return every edge for DIRECTED, null otherwise
+	 */
+	public Collection<E> getEdges(EdgeType edgeType) {
+		return edgeType == EdgeType.DIRECTED ? getEdges() : null;
+	}
+
+	/**
+	 * Returns the edge type of edge in the view.
+	 *
+	 * @param edge to use
+	 * @return DIRECTED if edge is in the view, null otherwise
+	 */
+	public EdgeType getEdgeType(E edge) {
+		return containsEdge(edge) ? EdgeType.DIRECTED : null;
+	}
+
+	/**
+	 * Returns the default edge type for the view.
+	 *
+	 * @return DIRECTED
+	 */
+	public EdgeType getDefaultEdgeType() {
+		return EdgeType.DIRECTED;
+	}
+
+	/**
+	 * Returns the number of vertices that are incident to edge.
+	 *
+	 * @param edge the edge whose incident vertex count is to be returned
+	 * @return 2
+	 */
+	public int getIncidentCount(E edge) {
+		return 2;
+	}
+
+	/**
+	 * Walks the parent's vertices, skipping those not in the view.
+	 */
+	private final class VertexIterator implements Iterator<V> {
+		/**
+		 * The parent's vertices.
+		 */
+		private final Iterator<V> all = parent.getVertices().iterator();
+		/**
+		 * The next vertex to return, or null when done.
+		 */
+		private V next = advance();
+
+		/**
+		 * Returns the next vertex of the parent that is in the view.
+		 *
+		 * @return the vertex, or null if there are no more
+		 */
+		private V advance() {
+			while (all.hasNext()) {
+				V vertex = all.next();
+				if (vertexFilter.test(vertex)) {
+					return vertex;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Returns whether there is another vertex.
+		 *
+		 * @return true if next will return a vertex
+		 */
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		/**
+		 * Returns the next vertex.
+		 *
+		 * @return the vertex
+		 */
+		public V next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			V vertex = next;
+			next = advance();
+			return vertex;
+		}
+	}
+
+	/**
+	 * Walks the outgoing edges of each vertex in the view, one vertex at a
+	 * time, so only a single vertex's edges are ever buffered.
+	 */
+	private final class EdgeIterator implements Iterator<E> {
+		/**
+		 * The vertices whose edges are still to come.
+		 */
+		private final VertexIterator vertices = new VertexIterator();
+		/**
+		 * The current vertex's edges in the view.
+		 */
+		private final ArrayList<E> buffer = new ArrayList<>();
+		/**
+		 * Position of the next edge in buffer.
+		 */
+		private int at = 0;
+
+		/**
+		 * Returns whether there is another edge, filling the buffer from the
+		 * next vertices as needed.
+		 *
+		 * @return true if next will return an edge
+		 */
+		public boolean hasNext() {
+			while (at == buffer.size() && vertices.hasNext()) {
+				buffer.clear();
+				at = 0;
+				forEachOutEdge(vertices.next(), buffer::add);
+			}
+			return at < buffer.size();
+		}
+
+		/**
+		 * Returns the next edge.
+		 *
+		 * @return the edge
+		 */
+		public E next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return buffer.get(at++);
+		}
+	}
+
+	/**
+	 * Growable target and edge id arrays for toCsr.
+	 */
+	private static final class Edges {
+		/**
+		 * Target slot of each edge.
+		 */
+		private int[] targets;
+		/**
+		 * Id of each edge.
+		 */
+		private int[] ids;
+		/**
+		 * Number of edges added.
+		 */
+		private int count = 0;
+
+		/**
+		 * Creates empty arrays with room for capacity edges.
+		 *
+		 * @param capacity the initial room
+		 */
+		Edges(int capacity) {
+			targets = new int[capacity];
+			ids = new int[capacity];
+		}
+
+		/**
+		 * Appends an edge.
+		 *
+		 * @param target its target slot
+		 * @param id     its id
+		 */
+		void add(int target, int id) {
+			if (count == targets.length) {
+				targets = Arrays.copyOf(targets, count * 2);
+				ids = Arrays.copyOf(ids, count * 2);
+			}
+			targets[count] = target;
+			ids[count] = id;
+			count += 1;
+		}
+	}
+}
@@ -0,0 +1,529 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Keeps a topological order of a ThreeTenGraph up to date as the graph
+ * changes. The order is computed once with Kahn's algorithm and then
+ * maintained with the Pearce-Kelly algorithm: when an edge u -> v is added
+ * and u already comes before v, nothing is done; otherwise only the vertices
+ * whose positions lie between v and u are searched and reordered.
+ *
+ * <p>
+ * Edges that would close a cycle are handled in one of two ways:
+ *
+ * <ul>
+ * <li>addEdge on this class checks first and rejects such an edge, leaving
+ * the graph unchanged;</li>
+ * <li>an edge added to the graph directly cannot be rejected, so it is
+ * flagged instead. Flagged edges are left out of the order; every other edge
+ * goes from an earlier to a later vertex. When an edge is removed, the
+ * flagged edges are tried again, and those that no longer close a cycle
+ * rejoin the order.</li>
+ * </ul>
+ *
+ * <p>
+ * Removing edges never breaks an order, and a new vertex goes at the end.
+ * The order listens to its graph, so it is updated on the thread that
+ * changes the graph and is not safe to use from other threads.
+ *
+ * @author Hammadullah Nasir
+ *
+ * @param <V> for generics
+ * @param <E> for generics
+ */
+class ThreeTenTopologicalOrder<V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent>
+		implements ThreeTenGraphListener<V, E> {
+	/**
+	 * The graph being ordered.
+	 */
+	private final ThreeTenGraph<V, E> graph;
+
+	/**
+	 * Vertex at each position, or null where a removed vertex was.
+	 */
+	private Object[] atPosition;
+	/**
+	 * Number of positions in use, holes included.
+	 */
+	private int length = 0;
+	/**
+	 * Number of holes left by removed vertices.
+	 */
+	private int holes = 0;
+	/**
+	 * Position of each vertex id, or -1.
+	 */
+	private int[] position = new int[0];
+
+	/**
+	 * Edges left out of the order because they close a cycle, by edge id.
+	 */
+	private final LinkedHashMap<Integer, Flagged<V, E>> flagged = new LinkedHashMap<>();
+
+	/**
+	 * Visit stamp of each vertex id, for the searches.
+	 */
+	private int[] mark = new int[0];
+	/**
+	 * Stamp of the current search.
+	 */
+	private int stamp = 0;
+
+	/**
+	 * Orders graph with Kahn's algorithm and starts following its changes.
+	 * If the graph already has cycles, the edges that go backwards in the
+	 * order found are flagged.
+	 *
+	 * @param graph the graph to order
+	 */
+	public ThreeTenTopologicalOrder(ThreeTenGraph<V, E> graph) {
+		this.graph = graph;
+		atPosition = new Object[Math.max(16, graph.getVertexCount())];
+		kahn();
+		graph.addListener(this);
+	}
+
+	/**
+	 * Adds an edge to the graph unless it would close a cycle with the edges
+	 * already in the order.
+	 *
+	 * @param edge   the edge to add
+	 * @param source its source
+	 * @param dest   its destination
+	 * @return true if the edge was added; false if it would close a cycle or
+	 *         the graph refused it
+	 */
+	public boolean addEdge(E edge, V source, V dest) {
+		if (graph.containsVertex(source) && graph.containsVertex(dest) && !place(source, dest)) {
+			return false;
+		}
+		return graph.addEdge(edge, source, dest);
+	}
+
+	/**
+	 * Returns the vertices in topological order. The list is a copy.
+	 *
+	 * @return every vertex, each before all vertices it has an unflagged edge
+	 *         to
+	 */
+	@SuppressWarnings("unchecked")
+	public List<V> getOrder() {
+		ArrayList<V> order = new ArrayList<>(length - holes);
+		for (int i = 0; i < length; i++) {
+			if (atPosition[i] != null) {
+				order.add((V) atPosition[i]);
+			}
+		}
+		return order;
+	}
+
+	/**
+	 * Returns whether a comes before b in the order. Runs in constant time.
+	 *
+	 * @param a a vertex
+	 * @param b another vertex
+	 * @return true if both are in the graph and a comes first
+	 */
+	public boolean comesBefore(V a, V b) {
+		int pa = positionOf(a.getId());
+		int pb = positionOf(b.getId());
+		return pa != -1 && pb != -1 && pa < pb;
+	}
+
+	/**
+	 * Returns whether any edge of the graph is flagged, that is, whether the
+	 * graph has a cycle.
+	 *
+	 * @return true if there is a cycle
+	 */
+	public boolean hasCycle() {
+		return !flagged.isEmpty();
+	}
+
+	/**
+	 * Returns whether an edge is flagged for closing a cycle.
+	 *
+	 * @param edge the edge
+	 * @return true if the edge is left out of the order
+	 */
+	public boolean isFlagged(E edge) {
+		return flagged.containsKey(edge.getId());
+	}
+
+	/**
+	 * Returns the flagged edges, oldest first. The collection is a copy.
+	 *
+	 * @return the edges left out of the order
+	 */
+	public Collection<E> getFlaggedEdges() {
+		ArrayList<E> edges = new ArrayList<>(flagged.size());
+		for (Flagged<V, E> f : flagged.values()) {
+			edges.add(f.edge);
+		}
+		return Collections.unmodifiableList(edges);
+	}
+
+	/**
+	 * Puts the new vertex at the end of the order.
+	 *
+	 * @param vertex the new vertex
+	 */
+	public void vertexAdded(V vertex) {
+		append(vertex);
+	}
+
+	/**
+	 * Moves the vertices between the new edge's ends so that its source comes
+	 * first, or flags the edge if it closes a cycle.
+	 *
+	 * @param edge   the new edge
+	 * @param source its source
+	 * @param dest   its destination
+	 */
+	public void edgeAdded(E edge, V source, V dest) {
+		if (!place(source, dest)) {
+			flagged.put(edge.getId(), new Flagged<>(edge, source, dest));
+		}
+	}
+
+	/**
+	 * Unflags the removed edge, or, if it was part of the order, gives the
+	 * flagged edges another try.
+	 *
+	 * @param edge the removed edge
+	 */
+	public void edgeRemoved(E edge) {
+		if (flagged.remove(edge.getId()) == null) {
+			retryFlagged();
+		}
+	}
+
+	/**
+	 * Takes the removed vertex out of the order, along with any flagged edges
+	 * it had.
+	 *
+	 * @param vertex the removed vertex
+	 */
+	public void vertexRemoved(V vertex) {
+		int id = vertex.getId();
+		int pos = positionOf(id);
+		if (pos == -1) {
+			return;
+		}
+
+		atPosition[pos] = null;
+		position[id] = -1;
+		holes += 1;
+		if (holes > length / 2) {
+			compact();
+		}
+
+		for (Iterator<Flagged<V, E>> it = flagged.values().iterator(); it.hasNext();) {
+			Flagged<V, E> f = it.next();
+			if (f.source.getId() == id || f.dest.getId() == id) {
+				it.remove();
+			}
+		}
+		// the vertex's edges went with it, which may break the cycles left
+		retryFlagged();
+	}
+
+	/**
+	 * Orders the whole graph with Kahn's algorithm over a CSR snapshot.
+	 * Vertices left on cycles are appended in slot order, the edges that then
+	 * go backwards are flagged, and those that can be ordered after all are
+	 * unflagged again.
+	 */
+	@SuppressWarnings("unchecked")
+	private void kahn() {
+		ThreeTenGraphCsr csr = graph.toCsr();
+		int n = csr.vertexCount();
+		int[] offsets = csr.offsets();
+		int[] targets = csr.targets();
+		int[] inOffsets = csr.inOffsets();
+		Object[] vertexAt = graph.getVertices().toArray();
+
+		int[] remaining = new int[n];
+		int[] queue = new int[n];
+		int tail = 0;
+		for (int slot = 0; slot < n; slot++) {
+			remaining[slot] = inOffsets[slot + 1] - inOffsets[slot];
+			if (remaining[slot] == 0) {
+				queue[tail++] = slot;
+			}
+		}
+		for (int head = 0; head < tail; head++) {
+			int u = queue[head];
+			for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+				if (--remaining[targets[i]] == 0) {
+					queue[tail++] = targets[i];
+				}
+			}
+		}
+
+		for (int i = 0; i < tail; i++) {
+			append((V) vertexAt[queue[i]]);
+		}
+		if (tail == n) {
+			return;
+		}
+
+		// what is left lies on or behind a cycle
+		for (int slot = 0; slot < n; slot++) {
+			if (remaining[slot] > 0) {
+				append((V) vertexAt[slot]);
+			}
+		}
+		for (Object o : vertexAt) {
+			V u = (V) o;
+			graph.forEachOutEdge(u, e -> {
+				V v = graph.getDest(e);
+				if (position[v.getId()] <= position[u.getId()]) {
+					flagged.put(e.getId(), new Flagged<>(e, u, v));
+				}
+			});
+		}
+		// keep only the edges that really close a cycle
+		retryFlagged();
+	}
+
+	/**
+	 * Reorders the vertices, if needed, so that source comes before dest
+	 * (Pearce-Kelly). Searches forward from dest and backward from source,
+	 * only among the vertices whose positions lie between the two, and
+	 * deals the positions of the vertices found out again: first those that
+	 * reach source, then those reachable from dest, each in their old order.
+	 *
+	 * @param source the edge's source
+	 * @param dest   the edge's destination
+	 * @return false if dest already reaches source, so the edge would close a
+	 *         cycle; the order is then unchanged
+	 */
+	private boolean place(V source, V dest) {
+		int lower = positionOf(dest.getId());
+		int upper = positionOf(source.getId());
+		if (lower == -1 || upper == -1) {
+			return true;
+		}
+		if (source.equals(dest)) {
+			return false;
+		}
+		if (upper < lower) {
+			return true;
+		}
+
+		ArrayList<V> forward = new ArrayList<>();
+		if (!search(dest, upper, true, source, forward)) {
+			return false;
+		}
+		ArrayList<V> backward = new ArrayList<>();
+		search(source, lower, false, null, backward);
+
+		sortByPosition(forward);
+		sortByPosition(backward);
+		int[] slots = new int[forward.size() + backward.size()];
+		int k = 0;
+		for (V v : backward) {
+			slots[k++] = position[v.getId()];
+		}
+		for (V v : forward) {
+			slots[k++] = position[v.getId()];
+		}
+		Arrays.sort(slots);
+
+		k = 0;
+		for (V v : backward) {
+			put(v, slots[k++]);
+		}
+		for (V v : forward) {
+			put(v, slots[k++]);
+		}
+		return true;
+	}
+
+	/**
+	 * Collects the vertices reachable from start over unflagged edges
+	 * (forward) or reaching it (backward) without leaving the positions
+	 * between start and bound.
+	 *
+	 * @param start   where to search from
+	 * @param bound   the last position to enter: an upper bound forward, a
+	 *                lower bound backward
+	 * @param forward true to follow edges, false to follow them in reverse
+	 * @param target  a vertex whose discovery ends the search, or null
+	 * @param found   the vertices found, start included
+	 * @return false if target was found
+	 */
+	private boolean search(V start, int bound, boolean forward, V target, ArrayList<V> found) {
+		stamp += 1;
+		mark[start.getId()] = stamp;
+		found.add(start);
+
+		ArrayList<V> stack = new ArrayList<>();
+		stack.add(start);
+		boolean[] hit = new boolean[1];
+		while (!stack.isEmpty() && !hit[0]) {
+			V u = stack.remove(stack.size() - 1);
+			if (forward) {
+				graph.forEachOutEdge(u, e -> {
+					visit(e, graph.getDest(e), bound, true, target, found, stack, hit);
+				});
+			} else {
+				graph.forEachInEdge(u, e -> {
+					visit(e, graph.getSource(e), bound, false, target, found, stack, hit);
+				});
+			}
+		}
+		return !hit[0];
+	}
+
+	/**
+	 * Handles one edge of a search.
+	 *
+	 * @param e       the edge followed
+	 * @param w       the vertex at its far end
+	 * @param bound   the last position to enter
+	 * @param forward true for a forward search
+	 * @param target  a vertex whose discovery ends the search, or null
+	 * @param found   the vertices found so far
+	 * @param stack   the vertices still to expand
+	 * @param hit     set to true when target is reached
+	 */
+	private void visit(E e, V w, int bound, boolean forward, V target, ArrayList<V> found, ArrayList<V> stack,
+			boolean[] hit) {
+		if (hit[0] || !flagged.isEmpty() && flagged.containsKey(e.getId())) {
+			return;
+		}
+		if (w.equals(target)) {
+			hit[0] = true;
+			return;
+		}
+
+		int id = w.getId();
+		int p = position[id];
+		boolean inside = forward ? p < bound : p > bound;
+		if (inside && mark[id] != stamp) {
+			mark[id] = stamp;
+			found.add(w);
+			stack.add(w);
+		}
+	}
+
+	/**
+	 * Tries each flagged edge again, oldest first, and unflags those that no
+	 * longer close a cycle.
+	 */
+	private void retryFlagged() {
+		for (Flagged<V, E> f : new ArrayList<>(flagged.values())) {
+			if (place(f.source, f.dest)) {
+				flagged.remove(f.edge.getId());
+			}
+		}
+	}
+
+	/**
+	 * Appends a vertex at the end of the order.
+	 *
+	 * @param vertex the vertex
+	 */
+	private void append(V vertex) {
+		if (length == atPosition.length) {
+			atPosition = Arrays.copyOf(atPosition, length * 2);
+		}
+		put(vertex, length);
+		length += 1;
+	}
+
+	/**
+	 * Places a vertex at a position.
+	 *
+	 * @param vertex the vertex
+	 * @param pos    the position
+	 */
+	private void put(V vertex, int pos) {
+		int id = vertex.getId();
+		if (id >= position.length) {
+			int size = Math.max(id + 1, position.length * 2);
+			int old = position.length;
+			position = Arrays.copyOf(position, size);
+			mark = Arrays.copyOf(mark, size);
+			Arrays.fill(position, old, size, -1);
+		}
+		atPosition[pos] = vertex;
+		position[id] = pos;
+	}
+
+	/**
+	 * Returns the position of a vertex id.
+	 *
+	 * @param id the vertex id
+	 * @return the position, or -1
+	 */
+	private int positionOf(int id) {
+		return id >= 0 && id < position.length ? position[id] : -1;
+	}
+
+	/**
+	 * Sorts vertices by their current position.
+	 *
+	 * @param vertices the vertices
+	 */
+	private void sortByPosition(ArrayList<V> vertices) {
+		vertices.sort((a, b) -> Integer.compare(position[a.getId()], position[b.getId()]));
+	}
+
+	/**
+	 * Closes the holes left by removed vertices.
+	 */
+	@SuppressWarnings("unchecked")
+	private void compact() {
+		int next = 0;
+		for (int i = 0; i < length; i++) {
+			if (atPosition[i] != null) {
+				put((V) atPosition[i], next++);
+			}
+		}
+		Arrays.fill(atPosition, next, length, null);
+		length = next;
+		holes = 0;
+	}
+
+	/**
+	 * An edge left out of the order, with the ends it had when added.
+	 *
+	 * @param <V> for generics
+	 * @param <E> for generics
+	 */
+	private static final class Flagged<V, E> {
+		/**
+		 * The edge.
+		 */
+		private final E edge;
+		/**
+		 * Its source.
+		 */
+		private final V source;
+		/**
+		 * Its destination.
+		 */
+		private final V dest;
+
+		/**
+		 * Creates a record of a flagged edge.
+		 *
+		 * @param edge   the edge
+		 * @param source its source
+		 * @param dest   its destination
+		 */
+		Flagged(E edge, V source, V dest) {
+			this.edge = edge;
+			this.source = source;
+			this.dest = dest;
+		}
+	}
+}
@@ -0,0 +1,377 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts the triangles of a ThreeTenGraph and the clustering coefficient of
+ * each vertex. Edge directions, self-loops and parallel edges are ignored: a
+ * triangle is three vertices that are pairwise adjacent.
+ *
+ * <p>
+ * The count runs on a CSR snapshot (see ThreeTenGraph.toCsr()) in three
+ * passes, each in chunks on a ForkJoinPool:
+ *
+ * <ol>
+ * <li>the successors and predecessors of every vertex are merged into one
+ * sorted int array without repeats;</li>
+ * <li>vertices are ranked by degree, and every vertex keeps only the ranks
+ * of the neighbours ranked above it, sorted, so each edge is kept once, by
+ * its lower degree end, and no list is longer than about the square root of
+ * twice the edge count;</li>
+ * <li>for every kept edge u - v, the part of u's list after v is intersected
+ * with v's list by a merge; each common vertex closes a triangle, which is
+ * found exactly once, at its lowest ranked vertex.</li>
+ * </ol>
+ *
+ * @author Hammadullah Nasir
+ */
+final class ThreeTenTriangles {
+	/**
+	 * Number of vertices handled by one task.
+	 */
+	private static final int CHUNK_SIZE = 512;
+
+	/**
+	 * The pool the tasks run on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Creates a counter that runs on the common ForkJoinPool.
+	 */
+	public ThreeTenTriangles() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a counter that runs on the given pool.
+	 *
+	 * @param pool the pool to run on
+	 */
+	public ThreeTenTriangles(ForkJoinPool pool) {
+		if (pool == null) {
+			throw new IllegalArgumentException("pool cannot be null");
+		}
+		this.pool = pool;
+	}
+
+	/**
+	 * Counts the triangles of graph. The graph is snapshotted first, so it
+	 * must not be modified during the call.
+	 *
+	 * @param <V>   the vertex type
+	 * @param <E>   the edge type
+	 * @param graph the graph to count
+	 * @return the triangle counts and clustering coefficients, keyed by
+	 *         vertex id
+	 */
+	public <V extends ThreeTenGraphComponent, E extends ThreeTenGraphComponent> Counts count(
+			ThreeTenGraph<V, E> graph) {
+		return count(graph.toCsr());
+	}
+
+	/**
+	 * Counts the triangles of a CSR snapshot.
+	 *
+	 * @param csr the snapshot to count
+	 * @return the triangle counts and clustering coefficients, keyed by
+	 *         vertex id
+	 */
+	public Counts count(ThreeTenGraphCsr csr) {
+		int n = csr.vertexCount();
+		int[] offsets = csr.offsets();
+		int[] targets = csr.targets();
+		int[] inOffsets = csr.inOffsets();
+		int[] sources = csr.sources();
+
+		// 1. each slot's neighbours, sorted and without repeats or itself
+		int[] start = new int[n + 1];
+		for (int slot = 0; slot < n; slot++) {
+			start[slot + 1] = offsets[slot + 1] + inOffsets[slot + 1];
+		}
+		int[] neighbours = new int[start[n]];
+		int[] degree = new int[n];
+		forEachChunk(n, (chunk, lo, hi) -> {
+			for (int u = lo; u < hi; u++) {
+				int from = start[u];
+				int to = from;
+				for (int i = offsets[u]; i < offsets[u + 1]; i++) {
+					neighbours[to++] = targets[i];
+				}
+				for (int i = inOffsets[u]; i < inOffsets[u + 1]; i++) {
+					neighbours[to++] = sources[i];
+				}
+				Arrays.sort(neighbours, from, to);
+
+				int kept = from;
+				for (int i = from; i < to; i++) {
+					int v = neighbours[i];
+					if (v != u && (kept == from || neighbours[kept - 1] != v)) {
+						neighbours[kept++] = v;
+					}
+				}
+				degree[u] = kept - from;
+			}
+		});
+
+		// 2. rank by degree with a counting sort, ties to the lower slot
+		int maxDegree = 0;
+		for (int slot = 0; slot < n; slot++) {
+			maxDegree = Math.max(maxDegree, degree[slot]);
+		}
+		int[] byDegree = new int[maxDegree + 2];
+		for (int slot = 0; slot < n; slot++) {
+			byDegree[degree[slot] + 1] += 1;
+		}
+		for (int d = 0; d <= maxDegree; d++) {
+			byDegree[d + 1] += byDegree[d];
+		}
+		int[] rank = new int[n];
+		for (int slot = 0; slot < n; slot++) {
+			rank[slot] = byDegree[degree[slot]]++;
+		}
+
+		int[] higher = new int[n + 1];
+		forEachChunk(n, (chunk, lo, hi) -> {
+			for (int u = lo; u < hi; u++) {
+				int count = 0;
+				for (int i = start[u]; i < start[u] + degree[u]; i++) {
+					if (rank[neighbours[i]] > rank[u]) {
+						count += 1;
+					}
+				}
+				higher[u + 1] = count;
+			}
+		});
+		for (int slot = 0; slot < n; slot++) {
+			higher[slot + 1] += higher[slot];
+		}
+		int[] slotOf = new int[n];
+		for (int slot = 0; slot < n; slot++) {
+			slotOf[rank[slot]] = slot;
+		}
+		// kept lists hold ranks, sorted, so a triangle's third vertex lies
+		// after the second in the first vertex's list
+		int[] up = new int[higher[n]];
+		forEachChunk(n, (chunk, lo, hi) -> {
+			for (int u = lo; u < hi; u++) {
+				int at = higher[u];
+				for (int i = start[u]; i < start[u] + degree[u]; i++) {
+					if (rank[neighbours[i]] > rank[u]) {
+						up[at++] = rank[neighbours[i]];
+					}
+				}
+				Arrays.sort(up, higher[u], at);
+			}
+		});
+
+		// 3. intersect the kept lists across every kept edge
+		int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		long[] partial = new long[chunks];
+		AtomicLongArray closed = new AtomicLongArray(n);
+		forEachChunk(n, (chunk, lo, hi) -> {
+			long found = 0;
+			for (int u = lo; u < hi; u++) {
+				for (int i = higher[u]; i < higher[u + 1]; i++) {
+					int v = slotOf[up[i]];
+					int a = i + 1;
+					int b = higher[v];
+					while (a < higher[u + 1] && b < higher[v + 1]) {
+						int x = up[a];
+						int y = up[b];
+						if (x < y) {
+							a += 1;
+						} else if (x > y) {
+							b += 1;
+						} else {
+							closed.getAndIncrement(u);
+							closed.getAndIncrement(v);
+							closed.getAndIncrement(slotOf[x]);
+							found += 1;
+							a += 1;
+							b += 1;
+						}
+					}
+				}
+			}
+			partial[chunk] = found;
+		});
+
+		long total = 0;
+		for (long found : partial) {
+			total += found;
+		}
+		long[] triangles = new long[n];
+		for (int slot = 0; slot < n; slot++) {
+			triangles[slot] = closed.get(slot);
+		}
+		return new Counts(csr, triangles, degree, total);
+	}
+
+	/**
+	 * Runs body on each chunk of CHUNK_SIZE slots out of [0, n) on the pool,
+	 * and returns once every chunk is done.
+	 *
+	 * @param n    the number of slots
+	 * @param body the work for one chunk
+	 */
+	private void forEachChunk(int n, Chunk body) {
+		int chunks = (n + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		if (chunks <= 1) {
+			body.run(0, 0, n);
+			return;
+		}
+
+		ArrayList<RecursiveAction> tasks = new ArrayList<>();
+		for (int chunk = 0; chunk < chunks; chunk++) {
+			final int number = chunk;
+			tasks.add(new RecursiveAction() {
+				protected void compute() {
+					body.run(number, number * CHUNK_SIZE, Math.min(n, (number + 1) * CHUNK_SIZE));
+				}
+			});
+		}
+
+		pool.invoke(new RecursiveAction() {
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/**
+	 * Work on one chunk of slots.
+	 */
+	private interface Chunk {
+		/**
+		 * Handles slots lo to hi - 1.
+		 *
+		 * @param chunk the chunk number
+		 * @param lo    the first slot
+		 * @param hi    one past the last slot
+		 */
+		void run(int chunk, int lo, int hi);
+	}
+
+	/**
+	 * The triangle count of every vertex of a snapshot.
+	 */
+	static final class Counts {
+		/**
+		 * The snapshot the counts are for.
+		 */
+		private final ThreeTenGraphCsr csr;
+		/**
+		 * Number of triangles through each slot.
+		 */
+		private final long[] triangles;
+		/**
+		 * Number of distinct neighbours of each slot, either direction.
+		 */
+		private final int[] degree;
+		/**
+		 * Number of triangles in the snapshot.
+		 */
+		private final long total;
+
+		/**
+		 * Creates a result from slot-indexed counts.
+		 *
+		 * @param csr       the snapshot the counts are for
+		 * @param triangles number of triangles through each slot
+		 * @param degree    number of distinct neighbours of each slot
+		 * @param total     number of triangles in the snapshot
+		 */
+		Counts(ThreeTenGraphCsr csr, long[] triangles, int[] degree, long total) {
+			this.csr = csr;
+			this.triangles = triangles;
+			this.degree = degree;
+			this.total = total;
+		}
+
+		/**
+		 * Returns the number of triangles in the snapshot.
+		 *
+		 * @return the triangle count
+		 */
+		public long total() {
+			return total;
+		}
+
+		/**
+		 * Returns the number of triangles the vertex with id is part of.
+		 *
+		 * @param id the vertex id
+		 * @return the triangle count, or -1 if the vertex is unknown
+		 */
+		public long triangles(int id) {
+			int slot = csr.slotOf(id);
+			return slot == -1 ? -1 : triangles[slot];
+		}
+
+		/**
+		 * Returns the local clustering coefficient of the vertex with id: the
+		 * fraction of pairs of its neighbours that are adjacent themselves.
+		 *
+		 * @param id the vertex id
+		 * @return the coefficient, 0 for fewer than two neighbours, or NaN if
+		 *         the vertex is unknown
+		 */
+		public double clustering(int id) {
+			int slot = csr.slotOf(id);
+			return slot == -1 ? Double.NaN : clusteringOf(slot);
+		}
+
+		/**
+		 * Returns the local clustering coefficient averaged over all
+		 * vertices.
+		 *
+		 * @return the average coefficient, 0 for an empty snapshot
+		 */
+		public double averageClustering() {
+			int n = triangles.length;
+			double sum = 0;
+			for (int slot = 0; slot < n; slot++) {
+				sum += clusteringOf(slot);
+			}
+			return n == 0 ? 0 : sum / n;
+		}
+
+		/**
+		 * Returns the global clustering coefficient (transitivity): three
+		 * times the triangle count over the number of paths of length two.
+		 *
+		 * @return the transitivity, 0 if there are no such paths
+		 */
+		public double transitivity() {
+			double paths = 0;
+			for (int d : degree) {
+				paths += (double) d * (d - 1) / 2;
+			}
+			return paths == 0 ? 0 : 3 * total / paths;
+		}
+
+		/**
+		 * Returns the triangle count array, indexed by slot. The array is not
+		 * copied.
+		 *
+		 * @return the counts
+		 */
+		long[] counts() {
+			return triangles;
+		}
+
+		/**
+		 * Returns the local clustering coefficient of a slot.
+		 *
+		 * @param slot the slot
+		 * @return the coefficient
+		 */
+		private double clusteringOf(int slot) {
+			double d = degree[slot];
+			return d < 2 ? 0 : 2 * triangles[slot] / (d * (d - 1));
+		}
+	}
+}